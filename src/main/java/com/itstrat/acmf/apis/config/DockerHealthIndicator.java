@@ -0,0 +1,55 @@
+package com.itstrat.acmf.apis.config;
+
+import com.itstrat.acmf.apis.service.DockerReadinessService;
+import com.itstrat.acmf.apis.service.RemoteGeneratorClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the cached Docker state of {@link DockerReadinessService} as the {@code docker}
+ * health component, without probing the daemon on every health check.
+ *
+ * <p>With a remote generator ({@code acmf.generator.mode=remote}) projects are generated
+ * without the local daemon, so an unreachable daemon or a missing image only makes the
+ * component UNKNOWN and never takes the instance out of rotation.</p>
+ */
+@Component
+public class DockerHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private DockerReadinessService dockerReadinessService;
+
+    @Autowired
+    private RemoteGeneratorClient remoteGeneratorClient;
+
+    @Value("${acmf.generator.image:jhipster/jhipster:v8.11.0}")
+    private String generatorImage;
+
+    @Override
+    public Health health() {
+        DockerReadinessService.DockerState state = dockerReadinessService.state();
+        boolean remote = remoteGeneratorClient.isEnabled();
+        Health.Builder builder;
+        if (remote) {
+            builder = state.daemon() ? Health.up() : Health.unknown();
+        } else {
+            // While the image is being pulled the instance stays healthy, generations wait for the pull
+            builder = !state.daemon() ? Health.down() : state.imagePresent() ? Health.up() : Health.unknown();
+        }
+        builder.withDetail("generator", remote ? "remote" : "docker")
+                .withDetail("client", state.engineApi() ? "engine-api" : "cli")
+                .withDetail("daemon", state.daemon())
+                .withDetail("image", generatorImage)
+                .withDetail("imagePresent", state.imagePresent());
+        if (state.checkedAt() != null) {
+            builder.withDetail("checkedAt", state.checkedAt().toString());
+        }
+        if (state.error() != null) {
+            builder.withDetail("error", state.error());
+        }
+        return builder.build();
+    }
+}
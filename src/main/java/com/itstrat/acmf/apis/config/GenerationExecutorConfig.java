@@ -0,0 +1,189 @@
+package com.itstrat.acmf.apis.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executors for project generation.
+ *
+ * <p>Generation (Docker, git push, ...) runs for minutes, so it is kept off the
+ * Tomcat request threads on a dedicated, bounded pool. Its size is the number of
+ * projects generated concurrently on this instance; the {@code GenerationWorker}
+ * only claims jobs from the shared queue while a thread is free.</p>
+ *
+ * <p>The applications of a microservice system are generated in parallel on a
+ * second pool shared by all jobs, which caps the number of JHipster generations
+ * running on this instance at any time.</p>
+ *
+ * <p>Live generation logs are streamed to clients on a third pool, whose size is
+ * the maximum number of open log streams.</p>
+ *
+ * <p>Blobs pushed through the GitHub Git Data API are uploaded on a fourth pool,
+ * shared by all pushes, which caps the number of concurrent uploads.</p>
+ *
+ * <p>The stages of a job that do not depend on each other (repository creation,
+ * Dockerfile, workflow, ...) run concurrently on a fifth pool shared by all jobs.</p>
+ *
+ * <p>Workspaces are deleted, and the workspace root swept, in the background on a
+ * sixth pool, so neither requests nor generations wait for large deletions.</p>
+ *
+ * <p>Archives of generated projects are streamed to clients on a seventh pool, whose
+ * size is the maximum number of downloads at once; further downloads wait in its queue.</p>
+ *
+ * <p>Projects received from a remote generator are written out on an eighth pool
+ * while the rest of the ZIP is still being read.</p>
+ *
+ * <p>Lines pushed out of the in-memory buffer of a job's log are compressed and written
+ * to its spill file on a ninth pool, so producers never wait for the disk.</p>
+ *
+ * <p>Every pool has a bounded queue. Work a job cannot do without (stages,
+ * applications, blob uploads, file writes, deletions) runs on the submitting thread
+ * once the queue is full, which slows that job down instead of failing it. Work
+ * submitted for a client (generations claimed by the worker, log streams, archive
+ * downloads) is rejected instead, and the client is told to retry later. Log spills
+ * are rejected too; the segment stays in memory until the next spill of that log.</p>
+ */
+@Configuration
+@EnableScheduling
+public class GenerationExecutorConfig {
+
+    @Value("${acmf.generation.concurrency:2}")
+    private int concurrency;
+
+    @Value("${acmf.generation.application-concurrency:4}")
+    private int applicationConcurrency;
+
+    @Value("${acmf.generation.per-system-parallelism:3}")
+    private int perSystemParallelism;
+
+    @Value("${acmf.generation.logs.max-streams:32}")
+    private int maxLogStreams;
+
+    @Value("${acmf.github.data-api.upload-concurrency:8}")
+    private int uploadConcurrency;
+
+    @Value("${acmf.generation.stage-concurrency:8}")
+    private int stageConcurrency;
+
+    @Value("${acmf.workspace.reaper.parallelism:4}")
+    private int reaperParallelism;
+
+    @Value("${acmf.archive.max-streams:16}")
+    private int maxArchiveStreams;
+
+    @Value("${acmf.archive.max-queued:64}")
+    private int maxQueuedArchives;
+
+    @Value("${acmf.generator.remote.write-parallelism:8}")
+    private int unzipParallelism;
+
+    @Bean(name = "generationExecutor")
+    ThreadPoolTaskExecutor generationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency);
+        executor.setThreadNamePrefix("generation-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    @Bean(name = "applicationGenerationExecutor")
+    ThreadPoolTaskExecutor applicationGenerationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(applicationConcurrency);
+        executor.setMaxPoolSize(applicationConcurrency);
+        // Each running job submits at most per-system-parallelism applications at once
+        executor.setQueueCapacity(concurrency * perSystemParallelism);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("app-generation-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    @Bean(name = "logStreamExecutor")
+    ThreadPoolTaskExecutor logStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxLogStreams);
+        executor.setMaxPoolSize(maxLogStreams);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("log-stream-");
+        return executor;
+    }
+
+    @Bean(name = "logSpillExecutor")
+    ThreadPoolTaskExecutor logSpillExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        // A log has at most one spill queued or running, and running jobs are the ones spilling
+        executor.setQueueCapacity(concurrency * 2);
+        executor.setThreadNamePrefix("log-spill-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    @Bean(name = "githubUploadExecutor")
+    ThreadPoolTaskExecutor githubUploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(uploadConcurrency);
+        executor.setMaxPoolSize(uploadConcurrency);
+        executor.setQueueCapacity(uploadConcurrency * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("github-upload-");
+        return executor;
+    }
+
+    @Bean(name = "stageExecutor")
+    ThreadPoolTaskExecutor stageExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(stageConcurrency);
+        executor.setMaxPoolSize(stageConcurrency);
+        executor.setQueueCapacity(stageConcurrency * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("generation-stage-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    @Bean(name = "workspaceReaperExecutor")
+    ThreadPoolTaskExecutor workspaceReaperExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(reaperParallelism);
+        executor.setMaxPoolSize(reaperParallelism);
+        executor.setQueueCapacity(reaperParallelism * 256);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("workspace-reaper-");
+        return executor;
+    }
+
+    @Bean(name = "archiveStreamExecutor")
+    ThreadPoolTaskExecutor archiveStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxArchiveStreams);
+        executor.setMaxPoolSize(maxArchiveStreams);
+        executor.setQueueCapacity(maxQueuedArchives);
+        executor.setThreadNamePrefix("archive-stream-");
+        return executor;
+    }
+
+    @Bean(name = "unzipExecutor")
+    ThreadPoolTaskExecutor unzipExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(unzipParallelism);
+        executor.setMaxPoolSize(unzipParallelism);
+        executor.setQueueCapacity(unzipParallelism * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("unzip-");
+        return executor;
+    }
+}
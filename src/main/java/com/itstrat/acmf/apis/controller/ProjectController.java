@@ -1,35 +1,47 @@
 package com.itstrat.acmf.apis.controller;
 
 import com.itstrat.acmf.apis.Response.MessageResponse;
+import com.itstrat.acmf.apis.dto.GenerationJobDTO;
 import com.itstrat.acmf.apis.dto.ProjectDTO;
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobStatus;
+import com.itstrat.acmf.apis.entity.GenerationOptions;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
 import com.itstrat.acmf.apis.entity.JdlRequest;
 import com.itstrat.acmf.apis.entity.MicroserviceJdlRequest;
+import com.itstrat.acmf.apis.entity.MicroserviceSpec;
 import com.itstrat.acmf.apis.entity.Project;
 import com.itstrat.acmf.apis.entity.User;
-import com.itstrat.acmf.apis.exception.GitHubApiException;
+import com.itstrat.acmf.apis.exception.GenerationConflictException;
 import com.itstrat.acmf.apis.repository.ProjectRepository;
 import com.itstrat.acmf.apis.service.*;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import javax.validation.Valid;
 import java.util.*;
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.net.URI;
+import java.nio.file.Path;
 
 @RestController
 @RequestMapping("/api/projects")
@@ -44,19 +56,23 @@ public class ProjectController {
     private UserService userService;
 
     @Autowired
-    private DockerFileService dockerFileService;
+    private ProjectRepository projectRepository;
 
     @Autowired
-    private DeploymentService deploymentService;
+    private GenerationJobService generationJobService;
 
     @Autowired
-    private GithubWorkflowService githubWorkflowService;
+    private GenerationLogService generationLogService;
 
     @Autowired
-    private ProjectRepository projectRepository;
+    private ProjectArchiveService projectArchiveService;
 
     @Autowired
-    private JHipsterDockerService jhipsterDockerService;
+    @Qualifier("archiveStreamExecutor")
+    private ThreadPoolTaskExecutor archiveStreamExecutor;
+
+    @Value("${acmf.archive.timeout-ms:3600000}")
+    private long archiveTimeoutMs;
 
     @GetMapping
     public ResponseEntity<List<ProjectDTO>> getProjects(
@@ -201,34 +217,41 @@ public class ProjectController {
      * REST endpoint to generate a new JHipster project, configure deployment,
      * and push the generated project to a GitHub repository.
      *
-     * <p>This endpoint performs the following steps:
+     * <p>The request is validated synchronously and the generation itself is queued as a
+     * job; the response is returned immediately with the job id. Poll
+     * {@code GET /api/projects/jobs/{id}} for stage, progress and result. The job performs
+     * the following steps:
      * <ul>
-     *     <li>Validates whether the project already exists in the system.</li>
      *     <li>Generates the JHipster project using Docker.</li>
      *     <li>Creates a Dockerfile and configures cloud deployment if required.</li>
      *     <li>Sets up GitHub workflows and pushes the project to a GitHub repository.</li>
      *     <li>Saves the project details in the database and associates it with the authenticated user.</li>
      * </ul>
+     * With {@code delivery=ARCHIVE} the GitHub steps are skipped and the project is kept to be
+     * downloaded from {@code GET /api/projects/jobs/{id}/archive}.
      * </p>
      *
      * @param jdlRequest          The JHipster JDL request containing project configuration.
      * @param projectPath         Base path where the generated project will be stored temporarily.
-     * @param githubUsername      GitHub username for repo creation and push.
-     * @param githubToken         GitHub personal access token for authentication.
+     * @param delivery            (Optional) GITHUB (default) to push the project, or ARCHIVE to download it.
+     * @param githubUsername      GitHub username for repo creation and push; not needed for an archive.
+     * @param githubToken         GitHub personal access token for authentication; not needed for an archive.
      * @param githubOrganization  (Optional) GitHub organization under which the repo should be created.
      * @param cloudProvider       (Optional) Cloud provider name (e.g., AWS, Azure, GCP).
      * @param cloudService        (Optional) Cloud service name for deployment (e.g., ECS, AppEngine).
      * @param accountId           (Optional) Cloud account ID for deployment.
      * @param region              (Optional) Cloud region for deployment.
      * @param jwt                 JWT token from request header for user authentication.
-     * @return ResponseEntity<String> Success message or error details.
+     * @return ResponseEntity with the queued job (202), 400 if the request does not compile
+     *         into a {@link GenerationSpec}, or error details.
      */
     @PostMapping("/generate-project")
-    public ResponseEntity<String> generateJHipsterProject(
+    public ResponseEntity<?> generateJHipsterProject(
             @RequestBody JdlRequest jdlRequest,
             @RequestParam String projectPath,
-            @RequestParam String githubUsername,
-            @RequestParam String githubToken,
+            @RequestParam(defaultValue = "GITHUB") GenerationDelivery delivery,
+            @RequestParam(required = false) String githubUsername,
+            @RequestParam(required = false) String githubToken,
             @RequestParam(required = false) String githubOrganization,
             @RequestParam(required = false) String cloudProvider,
             @RequestParam(required = false) String cloudService,
@@ -236,268 +259,238 @@ public class ProjectController {
             @RequestParam(required = false) String region,
             @RequestHeader("Authorization") String jwt) {
 
-        String newProjectPath = null;
+        if (delivery == GenerationDelivery.GITHUB && (isBlank(githubUsername) || isBlank(githubToken))) {
+            return ResponseEntity.badRequest().body("githubUsername and githubToken are required to push to GitHub.");
+        }
+
+        GenerationSpec spec;
         try {
-            // Step 1: Log start of project generation
-            logger.info("Starting project generation for baseName: {}", jdlRequest.getBaseName());
-            String appBaseName = jdlRequest.getBaseName();
+            spec = GenerationSpec.compile(jdlRequest);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
-            // Step 2: Check if project with same name already exists
+        try {
+            String appBaseName = spec.getBaseName();
+
+            // Step 1: Check if project with same name already exists
             if (projectRepository.existsByName(appBaseName)) {
                 logger.warn("Project '{}' already exists.", appBaseName);
                 return ResponseEntity.status(HttpStatus.CONFLICT).body("Project already exists.");
             }
 
-            // Step 3: Check if the host port is already taken
-            if (projectRepository.existsByPort(jdlRequest.getServerPort())) {
-                logger.warn("Project with port '{}' already exists.", jdlRequest.getServerPort());
-                return ResponseEntity.status(HttpStatus.CONFLICT).body("Project with port " + jdlRequest.getServerPort() + " already exists.");
-            }
-
-            // Step 3: Create project directory
-            newProjectPath = projectPath + File.separator + appBaseName;
-            Files.createDirectories(Paths.get(newProjectPath));
-
-            // Step 4: Generate JHipster project using Docker
-            jhipsterDockerService.generateMonolithProjectViaDocker(jdlRequest, newProjectPath);
-
-            // Step 5: Create Dockerfile based on build tool
-            dockerFileService.generateDockerfile(newProjectPath, jdlRequest.getBuildTool());
-
-            // Step 7: Handle deployment configurations (cloud provider + service)
-            deploymentService.applicationDeployment(
-                    appBaseName,
-                    newProjectPath,
-                    cloudProvider,
-                    cloudService,
-                    accountId,
-                    region,
-                    githubOrganization,
-                    jdlRequest.getApplicationType()
-            );
-
-            // Step 8: Create GitHub workflow for CI/CD
-            githubWorkflowService.createGithubWorkflow(
-                    appBaseName,
-                    newProjectPath,
-                    cloudProvider,
-                    cloudService,
-                    accountId,
-                    region,
-                    githubOrganization,
-                    jdlRequest.getBuildTool(),
-                    jdlRequest.getServerPort()
-            );
-
-            // Step 9: Create GitHub repository
-            String repoUrl = createGitHubRepo(githubUsername, githubToken, appBaseName, githubOrganization);
-            if (repoUrl.startsWith("https")) {
-                // Step 10: Initialize Git and push project to GitHub
-                initGitAndPushToGitHub(newProjectPath, repoUrl, githubUsername, githubToken);
-            } else {
-                throw new GitHubApiException(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Failed to create GitHub repository.");
+            // Step 2: Check if the host port is already taken, as projects record it
+            if (spec.getServerPort() != null && projectRepository.existsByPort(String.valueOf(spec.getServerPort()))) {
+                logger.warn("Project with port '{}' already exists.", spec.getServerPort());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Project with port " + spec.getServerPort() + " already exists.");
             }
 
-            // Step 11: Fetch authenticated user details using JWT
+            // Step 3: Fetch authenticated user details using JWT
             User user = userService.findUserProfileByJwt(jwt);
 
-            // Step 12: Save project details in database
-            Project project = new Project();
-            project.setName(appBaseName);
-            project.setCategory(jdlRequest.getApplicationType());
-            project.setDescription("Generated using JHipster");
-            project.setAdmin(user);
-            project.setGithubUrl(repoUrl);
-            project.setTags(buildTags(jdlRequest));
-            project.setPort(jdlRequest.getServerPort());
-            projectService.createProject(project, user);
-
-            logger.info("Monolith created and pushed to GitHub.");
-            return ResponseEntity.ok("Project successfully created and pushed to GitHub.");
+            // Step 4: Queue the generation
+            GenerationOptions options = new GenerationOptions(projectPath, githubUsername, githubToken, githubOrganization,
+                    cloudProvider, cloudService, accountId, region);
+            GenerationJob job = generationJobService.submitMonolith(spec, options, delivery, user);
+            return accepted(job);
 
+        } catch (GenerationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Generation queue is full, please retry later.");
         } catch (Exception e) {
-            // Handle all unexpected exceptions
             logger.error("Generation error: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error: " + e.getMessage());
-
-        } finally {
-            // Step 13: Clean up local project directory after completion
-            if(newProjectPath != null){
-                deleteProjectDirectory(new File(newProjectPath));
-            }
         }
     }
 
-    private void downloadJHipsterProject(JdlRequest jdlRequest, String zipFilePath) throws IOException {
-        String url = "https://start.jhipster.tech/api/download-application";
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
-
-        String jsonPayload = "{\"generator-jhipster\":" + jdlRequest.toJsonString() + "}";
-        try (OutputStream os = connection.getOutputStream()) {
-            os.write(jsonPayload.getBytes());
-        }
+    /**
+     * Returns the stage, progress and result of a generation job started by the authenticated user.
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<GenerationJobDTO> getGenerationJob(
+            @PathVariable String jobId,
+            @RequestHeader("Authorization") String jwt
+    ) throws Exception {
+        User user = userService.findUserProfileByJwt(jwt);
+        return generationJobService.findJob(jobId, user)
+                .map(job -> new ResponseEntity<>(generationJobService.toDTO(job), HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
 
-        if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            try (InputStream in = connection.getInputStream();
-                 FileOutputStream out = new FileOutputStream(zipFilePath)) {
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-            }
-            logger.info("Downloaded JHipster project ZIP to {}", zipFilePath);
-        } else {
-            throw new IOException("Failed to download JHipster project. HTTP response code: " + connection.getResponseCode());
+    /**
+     * Retries a failed generation job of the authenticated user. Only the stages it has
+     * not completed (see {@code completedStages} of the job) run again, in the workspace
+     * kept from the failed run, so e.g. a failed push does not generate the project again.
+     *
+     * @param jobId       Id of the failed job.
+     * @param githubToken GitHub personal access token; the one of the failed run is not kept.
+     *                    Not needed by a job delivered as an archive.
+     * @param jwt         JWT token from request header for user authentication.
+     * @return ResponseEntity with the queued job (202), 400 if a GitHub token is missing, 404 if
+     *         there is no such job, or 409 if it did not fail or another job is generating its name or port.
+     */
+    @PostMapping("/jobs/{jobId}/retry")
+    public ResponseEntity<?> retryGenerationJob(
+            @PathVariable String jobId,
+            @RequestParam(required = false) String githubToken,
+            @RequestHeader("Authorization") String jwt
+    ) throws Exception {
+        User user = userService.findUserProfileByJwt(jwt);
+        try {
+            return generationJobService.retry(jobId, user, githubToken)
+                    .<ResponseEntity<?>>map(this::accepted)
+                    .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (GenerationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Generation queue is full, please retry later.");
         }
     }
 
-    private void unzipProject(String zipFilePath, String destDir) throws IOException {
-        try (ZipInputStream zipIn = new ZipInputStream(new FileInputStream(zipFilePath))) {
-            ZipEntry entry;
-            while ((entry = zipIn.getNextEntry()) != null) {
-                File file = new File(destDir, entry.getName());
-                if (entry.isDirectory()) {
-                    file.mkdirs();
-                } else {
-                    new File(file.getParent()).mkdirs();
-                    try (FileOutputStream fos = new FileOutputStream(file)) {
-                        byte[] buffer = new byte[1024];
-                        int length;
-                        while ((length = zipIn.read(buffer)) > 0) {
-                            fos.write(buffer, 0, length);
-                        }
-                    }
-                }
-                zipIn.closeEntry();
+    /**
+     * Streams the output of a generation job as Server-Sent Events: one {@code log} event
+     * per line, with the line offset as event id, then an {@code end} event once the job
+     * finished. A client resumes with the offset of the next line it needs, given as
+     * {@code offset} or by the {@code Last-Event-ID} header its EventSource sends on reconnect.
+     */
+    @GetMapping("/jobs/{jobId}/logs")
+    public ResponseEntity<?> streamGenerationLogs(
+            @PathVariable String jobId,
+            @RequestParam(required = false) Long offset,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestHeader("Authorization") String jwt
+    ) throws Exception {
+        User user = userService.findUserProfileByJwt(jwt);
+        if (generationJobService.findJob(jobId, user).isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        long from = offset != null ? offset
+                : lastEventId != null && lastEventId.matches("\\d+") ? Long.parseLong(lastEventId) + 1 : 0;
+        try {
+            Optional<SseEmitter> emitter = generationLogService.stream(jobId, from);
+            if (emitter.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Logs of this job are not available on this instance.");
             }
+            return ResponseEntity.ok(emitter.get());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many log streams are open, please retry later.");
         }
-        Files.deleteIfExists(Paths.get(zipFilePath));
-        logger.info("Unzipped JHipster project to {}", destDir);
     }
 
+    /**
+     * Downloads the project of a job delivered as an archive, as a ZIP streamed from its
+     * workspace. A single {@code Range} of bytes is served for resuming a download; with
+     * {@code If-Range}, it is only served if the archive did not change.
+     *
+     * <p>The download runs on the {@code archiveStreamExecutor}, with a timeout of
+     * {@code acmf.archive.timeout-ms}, rather than on the defaults of other async requests.</p>
+     *
+     * @return The archive (200), the requested range (206), 404 if there is no such job or its
+     *         workspace is not on this instance, 409 if the job is not a succeeded archive, 416
+     *         if the range starts past the end of the archive, or 503 if too many downloads wait.
+     */
+    @GetMapping("/jobs/{jobId}/archive")
+    public WebAsyncTask<ResponseEntity<?>> downloadGenerationArchive(
+            @PathVariable String jobId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader("Authorization") String jwt,
+            HttpServletResponse response
+    ) {
+        return new WebAsyncTask<>(archiveTimeoutMs, archiveStreamExecutor,
+                () -> sendArchive(jobId, range, ifRange, jwt, response));
+    }
 
-
-
-    private String createGitHubRepo(String username, String token, String repoName, String organizationName) throws IOException {
-        String apiUrl;
-        if (organizationName != null && !organizationName.isEmpty()) {
-
-            apiUrl = "https://api.github.com/orgs/" + organizationName + "/repos";
-        } else {
-
-            apiUrl = "https://api.github.com/user/repos";
+    /**
+     * Answers an archive download. Errors are returned as entities, while the archive is
+     * written straight to the response from the archive executor, returning {@code null}.
+     */
+    private ResponseEntity<?> sendArchive(String jobId, String range, String ifRange, String jwt,
+                                          HttpServletResponse response) throws Exception {
+        User user = userService.findUserProfileByJwt(jwt);
+        Optional<GenerationJob> found = generationJobService.findJob(jobId, user);
+        if (found.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        String jsonPayload = "{\"name\":\"" + repoName + "\", \"private\":false}";
-
-        HttpURLConnection connection = (HttpURLConnection) new URL(apiUrl).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString((username + ":" + token).getBytes()));
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            os.write(jsonPayload.getBytes("utf-8"));
+        GenerationJob job = found.get();
+        if (job.getDelivery() != GenerationDelivery.ARCHIVE || job.getStatus() != GenerationJobStatus.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Job " + jobId + " has no archive to download.");
+        }
+        Optional<Path> root = projectArchiveService.findArchiveRoot(job);
+        if (root.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Archive of this job is not available on this instance.");
         }
 
-        int responseCode = connection.getResponseCode();
-        StringBuilder responseBody = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), "utf-8"))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                responseBody.append(line.trim());
-            }
-        } catch (IOException e) {
-            // Capture error details in the response
-            try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream(), "utf-8"))) {
-                String errorLine;
-                while ((errorLine = errorReader.readLine()) != null) {
-                    responseBody.append(errorLine.trim());
-                }
+        String etag = projectArchiveService.etag(job);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(root.get().getFileName() + ".zip").build());
+        headers.setETag(etag);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges = List.of();
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                // An invalid range is ignored, the whole archive is sent
             }
         }
+        if (ranges.size() != 1) {
+            writeHead(response, HttpStatus.OK, headers);
+            projectArchiveService.write(job, root.get(), response.getOutputStream());
+            return null;
+        }
 
-        if (responseCode == HttpURLConnection.HTTP_CREATED) {
-            String response = responseBody.toString();
-            logger.info("GitHub repository created successfully: {}", response);
-            return response.split("\"clone_url\":\"")[1].split("\"")[0];
-        } else {
-            logger.error("Failed to create GitHub repository. Response code: {}. Response body: {}", responseCode, responseBody);
-            return responseBody.toString();
+        long length = projectArchiveService.length(job, root.get());
+        long start;
+        long end;
+        try {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
         }
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        headers.setContentLength(end - start + 1);
+        writeHead(response, HttpStatus.PARTIAL_CONTENT, headers);
+        projectArchiveService.write(job, root.get(), response.getOutputStream(), start, end);
+        return null;
     }
 
-//    private void initGitAndPushToGitHub(String projectPath, String repoUrl, String username, String token) throws IOException, InterruptedException {
-//        runCommand(new File(projectPath), "git", "init");
-//        runCommand(new File(projectPath), "git", "add", ".");
-//        runCommand(new File(projectPath), "git", "commit", "-m", "Initial commit");
-//        runCommand(new File(projectPath), "git", "branch", "-M", "main");
-//        String remoteUrlWithAuth = repoUrl.replace("https://", "https://" + username + ":" + token + "@");
-//        runCommand(new File(projectPath), "git", "remote", "add", "origin", remoteUrlWithAuth);
-//        runCommand(new File(projectPath), "git", "push", "-u", "origin", "main");
-//    }
-    private void initGitAndPushToGitHub(String projectPath, String repoUrl, String username, String token) throws IOException, InterruptedException {
-        File dir = new File(projectPath);
-
-        // 1. Initialize
-        runCommand(dir, "git", "init");
-
-        // 2. Configure Identity (CRITICAL FIX)
-        runCommand(dir, "git", "config", "user.email", "bot@acmf.com");
-        runCommand(dir, "git", "config", "user.name", "ACMF Bot");
-
-        // 3. Add files
-        runCommand(dir, "git", "add", ".");
-
-        // 4. Commit
-        runCommand(dir, "git", "commit", "-m", "Initial commit by ACMF");
-
-        // 5. Rename branch to main
-        runCommand(dir, "git", "branch", "-M", "main");
-
-        // 6. Add Remote
-        String remoteUrlWithAuth = repoUrl.replace("https://", "https://" + username + ":" + token + "@");
-        runCommand(dir, "git", "remote", "add", "origin", remoteUrlWithAuth);
+    /**
+     * Answers 503 when a download is rejected because {@code acmf.archive.max-queued}
+     * downloads already wait for a stream.
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<String> handleRejectedDownload(TaskRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many downloads are in progress, please retry later.");
+    }
 
-        // 7. Push
-        runCommand(dir, "git", "push", "-u", "origin", "main");
+    private static void writeHead(HttpServletResponse response, HttpStatus status, HttpHeaders headers) {
+        response.setStatus(status.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
     }
 
-    private void runCommand(File workingDir, String... command) throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.directory(workingDir);
-        processBuilder.redirectErrorStream(true); // Redirect errors to the output stream for better logging
-        Process process = processBuilder.start();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logger.info("Command output: {}", line);
-            }
-        }
-        int exitCode = process.waitFor();
-        logger.info("Command exited with code {}", exitCode);
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
     }
 
-    private void deleteProjectDirectory(File directory) {
-        if (directory.exists()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        deleteProjectDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                }
-            }
-            directory.delete();
-            logger.info("Deleted project directory: {}", directory.getAbsolutePath());
-        }
+    private ResponseEntity<GenerationJobDTO> accepted(GenerationJob job) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/projects/jobs/" + job.getId()))
+                .body(generationJobService.toDTO(job));
     }
 
+
+
+
 //    /**
 //     * REST endpoint to generate multiple JHipster microservice projects inside a root directory,
 //     * configure deployment, and push them to a single GitHub repository.
@@ -644,13 +637,18 @@ public class ProjectController {
      * creates Dockerfiles per service, a single GitHub Actions workflow at the repo root,
      * cloud deployment descriptors (docker-compose for EC2 OR k8s manifests for EKS),
      * creates a single GitHub repo and pushes everything.
+     *
+     * <p>The generation runs as a job; the response carries the job id to poll. With
+     * {@code delivery=ARCHIVE} nothing is created on GitHub and the monorepo is downloaded
+     * from {@code GET /api/projects/jobs/{id}/archive}.</p>
      */
     @PostMapping("/generate-microservices")
-    public ResponseEntity<String> generateMicroservices(
+    public ResponseEntity<?> generateMicroservices(
             @Valid @RequestBody MicroserviceJdlRequest microserviceJdlRequest,
             @RequestParam String projectPath,
-            @RequestParam String githubUsername,
-            @RequestParam String githubToken,
+            @RequestParam(defaultValue = "GITHUB") GenerationDelivery delivery,
+            @RequestParam(required = false) String githubUsername,
+            @RequestParam(required = false) String githubToken,
             @RequestParam(required = false) String githubOrganization,
             @RequestParam(required = false) String cloudProvider,   // e.g., "AWS"
             @RequestParam(required = false) String cloudService,    // e.g., "EC2" or "EKS"
@@ -658,133 +656,42 @@ public class ProjectController {
             @RequestParam(required = false) String region,          // AWS region
             @RequestHeader("Authorization") String jwt) {
 
-        // 0) Compute root directory for the monorepo
-        String rootDirPath = projectPath + File.separator + microserviceJdlRequest.getRootDirectoryName();
-        List<Project> savedProjects = new ArrayList<>();
+        if (delivery == GenerationDelivery.GITHUB && (isBlank(githubUsername) || isBlank(githubToken))) {
+            return ResponseEntity.badRequest().body("githubUsername and githubToken are required to push to GitHub.");
+        }
 
+        MicroserviceSpec spec;
         try {
-            // 1) Create root directory
-            Files.createDirectories(Paths.get(rootDirPath));
-
-            // 2) Auth user
-            User user = userService.findUserProfileByJwt(jwt);
-
-            // 3) Iterate & create each microservice under the single root
-            for (JdlRequest app : microserviceJdlRequest.getApplications()) {
-                final String appName = app.getBaseName();
-                final String appPath = rootDirPath + File.separator + appName;
-
-                // Skip if this project name already exists (same as your monolith flow)
-                if (projectRepository.existsByName(appName)) {
-                    logger.warn("Project '" + appName + "' already exists. Skipping.");
-                    continue;
-                }
-
-                // Create service directory
-                Files.createDirectories(Paths.get(appPath));
-
-                // Generate JHipster microservice via Docker
-                jhipsterDockerService.generateMicroserviceProjectViaDocker(app, appPath);
-
-                // Generate a Dockerfile per service (uses buildTool from JdlRequest)
-                dockerFileService.generateDockerfile(appPath, app.getBuildTool());
-
-                // NOTE: Do NOT create per-service workflows here (we’ll create ONE at root after the loop)
-
-                // Optionally: any per-service infra scaffolding you still need can be done here
-
-                // Build metadata to persist later
-                Project p = new Project();
-                p.setName(appName);
-                p.setCategory(app.getApplicationType());
-                p.setDescription("Generated using JHipster");
-                p.setAdmin(user);
-                p.setTags(buildTags(app));
-                p.setPort(app.getServerPort());
-                savedProjects.add(p);
-            }
+            spec = MicroserviceSpec.compile(microserviceJdlRequest);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
-            if (savedProjects.isEmpty()) {
+        try {
+            // 1) Reject up front when every requested service already exists
+            boolean allExist = spec.getApplications().stream()
+                    .allMatch(app -> projectRepository.existsByName(app.getBaseName()));
+            if (allExist) {
                 return ResponseEntity.status(HttpStatus.CONFLICT).body("All requested baseNames already exist.");
             }
 
-            // 4) Create ONE GitHub Actions workflow at root for ALL services
-            List<String> serviceNames = new ArrayList<>();
-            for (JdlRequest app : microserviceJdlRequest.getApplications()) {
-                serviceNames.add(app.getBaseName());
-            }
-
-            // Choose build tool per service at runtime (wrapper detection), so no need to pass build tool list
-            githubWorkflowService.createGithubWorkflowForMicroservices(
-                    rootDirPath,
-                    serviceNames,
-                    cloudProvider,
-                    cloudService,
-                    accountId,
-                    region,
-                    githubOrganization,
-                    microserviceJdlRequest.getRootDirectoryName()
-            );
-
-            // 5) Cloud deployment descriptors (docker-compose for EC2 OR k8s for EKS)
-            deploymentService.microservicesDeployment(
-                    rootDirPath,
-                    microserviceJdlRequest.getApplications(),
-                    cloudProvider,
-                    cloudService,
-                    accountId,
-                    region,
-                    githubOrganization
-            );
-
-            // 6) Create GitHub repo for the ROOT directory (single repo)
-            String repoUrl = createGitHubRepo(githubUsername, githubToken, microserviceJdlRequest.getRootDirectoryName(), githubOrganization);
-            if (repoUrl == null || !repoUrl.startsWith("https")) {
-                throw new GitHubApiException(HttpStatus.INTERNAL_SERVER_ERROR.value(), "GitHub repository creation failed.");
-            }
-
-            // 7) Push monorepo
-            initGitAndPushToGitHub(rootDirPath, repoUrl, githubUsername, githubToken);
-
-            // 8) Persist each project with a subdirectory URL
-            String cleanRepoUrl = repoUrl.endsWith(".git") ? repoUrl.substring(0, repoUrl.length() - 4) : repoUrl;
-            for (Project project : savedProjects) {
-                project.setRootDirectoryName(microserviceJdlRequest.getRootDirectoryName());
-                project.setGithubUrl(cleanRepoUrl + "/tree/main/" + project.getName());
-                projectService.createProject(project, project.getAdmin());
-            }
+            // 2) Auth user
+            User user = userService.findUserProfileByJwt(jwt);
 
-            logger.info("Microservices generated and pushed to GitHub (single workflow at root).");
-            return ResponseEntity.ok("All microservices created and pushed successfully.");
+            // 3) Queue the generation
+            GenerationOptions options = new GenerationOptions(projectPath, githubUsername, githubToken, githubOrganization,
+                    cloudProvider, cloudService, accountId, region);
+            GenerationJob job = generationJobService.submitMicroservices(spec, options, delivery, user);
+            return accepted(job);
 
-        } catch (GitHubApiException e) {
-            logger.warn("GitHub API Error: " + e.getMessage());
-            return ResponseEntity.status(e.getStatusCode()).body("GitHub API Error: " + e.getMessage());
+        } catch (GenerationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Generation queue is full, please retry later.");
         } catch (Exception e) {
             logger.warn("Generation Error: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error: " + e.getMessage());
-        } finally {
-            // 9) Optional cleanup — keep as per your current behavior
-            deleteProjectDirectory(new File(rootDirPath));
         }
     }
 
-    /**
-     * Builds a list of tags for a given JDL request.
-     *
-     * @param app JDL request representing a microservice application.
-     * @return List of tags describing the project.
-     */
-    private List<String> buildTags(JdlRequest app) {
-        List<String> tags = new ArrayList<>();
-        tags.add("SpringBoot");
-        tags.add(app.getBuildTool());
-        tags.add(app.getDatabaseType());
-        if (app.getClientFramework() != null && !app.getClientFramework().isEmpty()) {
-            tags.add(app.getClientFramework());
-        }
-        return tags;
-    }
-
-
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.itstrat.acmf.apis.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class GenerationJobDTO {
+    private String id;
+    private String type;
+    private String delivery;
+    private String name;
+    private String status;
+    private String stage;
+    private List<String> completedStages;
+    private int progress;
+    private String message;
+    private String githubUrl;
+    private String error;
+    private Map<String, String> applicationErrors;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,15 @@
+package com.itstrat.acmf.apis.entity;
+
+/**
+ * How the project generated by a job is handed to its owner.
+ */
+public enum GenerationDelivery {
+    /**
+     * Pushed to a GitHub repository created for it, and saved as a project.
+     */
+    GITHUB,
+    /**
+     * Kept in the workspace and downloaded as a ZIP archive; nothing is created on GitHub.
+     */
+    ARCHIVE
+}
@@ -0,0 +1,277 @@
+package com.itstrat.acmf.apis.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tracks one asynchronous project generation: which stage it is in, how far it
+ * has progressed and, once finished, its outcome.
+ *
+ * <p>Jobs are stored in the {@code generation_job} table, which doubles as the
+ * generation queue shared by all backend replicas: a worker claims a queued job
+ * by taking a lease on it ({@link #leaseOwner}, {@link #leaseExpiresAt}) and keeps
+ * renewing it while the job runs. A job whose lease expired is claimed again by
+ * another worker.</p>
+ *
+ * <p>Every stage of the pipeline that finishes is recorded as a checkpoint
+ * ({@link #completedStages}) and the workspace it produced ({@link #workspacePath})
+ * is kept when another stage fails, so a re-claimed or retried job only runs the
+ * stages it has not completed yet instead of generating again.</p>
+ *
+ * <p>A job delivered as an {@link GenerationDelivery#ARCHIVE archive} skips the
+ * GitHub stages and keeps its workspace once it succeeded, until it is downloaded
+ * or the job is purged.</p>
+ *
+ * <p>While running, an instance is updated by the generation threads and read by
+ * request threads polling the job status, so the progress fields are volatile.</p>
+ */
+@Entity
+@Table(name = "generation_job")
+@Getter
+@NoArgsConstructor
+public class GenerationJob {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private GenerationJobType type;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private Long ownerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private GenerationDelivery delivery = GenerationDelivery.GITHUB;
+
+    /**
+     * JSON of the {@link JdlRequest} or {@link MicroserviceJdlRequest} to generate.
+     */
+    @Setter
+    @Column(nullable = false, columnDefinition = "text")
+    private String request;
+
+    /**
+     * JSON of the {@link GenerationOptions}; the GitHub token is removed once the job finishes.
+     */
+    @Setter
+    @Column(nullable = false, columnDefinition = "text")
+    private String options;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private volatile GenerationJobStatus status = GenerationJobStatus.QUEUED;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private volatile GenerationStage stage = GenerationStage.QUEUED;
+
+    private volatile int progress;
+
+    @Column(columnDefinition = "text")
+    private volatile String message;
+
+    /**
+     * URL of the GitHub repository, set once it is created so a resumed run does not create it again.
+     */
+    private volatile String githubUrl;
+
+    /**
+     * Stages completed so far; stages may complete out of order as independent ones run concurrently.
+     */
+    @Convert(converter = GenerationStagesConverter.class)
+    private volatile Set<GenerationStage> completedStages = Set.of();
+
+    /**
+     * Directory the project is generated in, kept until the job succeeds, or until it is
+     * purged for a job delivered as an archive.
+     */
+    private volatile String workspacePath;
+
+    @Column(columnDefinition = "text")
+    private volatile String error;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "generation_job_application_error", joinColumns = @JoinColumn(name = "job_id"))
+    @MapKeyColumn(name = "application")
+    @Column(name = "error", columnDefinition = "text")
+    private Map<String, String> applicationErrors = new HashMap<>();
+
+    private int attempts;
+
+    private String leaseOwner;
+
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * Set on the instance held by a worker when its lease was taken over by another
+     * worker; the run then stops before its next stage.
+     */
+    @Transient
+    private volatile boolean leaseLost;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private volatile LocalDateTime startedAt;
+
+    private volatile LocalDateTime finishedAt;
+
+    public GenerationJob(GenerationJobType type, String name, Long ownerId, GenerationDelivery delivery) {
+        this.id = UUID.randomUUID().toString();
+        this.type = type;
+        this.name = name;
+        this.ownerId = ownerId;
+        this.delivery = delivery;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    /**
+     * Takes the lease on this job for the given worker and marks it running.
+     */
+    public void claim(String workerId, LocalDateTime leaseExpiresAt) {
+        this.leaseOwner = workerId;
+        this.leaseExpiresAt = leaseExpiresAt;
+        this.attempts++;
+        this.status = GenerationJobStatus.RUNNING;
+        this.stage = GenerationStage.QUEUED;
+        this.progress = 0;
+        this.error = null;
+        this.startedAt = LocalDateTime.now();
+        if (completedStages.isEmpty()) {
+            // Errors of applications generated before a checkpoint still hold when resuming
+            synchronized (this) {
+                applicationErrors.clear();
+            }
+        }
+    }
+
+    /**
+     * Records that the lease of this run was taken over by another worker.
+     */
+    public void loseLease() {
+        this.leaseLost = true;
+    }
+
+    /**
+     * Queues a failed job again with fresh attempts; it resumes with the stages it has not completed.
+     */
+    public void requeue() {
+        this.status = GenerationJobStatus.QUEUED;
+        this.stage = GenerationStage.QUEUED;
+        this.progress = 0;
+        this.attempts = 0;
+        this.error = null;
+        this.finishedAt = null;
+    }
+
+    /**
+     * Reports that the given stage started. Progress never goes back, as stages may
+     * start out of order when independent ones run concurrently.
+     */
+    public synchronized void advance(GenerationStage stage) {
+        this.stage = stage;
+        this.progress = Math.max(progress, stage.getProgress());
+    }
+
+    /**
+     * Records that the given stage completed.
+     */
+    public synchronized void checkpoint(GenerationStage stage) {
+        EnumSet<GenerationStage> stages = EnumSet.of(stage);
+        stages.addAll(completedStages);
+        this.completedStages = Collections.unmodifiableSet(stages);
+    }
+
+    /**
+     * Whether the given stage completed, in this run or an earlier one.
+     */
+    public boolean hasCompleted(GenerationStage stage) {
+        return completedStages.contains(stage);
+    }
+
+    /**
+     * Forgets the checkpoints, e.g. when the workspace they refer to is gone. The
+     * repository, once created, is kept.
+     */
+    public void resetCheckpoints() {
+        this.completedStages = Set.of();
+    }
+
+    public void setWorkspacePath(String workspacePath) {
+        this.workspacePath = workspacePath;
+    }
+
+    public void setGithubUrl(String githubUrl) {
+        this.githubUrl = githubUrl;
+    }
+
+    public synchronized void setProgress(int progress) {
+        this.progress = Math.max(this.progress, progress);
+    }
+
+    /**
+     * Records that one application of a microservice system could not be generated
+     * while the others carry on.
+     */
+    public synchronized void recordApplicationError(String applicationName, String error) {
+        applicationErrors.put(applicationName, error != null ? error : "Unknown error");
+    }
+
+    public synchronized Map<String, String> getApplicationErrors() {
+        return Map.copyOf(applicationErrors);
+    }
+
+    public void succeed(String message, String githubUrl) {
+        this.message = message;
+        this.githubUrl = githubUrl;
+        this.stage = GenerationStage.COMPLETED;
+        this.progress = GenerationStage.COMPLETED.getProgress();
+        this.status = GenerationJobStatus.SUCCEEDED;
+        finish();
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        this.status = GenerationJobStatus.FAILED;
+        finish();
+    }
+
+    /**
+     * Copies the outcome of a run (held by the worker) onto this persistent instance.
+     */
+    public synchronized void applyOutcome(GenerationJob run) {
+        this.status = run.status;
+        this.stage = run.stage;
+        this.progress = run.progress;
+        this.message = run.message;
+        this.githubUrl = run.githubUrl;
+        this.completedStages = run.completedStages;
+        this.workspacePath = run.workspacePath;
+        this.error = run.error;
+        this.finishedAt = run.finishedAt;
+        this.applicationErrors.clear();
+        this.applicationErrors.putAll(run.getApplicationErrors());
+        this.leaseOwner = null;
+        this.leaseExpiresAt = null;
+    }
+
+    private void finish() {
+        this.finishedAt = LocalDateTime.now();
+    }
+}
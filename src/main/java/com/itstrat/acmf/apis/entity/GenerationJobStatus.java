@@ -0,0 +1,15 @@
+package com.itstrat.acmf.apis.entity;
+
+/**
+ * Lifecycle of an asynchronous project generation job.
+ */
+public enum GenerationJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
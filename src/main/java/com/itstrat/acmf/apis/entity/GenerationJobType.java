@@ -0,0 +1,9 @@
+package com.itstrat.acmf.apis.entity;
+
+/**
+ * Kind of generation a job performs.
+ */
+public enum GenerationJobType {
+    MONOLITH,
+    MICROSERVICES
+}
@@ -0,0 +1,96 @@
+package com.itstrat.acmf.apis.entity;
+
+/**
+ * Request parameters shared by the monolith and microservice generate endpoints
+ * (workspace location, GitHub credentials and cloud deployment target).
+ */
+public class GenerationOptions {
+
+    private String projectPath;
+    private String githubUsername;
+    private String githubToken;
+    private String githubOrganization;
+    private String cloudProvider;
+    private String cloudService;
+    private String accountId;
+    private String region;
+
+    public GenerationOptions() {
+    }
+
+    public GenerationOptions(String projectPath, String githubUsername, String githubToken, String githubOrganization,
+                             String cloudProvider, String cloudService, String accountId, String region) {
+        this.projectPath = projectPath;
+        this.githubUsername = githubUsername;
+        this.githubToken = githubToken;
+        this.githubOrganization = githubOrganization;
+        this.cloudProvider = cloudProvider;
+        this.cloudService = cloudService;
+        this.accountId = accountId;
+        this.region = region;
+    }
+
+    public String getProjectPath() {
+        return projectPath;
+    }
+
+    public void setProjectPath(String projectPath) {
+        this.projectPath = projectPath;
+    }
+
+    public String getGithubUsername() {
+        return githubUsername;
+    }
+
+    public void setGithubUsername(String githubUsername) {
+        this.githubUsername = githubUsername;
+    }
+
+    public String getGithubToken() {
+        return githubToken;
+    }
+
+    public void setGithubToken(String githubToken) {
+        this.githubToken = githubToken;
+    }
+
+    public String getGithubOrganization() {
+        return githubOrganization;
+    }
+
+    public void setGithubOrganization(String githubOrganization) {
+        this.githubOrganization = githubOrganization;
+    }
+
+    public String getCloudProvider() {
+        return cloudProvider;
+    }
+
+    public void setCloudProvider(String cloudProvider) {
+        this.cloudProvider = cloudProvider;
+    }
+
+    public String getCloudService() {
+        return cloudService;
+    }
+
+    public void setCloudService(String cloudService) {
+        this.cloudService = cloudService;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(String accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+}
@@ -0,0 +1,368 @@
+package com.itstrat.acmf.apis.entity;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An application to generate, compiled once per job from its {@link JdlRequest} and
+ * shared by every generator of the job (.yo-rc.json, Dockerfile, workflow, deployment
+ * files and project metadata).
+ *
+ * <p>Compiling validates the request and normalizes it: the application type and
+ * build tool become enums, the server port is parsed, JHipster defaults (languages,
+ * reactive gateways, monolith-only websockets) are applied and the tags and image
+ * names are derived. The spec is immutable, so no generator sees the request change
+ * or repeats that work.</p>
+ *
+ * <p>The spec is compiled when the job is submitted and stored with it as JSON, so
+ * the worker running the job reads it back as it is instead of compiling it again.</p>
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public final class GenerationSpec {
+
+    /**
+     * Port applications listen on when the request does not set one.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String PUBLIC_REGISTRY = "public.ecr.aws/c4d3l3m6/";
+
+    public enum ApplicationType {
+        MONOLITH("monolith"),
+        GATEWAY("gateway"),
+        MICROSERVICE("microservice");
+
+        private final String value;
+
+        ApplicationType(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Name of the type in JHipster configuration.
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public enum BuildTool {
+        MAVEN("maven", "target/*.jar"),
+        GRADLE("gradle", "build/libs/*.jar");
+
+        private final String value;
+
+        private final String jarPath;
+
+        BuildTool(String value, String jarPath) {
+            this.value = value;
+            this.jarPath = jarPath;
+        }
+
+        /**
+         * Name of the build tool in JHipster configuration.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Where the build puts the application jar, relative to the project directory.
+         */
+        public String getJarPath() {
+            return jarPath;
+        }
+    }
+
+    private final String baseName;
+    private final ApplicationType applicationType;
+    private final String packageName;
+    private final String authenticationType;
+    private final BuildTool buildTool;
+    private final String clientFramework;
+    private final String databaseType;
+    private final String prodDatabaseType;
+    private final String cacheProvider;
+    private final Integer serverPort;
+    private final boolean enableHibernateCache;
+    private final String jwtSecretKey;
+    private final String serviceDiscoveryType;
+    private final boolean reactive;
+    private final String nativeLanguage;
+    private final List<String> languages;
+    private final boolean enableTranslation;
+    private final boolean microfrontend;
+    private final String websocket;
+    private final String clientPackageManager;
+    private final List<String> clientTheme;
+    private final List<String> testFrameworks;
+    private final List<String> tags;
+
+    private GenerationSpec(JdlRequest request) {
+        if (isBlank(request.getBaseName())) {
+            throw new IllegalArgumentException("Base name is required.");
+        }
+        this.baseName = request.getBaseName();
+        this.applicationType = parse(ApplicationType.class, request.getApplicationType(), "application type", baseName);
+        this.packageName = request.getPackageName();
+        this.authenticationType = request.getAuthenticationType();
+        this.buildTool = parse(BuildTool.class, request.getBuildTool(), "build tool", baseName);
+        this.clientFramework = request.getClientFramework();
+        this.databaseType = request.getDatabaseType();
+        this.prodDatabaseType = request.getProdDatabaseType();
+        this.cacheProvider = request.getCacheProvider();
+        this.serverPort = parsePort(request.getServerPort(), baseName);
+        this.enableHibernateCache = request.isEnableHibernateCache();
+        this.jwtSecretKey = request.getJwtSecretKey();
+        this.serviceDiscoveryType = request.getServiceDiscoveryType();
+        // Gateways are always reactive
+        this.reactive = applicationType == ApplicationType.GATEWAY || request.isReactive();
+        this.nativeLanguage = request.getNativeLanguage() != null ? request.getNativeLanguage() : "en";
+        this.languages = request.getOtherLanguages() != null && !request.getOtherLanguages().isEmpty()
+                ? List.copyOf(request.getOtherLanguages()) : List.of("en");
+        this.enableTranslation = request.isEnableTranslation();
+        this.microfrontend = request.isMicrofrontend();
+        // Websockets are only generated for monoliths
+        this.websocket = applicationType == ApplicationType.MONOLITH ? request.getWebsocket() : null;
+        this.clientPackageManager = request.getClientPackageManager();
+        this.clientTheme = request.getClientTheme() != null ? List.copyOf(request.getClientTheme()) : List.of();
+        this.testFrameworks = request.getTestFrameworks() != null ? List.copyOf(request.getTestFrameworks()) : List.of();
+
+        List<String> tags = new ArrayList<>();
+        tags.add("SpringBoot");
+        tags.add(buildTool.getValue());
+        if (databaseType != null) {
+            tags.add(databaseType);
+        }
+        if (!isBlank(clientFramework)) {
+            tags.add(clientFramework);
+        }
+        this.tags = List.copyOf(tags);
+    }
+
+    /**
+     * Reads back a spec stored with its job; it was validated when it was compiled.
+     */
+    @JsonCreator
+    private GenerationSpec(@JsonProperty("baseName") String baseName,
+                           @JsonProperty("applicationType") ApplicationType applicationType,
+                           @JsonProperty("packageName") String packageName,
+                           @JsonProperty("authenticationType") String authenticationType,
+                           @JsonProperty("buildTool") BuildTool buildTool,
+                           @JsonProperty("clientFramework") String clientFramework,
+                           @JsonProperty("databaseType") String databaseType,
+                           @JsonProperty("prodDatabaseType") String prodDatabaseType,
+                           @JsonProperty("cacheProvider") String cacheProvider,
+                           @JsonProperty("serverPort") Integer serverPort,
+                           @JsonProperty("enableHibernateCache") boolean enableHibernateCache,
+                           @JsonProperty("jwtSecretKey") String jwtSecretKey,
+                           @JsonProperty("serviceDiscoveryType") String serviceDiscoveryType,
+                           @JsonProperty("reactive") boolean reactive,
+                           @JsonProperty("nativeLanguage") String nativeLanguage,
+                           @JsonProperty("languages") List<String> languages,
+                           @JsonProperty("enableTranslation") boolean enableTranslation,
+                           @JsonProperty("microfrontend") boolean microfrontend,
+                           @JsonProperty("websocket") String websocket,
+                           @JsonProperty("clientPackageManager") String clientPackageManager,
+                           @JsonProperty("clientTheme") List<String> clientTheme,
+                           @JsonProperty("testFrameworks") List<String> testFrameworks,
+                           @JsonProperty("tags") List<String> tags) {
+        this.baseName = baseName;
+        this.applicationType = applicationType;
+        this.packageName = packageName;
+        this.authenticationType = authenticationType;
+        this.buildTool = buildTool;
+        this.clientFramework = clientFramework;
+        this.databaseType = databaseType;
+        this.prodDatabaseType = prodDatabaseType;
+        this.cacheProvider = cacheProvider;
+        this.serverPort = serverPort;
+        this.enableHibernateCache = enableHibernateCache;
+        this.jwtSecretKey = jwtSecretKey;
+        this.serviceDiscoveryType = serviceDiscoveryType;
+        this.reactive = reactive;
+        this.nativeLanguage = nativeLanguage;
+        this.languages = List.copyOf(languages);
+        this.enableTranslation = enableTranslation;
+        this.microfrontend = microfrontend;
+        this.websocket = websocket;
+        this.clientPackageManager = clientPackageManager;
+        this.clientTheme = List.copyOf(clientTheme);
+        this.testFrameworks = List.copyOf(testFrameworks);
+        this.tags = List.copyOf(tags);
+    }
+
+    /**
+     * Validates and normalizes a request.
+     *
+     * @throws IllegalArgumentException If the base name is missing, the application type or
+     *                                  build tool is not supported, or the server port is not a port.
+     */
+    public static GenerationSpec compile(JdlRequest request) {
+        return new GenerationSpec(request);
+    }
+
+    /**
+     * Compiles the requests of the applications of a microservice system.
+     *
+     * @throws IllegalArgumentException If any of them is not valid.
+     */
+    public static List<GenerationSpec> compile(List<JdlRequest> requests) {
+        return requests.stream().map(GenerationSpec::compile).toList();
+    }
+
+    public String getBaseName() {
+        return baseName;
+    }
+
+    public ApplicationType getApplicationType() {
+        return applicationType;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getAuthenticationType() {
+        return authenticationType;
+    }
+
+    public BuildTool getBuildTool() {
+        return buildTool;
+    }
+
+    public String getClientFramework() {
+        return clientFramework;
+    }
+
+    public String getDatabaseType() {
+        return databaseType;
+    }
+
+    public String getProdDatabaseType() {
+        return prodDatabaseType;
+    }
+
+    public String getCacheProvider() {
+        return cacheProvider;
+    }
+
+    /**
+     * Returns the server port the request sets, or null to leave it to JHipster.
+     */
+    public Integer getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * Returns the port the application listens on once deployed.
+     */
+    public int getPort() {
+        return serverPort != null ? serverPort : DEFAULT_PORT;
+    }
+
+    public boolean isEnableHibernateCache() {
+        return enableHibernateCache;
+    }
+
+    public String getJwtSecretKey() {
+        return jwtSecretKey;
+    }
+
+    public String getServiceDiscoveryType() {
+        return serviceDiscoveryType;
+    }
+
+    public boolean isReactive() {
+        return reactive;
+    }
+
+    public String getNativeLanguage() {
+        return nativeLanguage;
+    }
+
+    public List<String> getLanguages() {
+        return languages;
+    }
+
+    public boolean isEnableTranslation() {
+        return enableTranslation;
+    }
+
+    public boolean isMicrofrontend() {
+        return microfrontend;
+    }
+
+    public String getWebsocket() {
+        return websocket;
+    }
+
+    public String getClientPackageManager() {
+        return clientPackageManager;
+    }
+
+    public List<String> getClientTheme() {
+        return clientTheme;
+    }
+
+    public List<String> getTestFrameworks() {
+        return testFrameworks;
+    }
+
+    /**
+     * Tags of the project saved for the application.
+     */
+    public List<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Image of the application in the public ECR registry, run on EC2.
+     */
+    public String getPublicImage() {
+        return PUBLIC_REGISTRY + baseName + ":latest";
+    }
+
+    /**
+     * Image of the application in the private ECR registry of the given account, run on EKS.
+     */
+    public String getPrivateImage(String accountId, String region) {
+        return accountId + ".dkr.ecr." + region + ".amazonaws.com/" + baseName + ":latest";
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String label, String baseName) {
+        if (!isBlank(value)) {
+            for (E constant : type.getEnumConstants()) {
+                if (constant.name().equalsIgnoreCase(value.trim())) {
+                    return constant;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported " + label + " '" + value + "' for " + baseName + ".");
+    }
+
+    private static Integer parsePort(String value, String baseName) {
+        if (isBlank(value)) {
+            return null;
+        }
+        try {
+            int port = Integer.parseInt(value.trim());
+            if (port > 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid server port '" + value + "' for " + baseName + ".");
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
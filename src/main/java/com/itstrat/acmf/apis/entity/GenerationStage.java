@@ -0,0 +1,29 @@
+package com.itstrat.acmf.apis.entity;
+
+/**
+ * Stages of the generation pipeline, in pipeline order, together with the
+ * overall progress (0-100) a job has reached once the stage starts. Stages that
+ * do not depend on each other may run concurrently.
+ */
+public enum GenerationStage {
+    QUEUED(0),
+    GENERATE(10),
+    DOCKERFILE(55),
+    DEPLOYMENT(60),
+    WORKFLOW(70),
+    REPOSITORY(75),
+    PUSH(80),
+    ARCHIVE(80),
+    PERSIST(95),
+    COMPLETED(100);
+
+    private final int progress;
+
+    GenerationStage(int progress) {
+        this.progress = progress;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+}
@@ -0,0 +1,35 @@
+package com.itstrat.acmf.apis.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Stores a set of {@link GenerationStage}s as a comma separated list of their names.
+ */
+@Converter
+public class GenerationStagesConverter implements AttributeConverter<Set<GenerationStage>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Set<GenerationStage> stages) {
+        if (stages == null || stages.isEmpty()) {
+            return null;
+        }
+        return stages.stream().map(Enum::name).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public Set<GenerationStage> convertToEntityAttribute(String column) {
+        if (column == null || column.isBlank()) {
+            return Collections.unmodifiableSet(EnumSet.noneOf(GenerationStage.class));
+        }
+        EnumSet<GenerationStage> stages = EnumSet.noneOf(GenerationStage.class);
+        Arrays.stream(column.split(",")).map(String::trim).map(GenerationStage::valueOf).forEach(stages::add);
+        return Collections.unmodifiableSet(stages);
+    }
+}
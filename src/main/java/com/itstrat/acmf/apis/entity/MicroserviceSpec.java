@@ -0,0 +1,41 @@
+package com.itstrat.acmf.apis.entity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * A microservice system to generate: the root directory of its monorepo and the
+ * {@link GenerationSpec} of each of its applications, compiled once when the job is
+ * submitted and stored with it.
+ */
+public final class MicroserviceSpec {
+
+    private final String rootDirectoryName;
+    private final List<GenerationSpec> applications;
+
+    @JsonCreator
+    private MicroserviceSpec(@JsonProperty("rootDirectoryName") String rootDirectoryName,
+                             @JsonProperty("applications") List<GenerationSpec> applications) {
+        this.rootDirectoryName = rootDirectoryName;
+        this.applications = List.copyOf(applications);
+    }
+
+    /**
+     * Validates and normalizes the request of every application of the system.
+     *
+     * @throws IllegalArgumentException If any of them is not valid.
+     */
+    public static MicroserviceSpec compile(MicroserviceJdlRequest request) {
+        return new MicroserviceSpec(request.getRootDirectoryName(), GenerationSpec.compile(request.getApplications()));
+    }
+
+    public String getRootDirectoryName() {
+        return rootDirectoryName;
+    }
+
+    public List<GenerationSpec> getApplications() {
+        return applications;
+    }
+}
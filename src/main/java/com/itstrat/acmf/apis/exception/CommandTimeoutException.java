@@ -0,0 +1,14 @@
+package com.itstrat.acmf.apis.exception;
+
+public class CommandTimeoutException extends RuntimeException {
+        private final long timeoutSeconds;
+
+        public CommandTimeoutException(String command, long timeoutSeconds) {
+            super("'" + command + "' did not finish within " + timeoutSeconds + " seconds and was killed.");
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        public long getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+}
@@ -0,0 +1,11 @@
+package com.itstrat.acmf.apis.exception;
+
+/**
+ * Thrown when a job is submitted for a name or port another queued or running job already reserved.
+ */
+public class GenerationConflictException extends RuntimeException {
+
+    public GenerationConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,84 @@
+package com.itstrat.acmf.apis.repository;
+
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobStatus;
+import com.itstrat.acmf.apis.entity.GenerationStage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@Repository
+public interface GenerationJobRepository extends JpaRepository<GenerationJob, String> {
+
+    Optional<GenerationJob> findByIdAndOwnerId(String id, Long ownerId);
+
+    long countByStatus(GenerationJobStatus status);
+
+    /**
+     * Takes the queue lock until the transaction ends, so that checking the queue and
+     * inserting into it is atomic across replicas.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(:key)) queue_lock", nativeQuery = true)
+    Integer lockQueue(@Param("key") long key);
+
+    boolean existsByNameAndStatusIn(String name, Collection<GenerationJobStatus> statuses);
+
+    /**
+     * Whether a queued or running monolith job is generated with the given server port.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM acmf.generation_job " +
+            "WHERE type = 'MONOLITH' AND status IN ('QUEUED', 'RUNNING') " +
+            "AND CAST(request AS jsonb) ->> 'serverPort' = CAST(:port AS text))", nativeQuery = true)
+    boolean existsActiveMonolithOnPort(@Param("port") int port);
+
+    @Query("SELECT j.workspacePath FROM GenerationJob j WHERE j.workspacePath IS NOT NULL")
+    List<String> findWorkspacePaths();
+
+    List<GenerationJob> findByStatusInAndWorkspacePathIsNotNullOrderByFinishedAtAsc(Collection<GenerationJobStatus> statuses);
+
+    /**
+     * Locks the given job, so that no other replica claims it until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM GenerationJob j WHERE j.id = :id")
+    Optional<GenerationJob> lockById(@Param("id") String id);
+
+    /**
+     * Locks the oldest job that is queued, or running under an expired lease, skipping
+     * rows another replica is claiming concurrently.
+     */
+    @Query(value = "SELECT * FROM acmf.generation_job " +
+            "WHERE status = 'QUEUED' OR (status = 'RUNNING' AND lease_expires_at < :now) " +
+            "ORDER BY created_at " +
+            "LIMIT 1 " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<GenerationJob> lockNextClaimable(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE GenerationJob j SET j.leaseExpiresAt = :leaseExpiresAt, j.stage = :stage, j.progress = :progress, " +
+            "j.completedStages = :completedStages, j.workspacePath = :workspacePath, j.githubUrl = :githubUrl " +
+            "WHERE j.id = :id AND j.leaseOwner = :leaseOwner AND j.status = 'RUNNING'")
+    int renewLease(@Param("id") String id,
+                   @Param("leaseOwner") String leaseOwner,
+                   @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+                   @Param("stage") GenerationStage stage,
+                   @Param("progress") int progress,
+                   @Param("completedStages") Set<GenerationStage> completedStages,
+                   @Param("workspacePath") String workspacePath,
+                   @Param("githubUrl") String githubUrl);
+
+    @Modifying
+    @Query("DELETE FROM GenerationJob j WHERE j.status IN :statuses AND j.finishedAt < :finishedBefore")
+    int deleteFinishedBefore(@Param("statuses") Collection<GenerationJobStatus> statuses,
+                             @Param("finishedBefore") LocalDateTime finishedBefore);
+}
@@ -0,0 +1,257 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.exception.CommandTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs every child process of the backend: generator containers started through the
+ * Docker CLI, image pulls and short Docker CLI commands. Containers run through the
+ * Docker Engine API and in-process git pushes are bounded by the same limits via
+ * {@link #limited}.
+ *
+ * <p>Each {@link Type} of command has its own concurrency limit and timeout
+ * ({@code acmf.commands.<type>.max-concurrent}, {@code acmf.commands.<type>.timeout-seconds}),
+ * and all commands together are capped by {@code acmf.commands.max-concurrent}. A command
+ * that outlives its timeout is killed together with its child processes. Output is
+ * drained on a shared daemon pool while the caller waits, and every run is timed in
+ * the {@code acmf.command} Micrometer timer, tagged by type and outcome.</p>
+ */
+@Component
+public class CommandRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandRunner.class);
+
+    /**
+     * Kinds of commands, each with its own limits.
+     */
+    public enum Type {
+        GENERATOR("generator", 4, 1800),
+        GIT("git", 4, 600),
+        DOCKER("docker", 8, 60),
+        PULL("pull", 1, 1800);
+
+        private final String key;
+        private final int defaultMaxConcurrent;
+        private final long defaultTimeoutSeconds;
+
+        Type(String key, int defaultMaxConcurrent, long defaultTimeoutSeconds) {
+            this.key = key;
+            this.defaultMaxConcurrent = defaultMaxConcurrent;
+            this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+        }
+    }
+
+    private final Map<Type, Semaphore> typePermits = new EnumMap<>(Type.class);
+
+    private final Map<Type, Long> timeouts = new EnumMap<>(Type.class);
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * Output draining blocks on pipes for the whole life of a process; Java 17 has no
+     * virtual threads, so this is a cached pool of daemon threads.
+     */
+    private final ExecutorService ioExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "command-io-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Semaphore globalPermits;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${acmf.commands.max-concurrent:12}")
+    private int maxConcurrent;
+
+    @PostConstruct
+    public void init() {
+        globalPermits = new Semaphore(maxConcurrent, true);
+        for (Type type : Type.values()) {
+            String prefix = "acmf.commands." + type.key;
+            typePermits.put(type, new Semaphore(
+                    environment.getProperty(prefix + ".max-concurrent", Integer.class, type.defaultMaxConcurrent), true));
+            timeouts.put(type, environment.getProperty(prefix + ".timeout-seconds", Long.class, type.defaultTimeoutSeconds));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs a command, stderr merged into stdout.
+     *
+     * @param type       Kind of command, selecting its limits.
+     * @param command    Command and arguments.
+     * @param workingDir Working directory, or {@code null} for the current one.
+     * @param output     Receives the output line by line.
+     * @return The exit code of the command.
+     * @throws CommandTimeoutException If the command did not finish in time and was killed.
+     */
+    public int run(Type type, List<String> command, File workingDir, Consumer<String> output) throws IOException, InterruptedException {
+        return run(type, command, workingDir, null, output);
+    }
+
+    /**
+     * Runs an interactive command, stderr merged into stdout.
+     *
+     * @param input Given every output line, returns what to write to stdin, or {@code null} to write nothing.
+     * @see #run(Type, List, File, Consumer)
+     */
+    public int run(Type type, List<String> command, File workingDir, Function<String, String> input,
+                   Consumer<String> output) throws IOException, InterruptedException {
+        return limited(type, () -> execute(command, workingDir, timeoutSeconds(type), input, output));
+    }
+
+    /**
+     * Runs work that does not fork a process but should count against the same limits
+     * and metrics, such as a container run through the Docker Engine API. An
+     * {@code Integer} result is taken as an exit code.
+     */
+    public <T> T limited(Type type, Call<T> call) throws IOException, InterruptedException {
+        Semaphore permits = typePermits.get(type);
+        permits.acquire();
+        try {
+            globalPermits.acquire();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "failure";
+            try {
+                T result = call.call();
+                outcome = result instanceof Integer exitCode && exitCode != 0 ? "failure" : "success";
+                return result;
+            } catch (CommandTimeoutException e) {
+                outcome = "timeout";
+                throw e;
+            } finally {
+                sample.stop(meterRegistry.timer("acmf.command", "type", type.key, "outcome", outcome));
+                globalPermits.release();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Timeout of the given kind of command.
+     */
+    public long timeoutSeconds(Type type) {
+        return timeouts.get(type);
+    }
+
+    /**
+     * Work run under the limits of a kind of command.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    private int execute(List<String> command, File workingDir, long timeoutSeconds, Function<String, String> input,
+                        Consumer<String> output) throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true);
+        if (workingDir != null) {
+            processBuilder.directory(workingDir);
+        }
+        Process process = processBuilder.start();
+        if (input == null) {
+            process.getOutputStream().close();
+        }
+        try {
+            Future<?> drain = ioExecutor.submit(() -> {
+                drain(process, input, output);
+                return null;
+            });
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("'{}' timed out after {}s, killing it", describe(command), timeoutSeconds);
+                kill(process);
+                throw new CommandTimeoutException(describe(command), timeoutSeconds);
+            }
+            try {
+                // The pipe closes with the process, unless a grandchild still holds it
+                drain.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                logger.warn("Could not read the output of '{}': {}", describe(command), e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                drain.cancel(true);
+            }
+            return process.exitValue();
+        } finally {
+            if (process.isAlive()) {
+                kill(process);
+            }
+        }
+    }
+
+    private static void drain(Process process, Function<String, String> input, Consumer<String> output) throws IOException {
+        OutputStream stdin = process.getOutputStream();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.accept(line);
+                String reply = input != null ? input.apply(line) : null;
+                if (reply != null) {
+                    try {
+                        stdin.write(reply.getBytes(StandardCharsets.UTF_8));
+                        stdin.flush();
+                    } catch (IOException e) {
+                        // The process closed its stdin, keep reading its output
+                        input = null;
+                    }
+                }
+            }
+        } finally {
+            try {
+                stdin.close();
+            } catch (IOException ignored) {
+                // Already closed by the process
+            }
+        }
+    }
+
+    /**
+     * Kills a process and everything it started.
+     */
+    private static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private static String describe(List<String> command) {
+        return String.join(" ", command.subList(0, Math.min(2, command.size())));
+    }
+}
@@ -0,0 +1,115 @@
+package com.itstrat.acmf.apis.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encrypts the credentials a job keeps in its stored options (the GitHub token) with
+ * AES-GCM, so the {@code generation_job} table never holds them in plaintext.
+ *
+ * <p>Each value is bound to its job: it only decrypts with the id of the job it was
+ * encrypted for. The key is {@code acmf.generation.credentials-key}, shared by all
+ * replicas. Without it, a random key is generated on startup; credentials then only
+ * decrypt on the instance that accepted the job, and a job re-claimed by another
+ * replica, or after a restart, fails and has to be retried with a new token.</p>
+ */
+@Component
+public class CredentialCipher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialCipher.class);
+
+    private static final String PREFIX = "aes-gcm:";
+
+    private static final int IV_LENGTH = 12;
+
+    private static final int TAG_BITS = 128;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${acmf.generation.credentials-key:}")
+    private String configuredKey;
+
+    private SecretKey key;
+
+    @PostConstruct
+    void init() throws GeneralSecurityException {
+        if (configuredKey == null || configuredKey.isBlank()) {
+            logger.warn("acmf.generation.credentials-key is not set, job credentials only decrypt on this instance until it restarts");
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            key = generator.generateKey();
+            return;
+        }
+        byte[] bytes = Base64.getDecoder().decode(configuredKey.trim());
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+            throw new IllegalStateException("acmf.generation.credentials-key must be a Base64 AES key of 16, 24 or 32 bytes");
+        }
+        key = new SecretKeySpec(bytes, "AES");
+    }
+
+    /**
+     * Encrypts a credential of the given job.
+     *
+     * @return The encrypted value, or null for a null credential.
+     */
+    public String encrypt(String jobId, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, jobId, iv);
+            byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            return PREFIX + Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length)
+                    .put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt the credentials of job " + jobId, e);
+        }
+    }
+
+    /**
+     * Decrypts a credential of the given job.
+     *
+     * @return The credential, or null for a null value.
+     * @throws IllegalStateException If the value was not encrypted for this job with this key.
+     */
+    public String decrypt(String jobId, String value) {
+        if (value == null) {
+            return null;
+        }
+        if (!value.startsWith(PREFIX)) {
+            throw new IllegalStateException("Credentials of job " + jobId + " are not encrypted");
+        }
+        try {
+            byte[] bytes = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, jobId, Arrays.copyOf(bytes, IV_LENGTH));
+            return new String(cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Credentials of job " + jobId + " cannot be decrypted on this instance,"
+                    + " retry the job with a new GitHub token", e);
+        }
+    }
+
+    private Cipher cipher(int mode, String jobId, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(jobId.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
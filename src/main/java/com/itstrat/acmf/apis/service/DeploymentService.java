@@ -1,19 +1,21 @@
 package com.itstrat.acmf.apis.service;
 
-import com.itstrat.acmf.apis.entity.JdlRequest;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.util.stream.Collectors;
 
 
 @Service
@@ -21,138 +23,22 @@ public class DeploymentService {
 
     private static final Logger LOGGER = Logger.getLogger(DeploymentService.class.getName());
 
-    public static void applicationDeployment(String appName, String newProjectPath, String cloudProvider, String cloudService , String awsAccountId , String region , String githubOrg, String applicationType) {
+    @Value("${acmf.deployment.kubernetes.database-storage:1Gi}")
+    private String databaseStorage;
+
+    public void applicationDeployment(String appName, String newProjectPath, String cloudProvider, String cloudService , String awsAccountId , String region , String githubOrg, GenerationSpec application) {
 
 
         if ("EC2".equalsIgnoreCase(cloudService)) {
-            LOGGER.info("Starting JHipster Docker Compose deployment for app: " + appName);
-            if (!runJHipsterDockerCompose(newProjectPath)) {
-                LOGGER.severe("JHipster Docker Compose execution failed.");
-                return;
-            }
-            updateImageName(newProjectPath, appName , awsAccountId , region);
+            LOGGER.info("Creating docker-compose.yml for app: " + appName);
+            createDockerCompose(newProjectPath, application);
         }
 
         if ("EKS".equalsIgnoreCase(cloudService)) {
-            createKubernetesDirectory(newProjectPath , appName , applicationType , awsAccountId , region);
-        }
-
-
-    }
-
-    private static void updateImageName(String newProjectPath , String appName, String accountId ,String region){
-        Path dockerComposePath = Paths.get(newProjectPath, "docker-compose.yml");
-        String newImageValue = String.format("public.ecr.aws/c4d3l3m6/%s:latest", appName);
-
-        try {
-            // Read the file content
-            String content = Files.lines(dockerComposePath)
-                    .map(line -> line.contains("image: " + appName) ? "  image: " + newImageValue : line)
-                    .collect(Collectors.joining("\n"));
-
-            // Write back to the file
-            Files.write(dockerComposePath, content.getBytes());
-            System.out.println("Updated docker-compose.yml successfully.");
-        } catch (IOException e) {
-            System.err.println("Error updating docker-compose.yml: " + e.getMessage());
+            createKubernetesDirectory(newProjectPath, application, awsAccountId, region);
         }
-    }
-
-    private static boolean runJHipsterDockerCompose(String newProjectPath) {
-        try {
-            // Start the JHipster Docker Compose process
-//            String dockerCmd = String.format(
-//                    "docker run --rm -i -v \"%s:/home/jhipster/app\" -w /home/jhipster/app " +
-//                            "jhipster/jhipster:v8.11.0 jhipster docker-compose",
-//                    new File(newProjectPath).getAbsolutePath()
-//            );
-//            String dockerCmd = String.format(
-//                    "docker run --rm -i " +
-//                            "-v /var/run/docker.sock:/var/run/docker.sock " + // CRITICAL: Access host Docker
-//                            "-v \"%s:/home/jhipster/app\" " +
-//                            "-w /home/jhipster/app " +
-//                            "jhipster/jhipster:v8.11.0 jhipster docker-compose --skip-checks", // Added --skip-checks to avoid strict version check
-//                    new File(newProjectPath).getAbsolutePath()
-//            );
-
-            String hostRootPath = System.getenv("HOST_ROOT_PATH");
-            String projectFolder = new File(newProjectPath).getName(); // e.g., "test1"
-            String mountPath = (hostRootPath != null && !hostRootPath.isEmpty())
-                    ? hostRootPath + "/" + projectFolder
-                    : new File(newProjectPath).getAbsolutePath();
-
-            String dockerCmd = String.format(
-                    "docker run --rm -i " +
-                            "-v /var/run/docker.sock:/var/run/docker.sock " +
-                            "-v \"%s:/home/jhipster/app\" " + // Use calculated Mount Path
-                            "-w /home/jhipster/app " +
-                            "jhipster/jhipster:v8.11.0 jhipster docker-compose --skip-checks",
-                    mountPath
-            );
-            ProcessBuilder processBuilder = createProcessBuilder(dockerCmd);
-            processBuilder.redirectErrorStream(true);
-//            ProcessBuilder processBuilder = new ProcessBuilder("cmd.exe", "/c", "jhipster docker-compose");
-//            processBuilder.directory(new File(newProjectPath));
-
-            Process process = processBuilder.start();
-            LOGGER.info("JHipster Docker Compose command started successfully in: " + newProjectPath);
-
-            Thread outputThread = new Thread(() -> {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                     BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()))) {
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        LOGGER.info("[JHipster Prompt]: " + line);
-                            LOGGER.info("Providing input: ../");
-                            writer.write("../");
-                            writer.newLine();
-                            writer.flush();
-                            LOGGER.info("Providing input: <Enter>");
-                            writer.newLine();
-                            writer.flush();
-                            LOGGER.info("Providing input: <Enter>");
-                            writer.newLine();
-                            writer.flush();
-
-                    }
-                } catch (IOException e) {
-                    LOGGER.log(Level.SEVERE, "Error reading process output or writing input", e);
-                }
-            });
-
-            // Thread to handle process error stream
-            Thread errorThread = new Thread(() -> {
-                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                    String errorLine;
-                    while ((errorLine = errorReader.readLine()) != null) {
-                        LOGGER.severe("[JHipster Error]: " + errorLine);
-                    }
-                } catch (IOException e) {
-                    LOGGER.log(Level.SEVERE, "Error reading process error stream", e);
-                }
-            });
-
-            outputThread.start();
-            errorThread.start();
 
-            outputThread.join();
-            errorThread.join();
 
-            int exitCode = process.waitFor();
-            if (exitCode == 0) {
-                LOGGER.info("JHipster Docker Compose completed successfully.");
-                return true;
-            } else {
-                LOGGER.severe("JHipster Docker Compose failed with exit code: " + exitCode);
-                return false;
-            }
-
-        } catch (IOException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            LOGGER.log(Level.SEVERE, "Error running JHipster Docker Compose", e);
-            return false;
-        }
     }
 
 //    public static void createKubernetesDirectory(String newProjectPath, String appName , String applicationType , String accountId , String region) {
@@ -236,177 +122,390 @@ public class DeploymentService {
 //        }
 //
 
-public static void createKubernetesDirectory(String newProjectPath, String appName , String applicationType , String accountId , String region) {
-    Path kubernetesPath = Paths.get(newProjectPath, "kubernetes");
-    Path yoRcFilePath = kubernetesPath.resolve(".yo-rc.json");
+    /**
+     * Renders the docker-compose.yml of a monolith in process, like the one of
+     * microservices: the application from its public ECR image and, as declared in its
+     * spec, its production database and its Redis or Memcached cache. Caches embedded
+     * in the application (Caffeine, Ehcache, Hazelcast, Infinispan) need no service.
+     */
+    public void createDockerCompose(String newProjectPath, GenerationSpec application) {
+        String name = application.getBaseName();
+        Path dockerComposePath = Paths.get(newProjectPath, "docker-compose.yml");
+        String port = String.valueOf(application.getPort());
+        DeploymentDatabase database = DeploymentDatabase.of(application.getProdDatabaseType());
+        String cache = application.getCacheProvider() == null ? "" : application.getCacheProvider().toLowerCase();
+        List<String> dependencies = new ArrayList<>();
 
-    try {
-        if (!Files.exists(kubernetesPath)) {
-            Files.createDirectories(kubernetesPath);
-            LOGGER.info("Kubernetes directory created at: " + kubernetesPath.toString());
+        List<String> lines = new ArrayList<>();
+        lines.add("name: " + name);
+        lines.add("services:");
+        lines.add("  " + name + ":");
+        lines.add("    image: " + application.getPublicImage());
+        lines.add("    container_name: " + name);
+        lines.add("    restart: unless-stopped");
+        lines.add("    ports:");
+        lines.add("      - \"" + port + ":" + port + "\"");
+        lines.add("    environment:");
+        lines.add("      - SPRING_PROFILES_ACTIVE=prod");
+        if (database != null) {
+            database.springSettings(name, name + "-" + database.id)
+                    .forEach((key, value) -> lines.add("      - " + key + "=" + value));
+            dependencies.add(name + "-" + database.id);
         }
-
-        // 1. Create the .yo-rc.json file as before
-        String yoRcContent = "{\n" +
-                "  \"generator-jhipster\": {\n" +
-                "    \"appsFolders\": [\"" + appName + "\"],\n" +
-                "    \"deploymentApplicationType\": \""+ applicationType +"\",\n" +
-                "    \"directoryPath\": \"../../\",\n" +
-                "    \"dockerPushCommand\": \"docker push\",\n" +
-                "    \"dockerRepositoryName\": \"\",\n" +
-                "    \"ingressDomain\": null,\n" +
-                "    \"ingressType\": null,\n" +
-                "    \"kubernetesNamespace\": \"default\",\n" +
-                "    \"kubernetesServiceType\": \"LoadBalancer\",\n" +
-                "    \"kubernetesStorageClassName\": null,\n" +
-                "    \"kubernetesUseDynamicStorage\": false,\n" +
-                "    \"monitoring\": \"no\",\n" +
-                "    \"serviceDiscoveryType\": \"no\"\n" +
-                "  }\n" +
-                "}";
-
-        Files.write(yoRcFilePath, yoRcContent.getBytes());
-        LOGGER.info(".yo-rc.json file created at: " + yoRcFilePath.toString());
-
-        // 2. Calculate the Host Path for correct Volume Mounting
-        String hostRootPath = System.getenv("HOST_ROOT_PATH");
-        String projectFolder = new File(newProjectPath).getName(); // e.g. "test1"
-        String mountPath;
-
-        if (hostRootPath != null && !hostRootPath.isEmpty()) {
-            // EC2 Environment: Use the Host path + project name + kubernetes folder
-            mountPath = hostRootPath + "/" + projectFolder + "/kubernetes";
-        } else {
-            // Local Environment: Use absolute path
-            mountPath = kubernetesPath.toAbsolutePath().toString().replace("\\", "/");
+        if ("redis".equals(cache)) {
+            lines.add("      - JHIPSTER_CACHE_REDIS_SERVER=redis://" + name + "-redis:6379");
+            lines.add("      - JHIPSTER_CACHE_REDIS_CLUSTER=false");
+            dependencies.add(name + "-redis");
+        } else if ("memcached".equals(cache)) {
+            lines.add("      - JHIPSTER_CACHE_MEMCACHED_SERVERS=" + name + "-memcached:11211");
+            dependencies.add(name + "-memcached");
+        }
+        if (!dependencies.isEmpty()) {
+            lines.add("    depends_on:");
+            dependencies.forEach(dependency -> lines.add("      - " + dependency));
         }
 
-        // 3. Construct Docker Command
-        // -v mounts the host path to the container path
-        // --skip-checks avoids the "Docker version" error you saw earlier
-        String dockerCmd = String.format(
-                "docker run --rm -i " +
-                        "-v /var/run/docker.sock:/var/run/docker.sock " +
-                        "-v \"%s:/home/jhipster/app\" " +
-                        "-w /home/jhipster/app " +
-                        "jhipster/jhipster:v8.11.0 jhipster kubernetes --force --skip-checks",
-                mountPath
-        );
-
-        // 4. Run the command using the OS-agnostic helper
-        ProcessBuilder processBuilder = createProcessBuilder(dockerCmd);
-        processBuilder.redirectErrorStream(true);
-
-        Process process = processBuilder.start();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                LOGGER.info("[K8s Gen]: " + line);
+        if (database != null) {
+            lines.add("  " + name + "-" + database.id + ":");
+            lines.add("    image: " + database.image);
+            lines.add("    restart: unless-stopped");
+            Map<String, String> env = database.containerEnv(name);
+            if (!env.isEmpty()) {
+                lines.add("    environment:");
+                env.forEach((key, value) -> lines.add("      - " + key + "=" + value));
             }
+            lines.add("    volumes:");
+            lines.add("      - " + name + "-" + database.id + "-data:" + database.dataPath);
         }
-
-        int exitCode = process.waitFor();
-
-        if (exitCode == 0) {
-            LOGGER.info("Successfully executed the 'jhipster kubernetes' command.");
-        } else {
-            LOGGER.warning("The 'jhipster kubernetes' command failed with exit code " + exitCode);
+        if ("redis".equals(cache)) {
+            lines.add("  " + name + "-redis:");
+            lines.add("    image: redis:7.4");
+            lines.add("    restart: unless-stopped");
+        } else if ("memcached".equals(cache)) {
+            lines.add("  " + name + "-memcached:");
+            lines.add("    image: memcached:1.6");
+            lines.add("    restart: unless-stopped");
         }
 
-        // 5. Post-process YAML files
-        Path yamlFilePath = kubernetesPath.resolve(appName + "-k8s/" + appName + "-deployment.yml");
-        Path serviceFilePath = kubernetesPath.resolve(appName + "-k8s/" + appName + "-service.yml");
-
-        if (Files.exists(yamlFilePath)) {
-            modifyDeploymentYaml(yamlFilePath, appName, accountId, region);
-        }
-        if (Files.exists(serviceFilePath)) {
-            modifyServiceYaml(serviceFilePath);
+        if (database != null) {
+            lines.add("");
+            lines.add("volumes:");
+            lines.add("  " + name + "-" + database.id + "-data:");
         }
 
-    } catch (IOException | InterruptedException e) {
-        LOGGER.log(Level.SEVERE, "Error creating Kubernetes directory", e);
+        try {
+            Files.write(dockerComposePath, lines);
+            LOGGER.info("docker-compose.yml created at: " + dockerComposePath);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error creating docker-compose.yml", e);
+        }
     }
-}
-        private static void modifyServiceYaml(Path serviceFilePath) {
+
+    /**
+     * Renders the Kubernetes manifests of a monolith in {@code kubernetes/<app>-k8s}, in
+     * process like those of microservices: a Deployment pulling its ECR image, a
+     * LoadBalancer Service on port 80, a ConfigMap with its Spring settings and, when the
+     * cluster can run its production database, a StatefulSet of it with a headless
+     * Service. {@code kubernetes/kubectl-apply.sh} applies them, as the EKS workflow expects.
+     */
+    public void createKubernetesDirectory(String newProjectPath, GenerationSpec application, String accountId, String region) {
+        String name = application.getBaseName();
+        Path kubernetesPath = Paths.get(newProjectPath, "kubernetes");
+        Path manifestsPath = kubernetesPath.resolve(name + "-k8s");
+        String port = String.valueOf(application.getPort());
+        String image = application.getPrivateImage(accountId, region);
+        DeploymentDatabase database = DeploymentDatabase.of(application.getProdDatabaseType());
+
         try {
-            if (!Files.exists(serviceFilePath)) {
-                LOGGER.warning("Service YAML file not found: " + serviceFilePath.toString());
-                return;
+            Files.createDirectories(manifestsPath);
+            Files.write(manifestsPath.resolve(name + "-deployment.yml"), kubernetesDeployment(name, image, port, List.of(
+                    "          envFrom:",
+                    "            - configMapRef:",
+                    "                name: " + name + "-config",
+                    "          resources:",
+                    "            requests:",
+                    "              memory: 512Mi",
+                    "              cpu: 500m",
+                    "            limits:",
+                    "              memory: 1Gi",
+                    "              cpu: '1'",
+                    "          readinessProbe:",
+                    "            httpGet:",
+                    "              path: /management/health/readiness",
+                    "              port: " + port,
+                    "            initialDelaySeconds: 20",
+                    "            periodSeconds: 15",
+                    "          livenessProbe:",
+                    "            httpGet:",
+                    "              path: /management/health/liveness",
+                    "              port: " + port,
+                    "            initialDelaySeconds: 120"
+            )));
+            Files.write(manifestsPath.resolve(name + "-service.yml"), kubernetesService(name, "80", port));
+            Files.write(manifestsPath.resolve(name + "-configmap.yml"), kubernetesConfigMap(name, database));
+            if (database != null) {
+                Files.write(manifestsPath.resolve(name + "-" + database.id + ".yml"), database.kubernetesManifest(name, databaseStorage));
+            } else {
+                LOGGER.info("Production database " + application.getProdDatabaseType() + " of " + name + " is not run in the cluster.");
             }
 
-            List<String> lines = Files.readAllLines(serviceFilePath);
-            List<String> modifiedLines = new ArrayList<>();
-
-            boolean inSpecSection = false;
-            boolean typeAdded = false;
-            List<String> specBlock = new ArrayList<>();
+            List<String> kubectlApply = List.of(
+                    "#!/bin/bash",
+                    "# Applies the Kubernetes manifests of " + name + ".",
+                    "# Usage: bash kubectl-apply.sh -f",
+                    "",
+                    "usage() {",
+                    "  echo \"Usage: $0 -f\"",
+                    "  echo \"  -f | --default    Apply the manifests with kubectl apply -f\"",
+                    "}",
+                    "",
+                    "default() {",
+                    "  kubectl apply -f " + name + "-k8s/",
+                    "}",
+                    "",
+                    "case \"$1\" in",
+                    "  -f|--default) default ;;",
+                    "  *) usage; exit 1 ;;",
+                    "esac");
+            Files.write(kubernetesPath.resolve("kubectl-apply.sh"), kubectlApply);
+            LOGGER.info("K8s manifests created for application: " + name);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error creating Kubernetes manifests", e);
+        }
+    }
 
-            for (String line : lines) {
-                if (line.trim().equals("spec:")) {
-                    inSpecSection = true;
-                    specBlock.add(line);
-                    continue;
-                }
+    private static List<String> kubernetesDeployment(String name, String image, String port, List<String> containerSettings) {
+        List<String> lines = new ArrayList<>(List.of(
+                "apiVersion: apps/v1",
+                "kind: Deployment",
+                "metadata:",
+                "  name: " + name,
+                "spec:",
+                "  replicas: 1",
+                "  selector:",
+                "    matchLabels:",
+                "      app: " + name,
+                "  template:",
+                "    metadata:",
+                "      labels:",
+                "        app: " + name,
+                "    spec:",
+                "      containers:",
+                "        - name: " + name,
+                "          image: " + image,
+                "          ports:",
+                "            - containerPort: " + port
+        ));
+        lines.addAll(containerSettings);
+        return lines;
+    }
 
-                if (inSpecSection) {
-                    if (!typeAdded && line.trim().startsWith("selector:")) {
-                        specBlock.add("  type: LoadBalancer");
-                        typeAdded = true;
-                    }
-                    specBlock.add(line);
-                } else {
-                    modifiedLines.add(line);
-                }
-            }
+    private static List<String> kubernetesService(String name, String port, String targetPort) {
+        return List.of(
+                "apiVersion: v1",
+                "kind: Service",
+                "metadata:",
+                "  name: " + name,
+                "spec:",
+                "  type: LoadBalancer",
+                "  selector:",
+                "    app: " + name,
+                "  ports:",
+                "    - protocol: TCP",
+                "      port: " + port,
+                "      targetPort: " + targetPort
+        );
+    }
 
-            if (!typeAdded && inSpecSection) {
+    private static List<String> kubernetesConfigMap(String name, DeploymentDatabase database) {
+        List<String> lines = new ArrayList<>(List.of(
+                "apiVersion: v1",
+                "kind: ConfigMap",
+                "metadata:",
+                "  name: " + name + "-config",
+                "data:",
+                "  SPRING_PROFILES_ACTIVE: \"prod\""
+        ));
+        if (database != null) {
+            database.springSettings(name, name + "-" + database.id)
+                    .forEach((key, value) -> lines.add("  " + key + ": \"" + value + "\""));
+        }
+        return lines;
+    }
 
-                specBlock.add(1, "  type: LoadBalancer");
+    /**
+     * Production databases run next to a monolith: in its docker-compose.yml, or in its
+     * Kubernetes cluster as a single-replica StatefulSet keeping its data on a volume claim.
+     */
+    private enum DeploymentDatabase {
+        POSTGRESQL("postgresql", "postgres:17", 5432, "/var/lib/postgresql/data") {
+            @Override
+            Map<String, String> containerEnv(String app) {
+                return settings("POSTGRES_USER", app, "POSTGRES_DB", app, "POSTGRES_HOST_AUTH_METHOD", "trust");
             }
 
-            modifiedLines.addAll(specBlock);
-            Files.write(serviceFilePath, modifiedLines);
-            LOGGER.info("Updated service YAML file: " + serviceFilePath.toString());
+            @Override
+            Map<String, String> springSettings(String app, String host) {
+                String url = "//" + host + ":5432/" + app;
+                return settings("SPRING_DATASOURCE_URL", "jdbc:postgresql:" + url,
+                        "SPRING_LIQUIBASE_URL", "jdbc:postgresql:" + url,
+                        "SPRING_R2DBC_URL", "r2dbc:postgresql:" + url,
+                        "SPRING_DATASOURCE_USERNAME", app,
+                        "SPRING_R2DBC_USERNAME", app);
+            }
+        },
+        MYSQL("mysql", "mysql:8.4", 3306, "/var/lib/mysql") {
+            @Override
+            Map<String, String> containerEnv(String app) {
+                return settings("MYSQL_ALLOW_EMPTY_PASSWORD", "yes", "MYSQL_DATABASE", app);
+            }
 
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error modifying service YAML file", e);
-        }
-    }
+            @Override
+            Map<String, String> springSettings(String app, String host) {
+                String url = "//" + host + ":3306/" + app;
+                return settings("SPRING_DATASOURCE_URL", "jdbc:mysql:" + url
+                                + "?useUnicode=true&characterEncoding=utf8&useSSL=false&allowPublicKeyRetrieval=true&createDatabaseIfNotExist=true",
+                        "SPRING_LIQUIBASE_URL", "jdbc:mysql:" + url + "?useSSL=false&allowPublicKeyRetrieval=true",
+                        "SPRING_R2DBC_URL", "r2dbc:mysql:" + url,
+                        "SPRING_DATASOURCE_USERNAME", "root",
+                        "SPRING_R2DBC_USERNAME", "root");
+            }
+        },
+        MARIADB("mariadb", "mariadb:11.4", 3306, "/var/lib/mysql") {
+            @Override
+            Map<String, String> containerEnv(String app) {
+                return settings("MARIADB_ALLOW_EMPTY_ROOT_PASSWORD", "yes", "MARIADB_DATABASE", app);
+            }
 
+            @Override
+            Map<String, String> springSettings(String app, String host) {
+                String url = "//" + host + ":3306/" + app;
+                return settings("SPRING_DATASOURCE_URL", "jdbc:mariadb:" + url + "?useLegacyDatetimeCode=false",
+                        "SPRING_LIQUIBASE_URL", "jdbc:mariadb:" + url + "?useLegacyDatetimeCode=false",
+                        "SPRING_R2DBC_URL", "r2dbc:mariadb:" + url,
+                        "SPRING_DATASOURCE_USERNAME", "root",
+                        "SPRING_R2DBC_USERNAME", "root");
+            }
+        },
+        MONGODB("mongodb", "mongo:8.0", 27017, "/data/db") {
+            @Override
+            Map<String, String> containerEnv(String app) {
+                return Map.of();
+            }
 
-    private static void modifyDeploymentYaml(Path yamlFilePath, String appName, String accountId, String region) {
-        try {
-            if (!Files.exists(yamlFilePath)) {
-                LOGGER.warning("Deployment YAML file not found: " + yamlFilePath.toString());
-                return;
+            @Override
+            Map<String, String> springSettings(String app, String host) {
+                return settings("SPRING_DATA_MONGODB_URI", "mongodb://" + host + ":27017/" + app,
+                        "SPRING_DATA_MONGODB_DATABASE", app);
             }
+        };
 
+        private final String id;
 
-            List<String> lines = Files.readAllLines(yamlFilePath);
-            List<String> modifiedLines = new ArrayList<>();
+        private final String image;
 
+        private final int port;
 
-            String imagePattern = "image: " + appName;
-            String newImage = "image: " + accountId + ".dkr.ecr." + region + ".amazonaws.com/" + appName + ":latest";
+        private final String dataPath;
+
+        DeploymentDatabase(String id, String image, int port, String dataPath) {
+            this.id = id;
+            this.image = image;
+            this.port = port;
+            this.dataPath = dataPath;
+        }
 
-            for (String line : lines) {
-                if (line.trim().startsWith("image: ") && line.contains(appName)) {
-                    modifiedLines.add(line.replace(imagePattern, newImage));
-                } else {
-                    modifiedLines.add(line);
+        /**
+         * Returns the database of the given JHipster production database type, or null
+         * if it is not run next to the application.
+         */
+        static DeploymentDatabase of(String prodDatabaseType) {
+            for (DeploymentDatabase database : values()) {
+                if (database.id.equalsIgnoreCase(prodDatabaseType)) {
+                    return database;
                 }
             }
+            return null;
+        }
 
+        abstract Map<String, String> containerEnv(String app);
+
+        /**
+         * Environment of the application connecting to the database at the given host.
+         */
+        abstract Map<String, String> springSettings(String app, String host);
+
+        List<String> kubernetesManifest(String app, String storage) {
+            String name = app + "-" + id;
+            List<String> lines = new ArrayList<>(List.of(
+                    "apiVersion: apps/v1",
+                    "kind: StatefulSet",
+                    "metadata:",
+                    "  name: " + name,
+                    "spec:",
+                    "  serviceName: " + name,
+                    "  replicas: 1",
+                    "  selector:",
+                    "    matchLabels:",
+                    "      app: " + name,
+                    "  template:",
+                    "    metadata:",
+                    "      labels:",
+                    "        app: " + name,
+                    "    spec:",
+                    "      containers:",
+                    "        - name: " + id,
+                    "          image: " + image
+            ));
+            Map<String, String> env = containerEnv(app);
+            if (!env.isEmpty()) {
+                lines.add("          env:");
+                env.forEach((key, value) -> {
+                    lines.add("            - name: " + key);
+                    lines.add("              value: \"" + value + "\"");
+                });
+            }
+            lines.addAll(List.of(
+                    "          ports:",
+                    "            - containerPort: " + port,
+                    "          volumeMounts:",
+                    "            - name: data",
+                    "              mountPath: " + dataPath,
+                    // The root of a fresh volume holds lost+found, which database images refuse to initialize
+                    "              subPath: " + id,
+                    "  volumeClaimTemplates:",
+                    "    - metadata:",
+                    "        name: data",
+                    "      spec:",
+                    "        accessModes:",
+                    "          - ReadWriteOnce",
+                    "        resources:",
+                    "          requests:",
+                    "            storage: " + storage,
+                    "---",
+                    "apiVersion: v1",
+                    "kind: Service",
+                    "metadata:",
+                    "  name: " + name,
+                    "spec:",
+                    "  clusterIP: None",
+                    "  selector:",
+                    "    app: " + name,
+                    "  ports:",
+                    "    - port: " + port
+            ));
+            return lines;
+        }
 
-            Files.write(yamlFilePath, modifiedLines);
-            LOGGER.info("Updated deployment YAML file: " + yamlFilePath.toString());
-
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error modifying deployment YAML file", e);
+        private static Map<String, String> settings(String... keyValues) {
+            Map<String, String> settings = new LinkedHashMap<>();
+            for (int i = 0; i < keyValues.length; i += 2) {
+                settings.put(keyValues[i], keyValues[i + 1]);
+            }
+            return settings;
         }
     }
+
     private static boolean isWindows() {
         return System.getProperty("os.name").toLowerCase().contains("win");
     }
@@ -417,7 +516,7 @@ public static void createKubernetesDirectory(String newProjectPath, String appNa
      * EKS: create kubernetes/ with per-service Deployment & Service manifests (private ECR).
      */
     public void microservicesDeployment(String rootDirectoryPath,
-                                        List<JdlRequest> microservices,
+                                        List<GenerationSpec> microservices,
                                         String cloudProvider,
                                         String cloudService,
                                         String accountId,
@@ -434,7 +533,7 @@ public static void createKubernetesDirectory(String newProjectPath, String appNa
     }
 
     // ---------- EC2: docker-compose.yml at root ----------
-    private void generateDockerComposeForMicroservices(String rootDirectoryPath, List<JdlRequest> microservices) throws Exception {
+    private void generateDockerComposeForMicroservices(String rootDirectoryPath, List<GenerationSpec> microservices) throws Exception {
         Path dockerComposePath = Paths.get(rootDirectoryPath, "docker-compose.yml");
         List<String> lines = new ArrayList<>();
         lines.add("version: '3.8'");
@@ -453,14 +552,14 @@ public static void createKubernetesDirectory(String newProjectPath, String appNa
 //        lines.add("      - pgdata:/var/lib/postgresql/data");
 //        lines.add("      - ./init-db.sql:/docker-entrypoint-initdb.d/init-db.sql");
 
-        for (JdlRequest service : microservices) {
+        for (GenerationSpec service : microservices) {
             String name = service.getBaseName();
-            String containerPort = service.getServerPort(); // fixed
-            if (service.getServerPort() == null || service.getServerPort().isBlank()) {
+            if (service.getServerPort() == null) {
                 throw new Exception("Server Port cannot be blank for service " + name);
             }
-            String hostPort = service.getServerPort();
-            String image = "public.ecr.aws/c4d3l3m6/" + name + ":latest";
+            String containerPort = String.valueOf(service.getServerPort()); // fixed
+            String hostPort = containerPort;
+            String image = service.getPublicImage();
 
             lines.add("  " + name + ":");
             lines.add("    image: " + image);
@@ -505,7 +604,7 @@ public static void createKubernetesDirectory(String newProjectPath, String appNa
 
     // ---------- EKS: kubernetes/ manifests for each service ----------
     private void createKubernetesDirectoryForMicroservices(String rootDirectoryPath,
-                                                           List<JdlRequest> microservices,
+                                                           List<GenerationSpec> microservices,
                                                            String accountId,
                                                            String region) {
         Path kubernetesPath = Paths.get(rootDirectoryPath, "kubernetes");
@@ -515,56 +614,22 @@ public static void createKubernetesDirectory(String newProjectPath, String appNa
                 LOGGER.info("Kubernetes directory created at: " + kubernetesPath);
             }
 
-            for (JdlRequest svc : microservices) {
+            for (GenerationSpec svc : microservices) {
                 String name = svc.getBaseName();
-                String port = (svc.getServerPort() == null || svc.getServerPort().isBlank())
-                        ? "8080" : svc.getServerPort();
+                String port = String.valueOf(svc.getPort());
 
                 // Deployment
                 Path deploymentFile = kubernetesPath.resolve(name + "-deployment.yml");
-                List<String> dep = List.of(
-                        "apiVersion: apps/v1",
-                        "kind: Deployment",
-                        "metadata:",
-                        "  name: " + name,
-                        "spec:",
-                        "  replicas: 1",
-                        "  selector:",
-                        "    matchLabels:",
-                        "      app: " + name,
-                        "  template:",
-                        "    metadata:",
-                        "      labels:",
-                        "        app: " + name,
-                        "    spec:",
-                        "      containers:",
-                        "        - name: " + name,
-                        "          image: " + accountId + ".dkr.ecr." + region + ".amazonaws.com/" + name + ":latest",
-                        "          ports:",
-                        "            - containerPort: " + port,
+                String image = svc.getPrivateImage(accountId, region);
+                Files.write(deploymentFile, kubernetesDeployment(name, image, port, List.of(
                         "          env:",
                         "            - name: SPRING_PROFILES_ACTIVE",
                         "              value: prod"
-                );
-                Files.write(deploymentFile, dep);
+                )));
 
                 // Service
                 Path serviceFile = kubernetesPath.resolve(name + "-service.yml");
-                List<String> svcYaml = List.of(
-                        "apiVersion: v1",
-                        "kind: Service",
-                        "metadata:",
-                        "  name: " + name,
-                        "spec:",
-                        "  type: LoadBalancer",
-                        "  selector:",
-                        "    app: " + name,
-                        "  ports:",
-                        "    - protocol: TCP",
-                        "      port: " + port,
-                        "      targetPort: " + port
-                );
-                Files.write(serviceFile, svcYaml);
+                Files.write(serviceFile, kubernetesService(name, port, port));
 
                 LOGGER.info("K8s manifests created for service: " + name);
             }
@@ -573,15 +638,4 @@ public static void createKubernetesDirectory(String newProjectPath, String appNa
             LOGGER.log(Level.SEVERE, "Error creating Kubernetes manifests for microservices", e);
         }
     }
-
-    // ADD THIS METHOD AT THE BOTTOM OF YOUR CLASS
-    private static ProcessBuilder createProcessBuilder(String command) {
-        String os = System.getProperty("os.name").toLowerCase();
-        if (os.contains("win")) {
-            return new ProcessBuilder("cmd.exe", "/c", command);
-        } else {
-            return new ProcessBuilder("/bin/bash", "-c", command);
-        }
-    }
 }
-
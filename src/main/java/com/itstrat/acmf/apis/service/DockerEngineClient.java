@@ -0,0 +1,709 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.itstrat.acmf.apis.exception.CommandTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Minimal Docker Engine API client speaking HTTP/1.1 over the daemon's Unix socket.
+ *
+ * <p>Covers what project generation needs: running a container to completion
+ * (create, attach or follow its logs, start, wait, remove), exec'ing a command
+ * in a running container and pulling images. Output is demultiplexed from Docker's framed stream
+ * format and handed over line by line, stdout and stderr merged, so no shell and
+ * no {@code docker} CLI process is forked per container.</p>
+ *
+ * <p>The API version is negotiated with the daemon on first use: the one it reports
+ * from {@code GET /version}, at most {@value #MAX_API_VERSION}. Daemons older than
+ * {@value #MIN_API_VERSION} (Docker 1.13) count as not available.</p>
+ *
+ * <p>Callers fall back to the CLI when {@link #isAvailable()} is {@code false},
+ * e.g. on Windows or when the socket is not mounted.</p>
+ */
+@Component
+public class DockerEngineClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(DockerEngineClient.class);
+
+    /**
+     * Newest API version requests are written for.
+     */
+    static final String MAX_API_VERSION = "1.43";
+
+    /**
+     * Oldest API version that has every endpoint used here.
+     */
+    static final String MIN_API_VERSION = "1.25";
+
+    /**
+     * Path prefix of the negotiated API version, e.g. {@code /v1.41}, once negotiated.
+     */
+    private volatile String apiPrefix;
+
+    private final ScheduledExecutorService watchdogExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "docker-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${acmf.docker.socket:/var/run/docker.sock}")
+    private String socketPath;
+
+    /**
+     * Container to run with {@link #run}.
+     *
+     * @param image      Image to run.
+     * @param cmd        Command and arguments.
+     * @param workingDir Working directory inside the container.
+     * @param user       User to run as, or {@code null} for the image default.
+     * @param binds      Volume mounts, as {@code hostPath:containerPath}.
+     */
+    public record ContainerSpec(String image, List<String> cmd, String workingDir, String user, List<String> binds) {
+    }
+
+    /**
+     * Tells whether the Docker daemon answers on its Unix socket.
+     */
+    public boolean isAvailable() {
+        if (!Files.exists(Path.of(socketPath))) {
+            return false;
+        }
+        try (Connection connection = send("GET", "/_ping", null, Map.of())) {
+            if (connection.status != 200) {
+                return false;
+            }
+        } catch (IOException e) {
+            logger.debug("Docker socket {} is not usable: {}", socketPath, e.getMessage());
+            return false;
+        }
+        try {
+            apiPrefix();
+            return true;
+        } catch (IOException e) {
+            logger.debug("Docker socket {} is not usable: {}", socketPath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Runs a container to completion and removes it.
+     *
+     * @param spec           The container to run.
+     * @param timeoutSeconds Time after which the container is killed.
+     * @param output         Receives the container output line by line.
+     * @return The exit code of the container.
+     * @throws CommandTimeoutException If the container was killed after the timeout.
+     */
+    public int run(ContainerSpec spec, long timeoutSeconds, Consumer<String> output) throws IOException {
+        return run(spec, timeoutSeconds, null, output);
+    }
+
+    /**
+     * Runs a container to completion with its stdin attached, and removes it.
+     *
+     * @param spec           The container to run.
+     * @param timeoutSeconds Time after which the container is killed.
+     * @param input          Given every output line, returns what to write to stdin, or
+     *                       {@code null} to write nothing; {@code null} to run without stdin.
+     * @param output         Receives the container output line by line.
+     * @return The exit code of the container.
+     * @throws CommandTimeoutException If the container was killed after the timeout.
+     */
+    public int run(ContainerSpec spec, long timeoutSeconds, Function<String, String> input, Consumer<String> output) throws IOException {
+        String containerId = create(spec, input != null);
+        return withTimeout(containerId, "run " + spec.image(), timeoutSeconds, () -> attachAndWait(containerId, input, output));
+    }
+
+    private int attachAndWait(String containerId, Function<String, String> input, Consumer<String> output) throws IOException {
+        try {
+            if (input != null) {
+                // Attach before starting so no output is missed
+                try (Connection attach = open("POST", "/containers/" + containerId
+                        + "/attach?stream=1&stdin=1&stdout=1&stderr=1", null, Map.of("Upgrade", "tcp"))) {
+                    expect(attach, "attach to container", 101, 200);
+                    post("/containers/" + containerId + "/start", null, "start container", 204, 304);
+                    boolean[] stdinOpen = {true};
+                    demultiplex(attach.body, line -> {
+                        output.accept(line);
+                        String reply = input.apply(line);
+                        if (reply != null && stdinOpen[0]) {
+                            try {
+                                attach.write(reply.getBytes(StandardCharsets.UTF_8));
+                            } catch (IOException e) {
+                                // The container closed its stdin, keep reading its output
+                                stdinOpen[0] = false;
+                            }
+                        }
+                    });
+                }
+            } else {
+                post("/containers/" + containerId + "/start", null, "start container", 204, 304);
+                try (Connection logs = open("GET", "/containers/" + containerId
+                        + "/logs?follow=1&stdout=1&stderr=1", null, Map.of())) {
+                    expect(logs, "follow container logs", 200);
+                    demultiplex(logs.body, output);
+                }
+            }
+            JsonNode result = post("/containers/" + containerId + "/wait", null, "wait for container", 200);
+            return result.path("StatusCode").asInt(-1);
+        } finally {
+            remove(containerId);
+        }
+    }
+
+    /**
+     * Runs a command in a running container. The Engine API cannot kill a single exec,
+     * so on timeout the whole container is removed.
+     *
+     * @param containerId    The container to run the command in.
+     * @param cmd            Command and arguments.
+     * @param workingDir     Working directory inside the container.
+     * @param user           User to run as, or {@code null} for the container default.
+     * @param timeoutSeconds Time after which the container is removed.
+     * @param output         Receives the command output line by line.
+     * @return The exit code of the command.
+     * @throws CommandTimeoutException If the container was removed after the timeout.
+     */
+    public int exec(String containerId, List<String> cmd, String workingDir, String user, long timeoutSeconds,
+                    Consumer<String> output) throws IOException {
+        return withTimeout(containerId, "exec " + cmd.get(0), timeoutSeconds, () -> execAndWait(containerId, cmd, workingDir, user, output));
+    }
+
+    private int execAndWait(String containerId, List<String> cmd, String workingDir, String user, Consumer<String> output) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("AttachStdout", true);
+        body.put("AttachStderr", true);
+        body.put("Tty", false);
+        body.put("WorkingDir", workingDir);
+        if (user != null) {
+            body.put("User", user);
+        }
+        body.set("Cmd", toArray(cmd));
+        String execId = post("/containers/" + containerId + "/exec", body, "create exec", 201).path("Id").asText();
+
+        ObjectNode start = objectMapper.createObjectNode();
+        start.put("Detach", false);
+        start.put("Tty", false);
+        try (Connection connection = open("POST", "/exec/" + execId + "/start",
+                objectMapper.writeValueAsBytes(start), Map.of("Upgrade", "tcp"))) {
+            expect(connection, "start exec", 101, 200);
+            demultiplex(connection.body, output);
+        }
+        try (Connection inspect = open("GET", "/exec/" + execId + "/json", null, Map.of())) {
+            expect(inspect, "inspect exec", 200);
+            return objectMapper.readTree(inspect.body).path("ExitCode").asInt(-1);
+        }
+    }
+
+    /**
+     * Removes a container, killing it if it still runs. Failures are logged only.
+     */
+    public void remove(String containerId) {
+        try (Connection connection = open("DELETE", "/containers/" + containerId + "?force=1", null, Map.of())) {
+            if (connection.status != 204 && connection.status != 404) {
+                logger.warn("Could not remove container {}: HTTP {}", containerId, connection.status);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not remove container {}: {}", containerId, e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a detached container, which the daemon removes once it stops.
+     *
+     * @param spec       The container to start.
+     * @param entrypoint Entrypoint replacing the one of the image, or {@code null} to keep it.
+     * @param labels     Labels to find the container by.
+     * @return The id of the container.
+     */
+    public String start(ContainerSpec spec, List<String> entrypoint, Map<String, String> labels) throws IOException {
+        ObjectNode body = containerBody(spec, false);
+        if (entrypoint != null) {
+            body.set("Entrypoint", toArray(entrypoint));
+        }
+        ObjectNode labelsNode = body.putObject("Labels");
+        labels.forEach(labelsNode::put);
+        ((ObjectNode) body.get("HostConfig")).put("AutoRemove", true);
+        String containerId = post("/containers/create", body, "create container", 201).path("Id").asText();
+        try {
+            post("/containers/" + containerId + "/start", null, "start container", 204, 304);
+        } catch (IOException e) {
+            remove(containerId);
+            throw e;
+        }
+        return containerId;
+    }
+
+    /**
+     * Tells whether the given container exists and runs.
+     */
+    public boolean isRunning(String containerId) throws IOException {
+        try (Connection connection = open("GET", "/containers/" + containerId + "/json", null, Map.of())) {
+            if (connection.status == 404) {
+                return false;
+            }
+            expect(connection, "inspect container " + containerId, 200);
+            return objectMapper.readTree(connection.body).path("State").path("Running").asBoolean(false);
+        }
+    }
+
+    /**
+     * Returns the ids of the containers, running or not, that carry the given label.
+     */
+    public List<String> findContainers(String label, String value) throws IOException {
+        ObjectNode filters = objectMapper.createObjectNode();
+        filters.putArray("label").add(label + "=" + value);
+        String path = "/containers/json?all=1&filters="
+                + URLEncoder.encode(objectMapper.writeValueAsString(filters), StandardCharsets.UTF_8);
+        try (Connection connection = open("GET", path, null, Map.of())) {
+            expect(connection, "list containers", 200);
+            List<String> ids = new ArrayList<>();
+            objectMapper.readTree(connection.body).forEach(container -> ids.add(container.path("Id").asText()));
+            return ids;
+        }
+    }
+
+    /**
+     * Tells whether the given image is present on the daemon.
+     */
+    public boolean hasImage(String image) throws IOException {
+        try (Connection connection = open("GET", "/images/" + image + "/json", null, Map.of())) {
+            if (connection.status == 404) {
+                return false;
+            }
+            expect(connection, "inspect image " + image, 200);
+            return true;
+        }
+    }
+
+    /**
+     * Pulls the given image, reporting the progress messages of the daemon.
+     *
+     * @throws IOException If the daemon reports an error, e.g. an unknown image.
+     */
+    public void pull(String image, Consumer<String> output) throws IOException {
+        int tagIndex = image.lastIndexOf(':');
+        boolean tagged = tagIndex > image.lastIndexOf('/');
+        String path = "/images/create?fromImage=" + URLEncoder.encode(tagged ? image.substring(0, tagIndex) : image, StandardCharsets.UTF_8)
+                + "&tag=" + URLEncoder.encode(tagged ? image.substring(tagIndex + 1) : "latest", StandardCharsets.UTF_8);
+        try (Connection connection = open("POST", path, null, Map.of())) {
+            expect(connection, "pull " + image, 200);
+            // One JSON progress object per line
+            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode progress = objectMapper.readTree(line);
+                if (progress.hasNonNull("error")) {
+                    throw new IOException("Docker could not pull " + image + ": " + progress.get("error").asText());
+                }
+                // Skip the byte counts of layers being downloaded or extracted
+                if (progress.hasNonNull("status") && !progress.path("progressDetail").has("current")) {
+                    output.accept((progress.path("id").asText("") + " " + progress.get("status").asText()).trim());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a call against a container, removing the container if the call is still
+     * running after the timeout: its streams then end and the call fails.
+     */
+    private int withTimeout(String containerId, String description, long timeoutSeconds, ContainerCall call) throws IOException {
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = watchdogExecutor.schedule(() -> {
+            timedOut.set(true);
+            logger.warn("Docker {} in container {} timed out after {}s, removing the container", description, containerId, timeoutSeconds);
+            remove(containerId);
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        try {
+            int exitCode = call.call();
+            if (timedOut.get()) {
+                throw new CommandTimeoutException("docker " + description, timeoutSeconds);
+            }
+            return exitCode;
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new CommandTimeoutException("docker " + description, timeoutSeconds);
+            }
+            throw e;
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContainerCall {
+        int call() throws IOException;
+    }
+
+    private String create(ContainerSpec spec, boolean withStdin) throws IOException {
+        return post("/containers/create", containerBody(spec, withStdin), "create container", 201).path("Id").asText();
+    }
+
+    private ObjectNode containerBody(ContainerSpec spec, boolean withStdin) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("Image", spec.image());
+        body.set("Cmd", toArray(spec.cmd()));
+        if (spec.workingDir() != null) {
+            body.put("WorkingDir", spec.workingDir());
+        }
+        if (spec.user() != null) {
+            body.put("User", spec.user());
+        }
+        body.put("Tty", false);
+        body.put("AttachStdout", true);
+        body.put("AttachStderr", true);
+        body.put("AttachStdin", withStdin);
+        body.put("OpenStdin", withStdin);
+        body.put("StdinOnce", withStdin);
+        body.putObject("HostConfig").set("Binds", toArray(spec.binds()));
+        return body;
+    }
+
+    private JsonNode post(String path, JsonNode body, String action, int... expected) throws IOException {
+        byte[] bytes = body != null ? objectMapper.writeValueAsBytes(body) : null;
+        try (Connection connection = open("POST", path, bytes, Map.of())) {
+            expect(connection, action, expected);
+            byte[] response = connection.body.readAllBytes();
+            return response.length > 0 ? objectMapper.readTree(response) : objectMapper.createObjectNode();
+        }
+    }
+
+    private void expect(Connection connection, String action, int... expected) throws IOException {
+        for (int status : expected) {
+            if (connection.status == status) {
+                return;
+            }
+        }
+        String message = new String(connection.body.readAllBytes(), StandardCharsets.UTF_8).trim();
+        throw new IOException("Docker could not " + action + ": HTTP " + connection.status + " " + message);
+    }
+
+    private ArrayNode toArray(List<String> values) {
+        ArrayNode array = objectMapper.createArrayNode();
+        values.forEach(array::add);
+        return array;
+    }
+
+    /**
+     * Reads Docker's multiplexed stream (8-byte header: stream type, 3 padding bytes,
+     * big-endian payload length) and emits the payload line by line.
+     */
+    private static void demultiplex(InputStream in, Consumer<String> output) throws IOException {
+        byte[] header = new byte[8];
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (readFully(in, header)) {
+            int length = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+            byte[] payload = new byte[length];
+            if (!readFully(in, payload)) {
+                break;
+            }
+            for (byte b : payload) {
+                if (b == '\n') {
+                    output.accept(line.toString(StandardCharsets.UTF_8));
+                    line.reset();
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+        }
+        if (line.size() > 0) {
+            output.accept(line.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return {@code false} if the stream ended before the first byte.
+     */
+    private static boolean readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int n = in.read(buffer, read, buffer.length - read);
+            if (n < 0) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("Docker stream ended mid-frame");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the path prefix of the API version to use, negotiating it with the daemon
+     * on first use.
+     *
+     * @throws IOException If the daemon does not answer or its API is older than {@value #MIN_API_VERSION}.
+     */
+    private String apiPrefix() throws IOException {
+        String prefix = apiPrefix;
+        if (prefix != null) {
+            return prefix;
+        }
+        String daemonVersion;
+        try (Connection connection = send("GET", "/version", null, Map.of())) {
+            expect(connection, "report its version", 200);
+            daemonVersion = objectMapper.readTree(connection.body).path("ApiVersion").asText(MIN_API_VERSION);
+        }
+        if (compareVersions(daemonVersion, MIN_API_VERSION) < 0) {
+            throw new IOException("Docker API " + daemonVersion + " is older than the supported " + MIN_API_VERSION);
+        }
+        String version = compareVersions(daemonVersion, MAX_API_VERSION) < 0 ? daemonVersion : MAX_API_VERSION;
+        logger.info("Using Docker Engine API {} (daemon supports {})", version, daemonVersion);
+        apiPrefix = "/v" + version;
+        return apiPrefix;
+    }
+
+    /**
+     * Compares API versions such as {@code 1.41}, part by part.
+     */
+    static int compareVersions(String left, String right) {
+        String[] leftParts = left.split("\\.");
+        String[] rightParts = right.split("\\.");
+        for (int i = 0; i < Math.max(leftParts.length, rightParts.length); i++) {
+            int leftPart = i < leftParts.length ? Integer.parseInt(leftParts[i].trim()) : 0;
+            int rightPart = i < rightParts.length ? Integer.parseInt(rightParts[i].trim()) : 0;
+            if (leftPart != rightPart) {
+                return Integer.compare(leftPart, rightPart);
+            }
+        }
+        return 0;
+    }
+
+    private Connection open(String method, String path, byte[] body, Map<String, String> headers) throws IOException {
+        return send(method, apiPrefix() + path, body, headers);
+    }
+
+    /**
+     * Sends a request to an unversioned path and reads the head of the response.
+     */
+    private Connection send(String method, String path, byte[] body, Map<String, String> headers) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+
+            StringBuilder request = new StringBuilder()
+                    .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: docker\r\n");
+            headers.forEach((name, value) -> request.append(name).append(": ").append(value).append("\r\n"));
+            if (headers.containsKey("Upgrade")) {
+                request.append("Connection: Upgrade\r\n");
+            } else {
+                request.append("Connection: close\r\n");
+            }
+            if (body != null) {
+                request.append("Content-Type: application/json\r\n")
+                        .append("Content-Length: ").append(body.length).append("\r\n");
+            } else if (!"GET".equals(method) && !"DELETE".equals(method)) {
+                request.append("Content-Length: 0\r\n");
+            }
+            request.append("\r\n");
+
+            Connection connection = new Connection(channel);
+            connection.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            if (body != null) {
+                connection.write(body);
+            }
+            connection.readHead();
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * One HTTP exchange on its own socket connection. After a {@code 101 Switching
+     * Protocols} answer the body is the raw hijacked stream and stdin can be written.
+     */
+    private static final class Connection implements AutoCloseable {
+
+        private final SocketChannel channel;
+        private final InputStream raw;
+        private final Map<String, String> headers = new HashMap<>();
+        private int status;
+        private InputStream body;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.raw = new BufferedInputStream(Channels.newInputStream(channel));
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void readHead() throws IOException {
+            String statusLine = readLine();
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2) {
+                throw new IOException("Malformed Docker response: " + statusLine);
+            }
+            status = Integer.parseInt(parts[1]);
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+                }
+            }
+            if (status == 101) {
+                body = raw;
+            } else if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+                body = new ChunkedInputStream(this);
+            } else if (headers.containsKey("content-length")) {
+                body = new LimitedInputStream(raw, Long.parseLong(headers.get("content-length")));
+            } else {
+                body = raw;
+            }
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = raw.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException("Docker closed the connection");
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decodes an HTTP/1.1 chunked body.
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final Connection connection;
+        private long remaining;
+        private boolean finished;
+
+        private ChunkedInputStream(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (remaining == 0) {
+                String size = connection.readLine();
+                int extension = size.indexOf(';');
+                remaining = Long.parseLong((extension >= 0 ? size.substring(0, extension) : size).trim(), 16);
+                if (remaining == 0) {
+                    finished = true;
+                    return -1;
+                }
+            }
+            int n = connection.raw.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n < 0) {
+                throw new EOFException("Docker stream ended mid-chunk");
+            }
+            remaining -= n;
+            if (remaining == 0) {
+                connection.readLine(); // CRLF after the chunk data
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Reads at most a fixed number of bytes, for bodies with a Content-Length.
+     */
+    private static final class LimitedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
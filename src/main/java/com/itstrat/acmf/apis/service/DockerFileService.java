@@ -1,5 +1,6 @@
 package com.itstrat.acmf.apis.service;
 
+import com.itstrat.acmf.apis.entity.GenerationSpec;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -12,42 +13,19 @@ import java.util.List;
 public class DockerFileService {
 
 
-    public void generateDockerfile(String projectPath, String buildTool) throws IOException {
+    public void generateDockerfile(String projectPath, GenerationSpec.BuildTool buildTool) throws IOException {
         String dockerfilePath = projectPath + File.separator + "Dockerfile";
-        String dockerContent;
-
-        switch (buildTool.toLowerCase()) {
-            case "gradle":
-                dockerContent = """
-                        FROM openjdk:21-jdk-slim
-                        
-                        WORKDIR /app
-                        
-                        COPY build/libs/*.jar app.jar
-                        
-                        EXPOSE 8080
-                        
-                        ENTRYPOINT ["java", "-jar", "app.jar"]
-                        """;
-                break;
-
-            case "maven":
-                dockerContent = """
-                        FROM openjdk:21-jdk-slim
-                        
-                        WORKDIR /app
-                        
-                        COPY target/*.jar app.jar
-                        
-                        EXPOSE 8080
-                        
-                        ENTRYPOINT ["java", "-jar", "app.jar"]
-                        """;
-                break;
-
-            default:
-                throw new IllegalArgumentException("Unsupported build tool: " + buildTool);
-        }
+        String dockerContent = """
+                FROM openjdk:21-jdk-slim
+                
+                WORKDIR /app
+                
+                COPY %s app.jar
+                
+                EXPOSE 8080
+                
+                ENTRYPOINT ["java", "-jar", "app.jar"]
+                """.formatted(buildTool.getJarPath());
 
         try {
             Files.write(Paths.get(dockerfilePath), dockerContent.getBytes());
@@ -59,15 +37,10 @@ public class DockerFileService {
     }
 
     // ========== New microservices helper (per-service) ==========
-    public void generateDockerfilesForMicroservices(String rootDirectoryPath, List<String> serviceNames, List<String> buildTools) throws IOException {
-        if (serviceNames.size() != buildTools.size()) {
-            throw new IllegalArgumentException("serviceNames and buildTools must be the same length.");
-        }
-        for (int i = 0; i < serviceNames.size(); i++) {
-            String service = serviceNames.get(i);
-            String buildTool = buildTools.get(i);
-            String projectPath = rootDirectoryPath + File.separator + service;
-            generateDockerfile(projectPath, buildTool);
+    public void generateDockerfilesForMicroservices(String rootDirectoryPath, List<GenerationSpec> services) throws IOException {
+        for (GenerationSpec service : services) {
+            String projectPath = rootDirectoryPath + File.separator + service.getBaseName();
+            generateDockerfile(projectPath, service.getBuildTool());
         }
     }
 }
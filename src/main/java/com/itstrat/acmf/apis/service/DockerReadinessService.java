@@ -0,0 +1,197 @@
+package com.itstrat.acmf.apis.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps track of whether Docker can run the JHipster generator on this instance.
+ *
+ * <p>At startup the daemon is probed and the pinned generator image
+ * ({@code acmf.generator.image}) is pulled if it is missing, so the first job on a
+ * fresh node does not pay for the pull. The result is kept as a {@link DockerState}
+ * that a background probe refreshes every {@code acmf.docker.probe-interval-ms};
+ * generations read it instead of forking {@code docker} CLI probes, and it is
+ * reported by the {@code docker} health indicator.</p>
+ *
+ * <p>The daemon is reached through the {@link DockerEngineClient} when its socket
+ * is usable, otherwise through the Docker CLI.</p>
+ */
+@Service
+public class DockerReadinessService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DockerReadinessService.class);
+
+    /**
+     * Pulls run for minutes, off the shared scheduler thread.
+     */
+    private final ExecutorService pullExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "docker-pull");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile DockerState state = new DockerState(false, false, false, null, "Not probed yet");
+
+    private CompletableFuture<Void> pull;
+
+    @Autowired
+    private DockerEngineClient dockerEngineClient;
+
+    @Autowired
+    private CommandRunner commandRunner;
+
+    @Value("${acmf.generator.image:jhipster/jhipster:v8.11.0}")
+    private String generatorImage;
+
+    @Value("${acmf.docker.pull-on-startup:true}")
+    private boolean pullOnStartup;
+
+    /**
+     * Docker availability as of the last probe.
+     *
+     * @param engineApi    Whether the daemon is reached through its Engine API socket rather than the CLI.
+     * @param daemon       Whether the daemon answered.
+     * @param imagePresent Whether the generator image is present on the daemon.
+     * @param checkedAt    Time of the probe, {@code null} before the first one.
+     * @param error        Why Docker is not ready, {@code null} when it is.
+     */
+    public record DockerState(boolean engineApi, boolean daemon, boolean imagePresent, Instant checkedAt, String error) {
+
+        public boolean isReady() {
+            return daemon && imagePresent;
+        }
+    }
+
+    public DockerState state() {
+        return state;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        refresh();
+        if (pullOnStartup && state.daemon() && !state.imagePresent()) {
+            pullImage();
+        }
+    }
+
+    /**
+     * Probes the daemon and the generator image again.
+     */
+    @Scheduled(initialDelayString = "${acmf.docker.probe-interval-ms:60000}", fixedDelayString = "${acmf.docker.probe-interval-ms:60000}")
+    public void refresh() {
+        DockerState previous = state;
+        state = probe();
+        if (previous.isReady() != state.isReady() || previous.checkedAt() == null) {
+            if (state.isReady()) {
+                logger.info("Docker is ready ({}), generator image {} is present",
+                        state.engineApi() ? "Engine API" : "CLI", generatorImage);
+            } else {
+                logger.warn("Docker is not ready: {}", state.error());
+            }
+        }
+    }
+
+    /**
+     * Returns the Docker state for a generation about to start, pulling the generator
+     * image first if it is still missing.
+     *
+     * @throws RuntimeException If the daemon does not answer or the image could not be pulled.
+     */
+    public DockerState awaitReady() throws InterruptedException {
+        DockerState current = state;
+        if (!current.daemon()) {
+            // The daemon may have come up since the last probe
+            refresh();
+            current = state;
+            if (!current.daemon()) {
+                throw new RuntimeException("Docker is not installed or not running: " + current.error());
+            }
+        }
+        if (current.imagePresent()) {
+            return current;
+        }
+        try {
+            pullImage().get(commandRunner.timeoutSeconds(CommandRunner.Type.PULL), TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not pull the JHipster generator image " + generatorImage + ": "
+                    + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("The JHipster generator image " + generatorImage + " is still being pulled.");
+        }
+        return state;
+    }
+
+    @PreDestroy
+    public void stop() {
+        pullExecutor.shutdownNow();
+    }
+
+    /**
+     * Starts pulling the generator image unless a pull is already running.
+     */
+    private synchronized CompletableFuture<Void> pullImage() {
+        if (pull == null || pull.isDone()) {
+            pull = CompletableFuture.runAsync(() -> {
+                try {
+                    logger.info("Pulling JHipster generator image {}", generatorImage);
+                    if (state.engineApi()) {
+                        dockerEngineClient.pull(generatorImage, logger::debug);
+                    } else if (commandRunner.run(CommandRunner.Type.PULL, List.of("docker", "pull", generatorImage), null, logger::debug) != 0) {
+                        throw new IOException("docker pull exited with an error");
+                    }
+                    logger.info("Pulled JHipster generator image {}", generatorImage);
+                } catch (IOException e) {
+                    logger.warn("Could not pull JHipster generator image {}: {}", generatorImage, e.getMessage());
+                    throw new IllegalStateException(e.getMessage(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted", e);
+                } finally {
+                    state = probe();
+                }
+            }, pullExecutor);
+        }
+        return pull;
+    }
+
+    private DockerState probe() {
+        Instant now = Instant.now();
+        try {
+            if (dockerEngineClient.isAvailable()) {
+                boolean imagePresent = dockerEngineClient.hasImage(generatorImage);
+                return new DockerState(true, true, imagePresent, now, imagePresent ? null : "Image " + generatorImage + " is not pulled");
+            }
+            if (commandRunner.run(CommandRunner.Type.DOCKER, List.of("docker", "info"), null, logger::trace) != 0) {
+                return new DockerState(false, false, false, now, "The Docker daemon is not running");
+            }
+            boolean imagePresent = commandRunner.run(CommandRunner.Type.DOCKER,
+                    List.of("docker", "image", "inspect", generatorImage), null, logger::trace) == 0;
+            return new DockerState(false, true, imagePresent, now, imagePresent ? null : "Image " + generatorImage + " is not pulled");
+        } catch (IOException e) {
+            // The docker CLI is not installed or not in PATH
+            return new DockerState(false, false, false, now, e.getMessage());
+        } catch (RuntimeException e) {
+            return new DockerState(false, false, false, now, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DockerState(false, false, false, now, "Interrupted");
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed cache of generated JHipster project trees.
+ *
+ * <p>The JHipster generator output only depends on the {@code .yo-rc.json} it is run
+ * against and on the generator image, so trees are stored under the SHA-256 of the
+ * canonicalized configuration (keys sorted, whitespace dropped) and the image name.
+ * On a hit the cached tree is copied into the workspace instead of running Docker,
+ * which makes retries and repeated identical configurations take seconds.</p>
+ *
+ * <p>The cache is bounded by {@code acmf.generation.cache.max-size-mb}; the least
+ * recently used trees are evicted first. Trees being copied out are pinned and are
+ * never evicted mid-copy. Evicted trees are moved aside under the lock and deleted
+ * after it is released, so lookups never wait for a deletion.</p>
+ */
+@Service
+public class GeneratedProjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratedProjectCache.class);
+
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    /**
+     * Cached trees by key, in least recently used first order.
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    @Value("${acmf.generation.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${acmf.generation.cache.dir:generated-cache}")
+    private String cacheDir;
+
+    @Value("${acmf.generation.cache.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    @Value("${acmf.generator.image:jhipster/jhipster:v8.11.0}")
+    private String generatorImage;
+
+    private Path root;
+
+    private static final class CacheEntry {
+        private final long bytes;
+        private int pins;
+
+        private CacheEntry(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Loads the index of the trees already on disk, oldest first, and removes
+     * leftovers of interrupted stores.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(cacheDir).toAbsolutePath();
+        Files.createDirectories(root);
+
+        List<Path> dirs = new ArrayList<>();
+        try (Stream<Path> children = Files.list(root)) {
+            children.filter(Files::isDirectory).forEach(dirs::add);
+        }
+        dirs.sort(Comparator.comparing(this::lastModified));
+        for (Path dir : dirs) {
+            if (dir.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                deleteTree(dir);
+                continue;
+            }
+            long bytes = sizeOf(dir);
+            entries.put(dir.getFileName().toString(), new CacheEntry(bytes));
+            totalBytes += bytes;
+        }
+        evict().forEach(GeneratedProjectCache::deleteTree);
+        logger.info("Generated project cache at {} holds {} trees ({} MB)", root, entries.size(), totalBytes / (1024 * 1024));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Computes the cache key of the given {@code .yo-rc.json}.
+     */
+    public String key(Path yoRcFile) throws IOException {
+        return key(yoRcFile, "");
+    }
+
+    /**
+     * Computes the cache key of the given {@code .yo-rc.json} for a generator run that
+     * also does more than generating the application, described by {@code variant}.
+     */
+    public String key(Path yoRcFile, String variant) throws IOException {
+        JsonNode config = canonicalMapper.readTree(yoRcFile.toFile());
+        Object canonical = canonicalMapper.treeToValue(config, Object.class);
+        byte[] json = canonicalMapper.writeValueAsBytes(canonical);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(generatorImage.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(json);
+            if (!variant.isEmpty()) {
+                digest.update((byte) '\n');
+                digest.update(variant.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies the cached tree for the given key into the target directory.
+     *
+     * @return {@code true} on a cache hit, {@code false} if nothing is cached for the key.
+     */
+    public boolean restore(String key, Path target) throws IOException {
+        if (!enabled || !pin(key)) {
+            return false;
+        }
+        try {
+            Path source = root.resolve(key);
+            copyTree(source, target);
+            Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis()));
+            logger.info("Restored generated project {} from cache into {}", key, target);
+            return true;
+        } finally {
+            unpin(key);
+        }
+    }
+
+    /**
+     * Stores a freshly generated tree under the given key, evicting least recently
+     * used trees if the cache grows beyond its size limit. Failures are logged only:
+     * the generation itself has already succeeded.
+     */
+    public void store(String key, Path source) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+        }
+        Path temp = root.resolve(TEMP_PREFIX + UUID.randomUUID());
+        try {
+            copyTree(source, temp);
+            long bytes = sizeOf(temp);
+            List<Path> evicted;
+            synchronized (this) {
+                if (entries.containsKey(key)) {
+                    evicted = null; // Stored concurrently
+                } else {
+                    Files.move(temp, root.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+                    entries.put(key, new CacheEntry(bytes));
+                    totalBytes += bytes;
+                    evicted = evict();
+                }
+            }
+            if (evicted == null) {
+                deleteTree(temp);
+                return;
+            }
+            evicted.forEach(GeneratedProjectCache::deleteTree);
+            logger.info("Cached generated project {} ({} KB)", key, bytes / 1024);
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not cache generated project {}: {}", key, e.getMessage());
+            deleteTree(temp);
+        }
+    }
+
+    private synchronized boolean pin(String key) {
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.pins++;
+        return true;
+    }
+
+    private synchronized void unpin(String key) {
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            entry.pins--;
+        }
+    }
+
+    /**
+     * Removes least recently used, unpinned trees until the cache fits its size limit.
+     * Their directories are only moved aside, for the caller to delete once it released
+     * the lock.
+     *
+     * @return The directories to delete.
+     */
+    private synchronized List<Path> evict() {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, CacheEntry> eldest = it.next();
+            if (eldest.getValue().pins > 0) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue().bytes;
+            evicted.add(moveAside(eldest.getKey()));
+            logger.info("Evicted generated project {} from cache", eldest.getKey());
+        }
+        return evicted;
+    }
+
+    /**
+     * Renames the tree of a key to a temporary name, which frees the key for a new store
+     * while the tree is deleted. Leftovers are removed on the next startup.
+     *
+     * @return The directory the tree is now in.
+     */
+    private Path moveAside(String key) {
+        Path tree = root.resolve(key);
+        Path aside = root.resolve(TEMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.move(tree, aside, StandardCopyOption.ATOMIC_MOVE);
+            return aside;
+        } catch (IOException e) {
+            logger.warn("Could not move evicted cache directory {} aside: {}", tree, e.getMessage());
+            return tree;
+        }
+    }
+
+    private static void copyTree(Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file).toString()),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static long sizeOf(Path dir) throws IOException {
+        long[] bytes = {0};
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                bytes[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return bytes[0];
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteTree(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                    Files.delete(d);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Could not delete cache directory {}: {}", dir, e.getMessage());
+        }
+    }
+}
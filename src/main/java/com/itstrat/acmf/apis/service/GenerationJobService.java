@@ -0,0 +1,374 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.itstrat.acmf.apis.dto.GenerationJobDTO;
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobStatus;
+import com.itstrat.acmf.apis.entity.GenerationJobType;
+import com.itstrat.acmf.apis.entity.GenerationOptions;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.entity.MicroserviceSpec;
+import com.itstrat.acmf.apis.entity.User;
+import com.itstrat.acmf.apis.exception.GenerationConflictException;
+import com.itstrat.acmf.apis.repository.GenerationJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accepts generation requests as jobs and manages their lifecycle in the
+ * {@code generation_job} table, which is the generation queue shared by all
+ * backend replicas.
+ *
+ * <p>Submitting only stores the job and returns its id; a {@link GenerationWorker}
+ * on any replica claims it under a lease, renews the lease while generating and
+ * records the outcome here. Jobs running on this instance are also kept in memory
+ * so their progress can be served without waiting for the next lease renewal.</p>
+ */
+@Service
+public class GenerationJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationJobService.class);
+
+    /**
+     * Key of the Postgres advisory lock taken to check the queue and insert into it.
+     */
+    private static final long QUEUE_LOCK_KEY = 0x61636d66_6a6f6273L;
+
+    private final Map<String, GenerationJob> runningJobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    private GenerationJobRepository generationJobRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CredentialCipher credentialCipher;
+
+    @Value("${acmf.generation.queue-capacity:50}")
+    private long queueCapacity;
+
+    @Value("${acmf.generation.job-retention-minutes:1440}")
+    private long jobRetentionMinutes;
+
+    @Value("${acmf.generation.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${acmf.generation.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Queues the generation of a monolith. The spec compiled from the request is stored
+     * with the job, so the worker running it does not compile it again.
+     *
+     * @param delivery Whether the project is pushed to GitHub or kept to be downloaded as an archive.
+     * @throws TaskRejectedException        If the generation queue is full.
+     * @throws GenerationConflictException If a queued or running job has the same name or server port.
+     */
+    @Transactional
+    public GenerationJob submitMonolith(GenerationSpec spec, GenerationOptions options, GenerationDelivery delivery, User user) throws JsonProcessingException {
+        GenerationJob job = new GenerationJob(GenerationJobType.MONOLITH, spec.getBaseName(), user.getId(), delivery);
+        job.setRequest(objectMapper.writeValueAsString(spec));
+        return submit(job, options, spec.getServerPort());
+    }
+
+    /**
+     * Queues the generation of a microservice system, stored with the specs compiled
+     * from the requests of its applications.
+     *
+     * @param delivery Whether the system is pushed to GitHub or kept to be downloaded as an archive.
+     * @throws TaskRejectedException        If the generation queue is full.
+     * @throws GenerationConflictException If a queued or running job has the same name.
+     */
+    @Transactional
+    public GenerationJob submitMicroservices(MicroserviceSpec spec, GenerationOptions options, GenerationDelivery delivery, User user) throws JsonProcessingException {
+        GenerationJob job = new GenerationJob(GenerationJobType.MICROSERVICES, spec.getRootDirectoryName(), user.getId(), delivery);
+        job.setRequest(objectMapper.writeValueAsString(spec));
+        return submit(job, options, null);
+    }
+
+    /**
+     * Returns the job with the given id if it belongs to the given user.
+     */
+    public Optional<GenerationJob> findJob(String jobId, User user) {
+        GenerationJob running = runningJobs.get(jobId);
+        if (running != null) {
+            return running.getOwnerId().equals(user.getId()) ? Optional.of(running) : Optional.empty();
+        }
+        return generationJobRepository.findByIdAndOwnerId(jobId, user.getId());
+    }
+
+    public GenerationJobDTO toDTO(GenerationJob job) {
+        return new GenerationJobDTO(
+                job.getId(),
+                job.getType().name(),
+                job.getDelivery().name(),
+                job.getName(),
+                job.getStatus().name(),
+                job.getStage().name(),
+                job.getCompletedStages().stream().map(Enum::name).toList(),
+                job.getProgress(),
+                job.getMessage(),
+                job.getGithubUrl(),
+                job.getError(),
+                job.getApplicationErrors(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt()
+        );
+    }
+
+    public GenerationSpec readMonolithSpec(GenerationJob job) throws JsonProcessingException {
+        return objectMapper.readValue(job.getRequest(), GenerationSpec.class);
+    }
+
+    public MicroserviceSpec readMicroserviceSpec(GenerationJob job) throws JsonProcessingException {
+        return objectMapper.readValue(job.getRequest(), MicroserviceSpec.class);
+    }
+
+    /**
+     * Reads the options of a job, with its GitHub token decrypted.
+     *
+     * @throws IllegalStateException If the token cannot be decrypted on this instance.
+     */
+    public GenerationOptions readOptions(GenerationJob job) throws JsonProcessingException {
+        GenerationOptions options = objectMapper.readValue(job.getOptions(), GenerationOptions.class);
+        options.setGithubToken(credentialCipher.decrypt(job.getId(), options.getGithubToken()));
+        return options;
+    }
+
+    /**
+     * Claims the oldest claimable job for the given worker: a queued job, or a running
+     * job whose worker stopped renewing its lease. Jobs that already used up
+     * {@code acmf.generation.max-attempts} are failed instead of being run again.
+     *
+     * @return The claimed job, registered as running on this instance, or empty when the queue is empty.
+     */
+    @Transactional
+    public Optional<GenerationJob> claimNext(String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<GenerationJob> next;
+        while ((next = generationJobRepository.lockNextClaimable(now)).isPresent()) {
+            GenerationJob job = next.get();
+            if (job.getAttempts() >= maxAttempts) {
+                logger.warn("Generation job {} lost its worker {} times, giving up", job.getId(), job.getAttempts());
+                job.fail("Error: generation was interrupted " + job.getAttempts() + " times.");
+                job.setOptions(scrubCredentials(job.getOptions()));
+                generationJobRepository.flush();
+                continue;
+            }
+            if (job.getStatus() == GenerationJobStatus.RUNNING) {
+                logger.warn("Re-claiming generation job {} after its lease held by {} expired", job.getId(), job.getLeaseOwner());
+            }
+            job.claim(workerId, now.plusSeconds(leaseSeconds));
+            runningJobs.put(job.getId(), job);
+            return Optional.of(job);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Extends the lease of a job running on this instance and publishes its current
+     * stage, progress and completed stages to the other replicas.
+     *
+     * @return {@code false} if the lease was lost to another worker.
+     */
+    @Transactional
+    public boolean renewLease(GenerationJob job, String workerId) {
+        int updated = generationJobRepository.renewLease(job.getId(), workerId,
+                LocalDateTime.now().plusSeconds(leaseSeconds), job.getStage(), job.getProgress(),
+                job.getCompletedStages(), job.getWorkspacePath(), job.getGithubUrl());
+        return updated == 1;
+    }
+
+    /**
+     * Stores the outcome of a finished run, unless the lease was meanwhile taken over
+     * by another worker, and drops the GitHub token from the stored options.
+     *
+     * <p>The job row stays locked from the lease check to the commit, so a worker
+     * claiming the job concurrently either sees its outcome or is seen as the owner.</p>
+     */
+    @Transactional
+    public void complete(GenerationJob run, String workerId) {
+        runningJobs.remove(run.getId());
+        Optional<GenerationJob> stored = generationJobRepository.lockById(run.getId());
+        if (stored.isEmpty() || stored.get().getStatus() != GenerationJobStatus.RUNNING
+                || !workerId.equals(stored.get().getLeaseOwner())) {
+            logger.warn("Generation job {} is no longer leased by {}, discarding its outcome", run.getId(), workerId);
+            return;
+        }
+        GenerationJob job = stored.get();
+        job.applyOutcome(run);
+        job.setOptions(scrubCredentials(job.getOptions()));
+    }
+
+    /**
+     * Forgets a run that was stopped before it started because its lease was taken over
+     * by another worker; the job is reported from the stored state again.
+     */
+    public void abandon(GenerationJob run) {
+        runningJobs.remove(run.getId());
+    }
+
+    /**
+     * Queues a failed job of the given user again. It resumes after the last stage it
+     * completed, in the workspace kept from its failed run.
+     *
+     * @param githubToken GitHub token for the retry, as the one of the failed run was discarded;
+     *                    not needed by a job delivered as an archive.
+     * @return The queued job, or empty if the user has no such job.
+     * @throws IllegalStateException If the job did not fail.
+     * @throws IllegalArgumentException If the job pushes to GitHub and no token is given.
+     * @throws TaskRejectedException If the generation queue is full.
+     * @throws GenerationConflictException If a queued or running job has the same name or server port.
+     */
+    @Transactional
+    public Optional<GenerationJob> retry(String jobId, User user, String githubToken) throws JsonProcessingException {
+        Optional<GenerationJob> found = generationJobRepository.findByIdAndOwnerId(jobId, user.getId());
+        if (found.isEmpty()) {
+            return found;
+        }
+        GenerationJob job = found.get();
+        if (job.getStatus() != GenerationJobStatus.FAILED) {
+            throw new IllegalStateException("Only failed jobs can be retried, job " + jobId + " is " + job.getStatus() + ".");
+        }
+        if (job.getDelivery() == GenerationDelivery.GITHUB && (githubToken == null || githubToken.isEmpty())) {
+            throw new IllegalArgumentException("A GitHub token is required to retry job " + jobId + ".");
+        }
+        generationJobRepository.lockQueue(QUEUE_LOCK_KEY);
+        if (generationJobRepository.countByStatus(GenerationJobStatus.QUEUED) >= queueCapacity) {
+            logger.warn("Generation queue is full, rejecting retry of job {}", jobId);
+            throw new TaskRejectedException("Generation queue is full");
+        }
+        checkReservations(job, job.getType() == GenerationJobType.MONOLITH ? readMonolithSpec(job).getServerPort() : null);
+        if (githubToken != null) {
+            GenerationOptions options = readOptions(job);
+            options.setGithubToken(githubToken);
+            writeOptions(job, options);
+        }
+        job.requeue();
+        logger.info("Re-queued generation job {} for '{}' with completed stages {}", job.getId(), job.getName(), job.getCompletedStages());
+        return Optional.of(job);
+    }
+
+    /**
+     * Returns the workspaces jobs refer to, on any replica, as absolute paths.
+     */
+    public Set<Path> findWorkspacePaths() {
+        Set<Path> paths = new HashSet<>();
+        for (String path : generationJobRepository.findWorkspacePaths()) {
+            paths.add(Paths.get(path).toAbsolutePath().normalize());
+        }
+        for (GenerationJob job : runningJobs.values()) {
+            if (job.getWorkspacePath() != null) {
+                paths.add(Paths.get(job.getWorkspacePath()).toAbsolutePath().normalize());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the finished jobs that kept their workspace, oldest first: failed jobs, for a
+     * retry, and jobs delivered as an archive, for their download.
+     */
+    public List<GenerationJob> findEvictableWorkspaces() {
+        return generationJobRepository.findByStatusInAndWorkspacePathIsNotNullOrderByFinishedAtAsc(
+                EnumSet.of(GenerationJobStatus.FAILED, GenerationJobStatus.SUCCEEDED));
+    }
+
+    /**
+     * Drops the workspace of a finished job: a retry then starts over, and an archive
+     * can no longer be downloaded.
+     *
+     * @return {@code false} if the job was retried or removed meanwhile.
+     */
+    @Transactional
+    public boolean forgetWorkspace(String jobId) {
+        Optional<GenerationJob> job = generationJobRepository.findById(jobId);
+        if (job.isEmpty() || (job.get().getStatus() != GenerationJobStatus.FAILED
+                && job.get().getStatus() != GenerationJobStatus.SUCCEEDED)) {
+            return false;
+        }
+        job.get().setWorkspacePath(null);
+        job.get().resetCheckpoints();
+        return true;
+    }
+
+    /**
+     * Forgets finished jobs older than {@code acmf.generation.job-retention-minutes}.
+     */
+    @Transactional
+    public int purgeFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        return generationJobRepository.deleteFinishedBefore(
+                EnumSet.of(GenerationJobStatus.SUCCEEDED, GenerationJobStatus.FAILED), cutoff);
+    }
+
+    /**
+     * Inserts a job unless the queue is full or another queued or running job has its
+     * name, or its server port for a monolith. Submissions and retries on all replicas
+     * hold the queue lock from these checks to the commit, so they never overfill the
+     * queue nor reserve a name or port twice.
+     */
+    private GenerationJob submit(GenerationJob job, GenerationOptions options, Integer serverPort) throws JsonProcessingException {
+        generationJobRepository.lockQueue(QUEUE_LOCK_KEY);
+        if (generationJobRepository.countByStatus(GenerationJobStatus.QUEUED) >= queueCapacity) {
+            logger.warn("Generation queue is full, rejecting job for '{}'", job.getName());
+            throw new TaskRejectedException("Generation queue is full");
+        }
+        checkReservations(job, serverPort);
+        writeOptions(job, options);
+        generationJobRepository.save(job);
+        logger.info("Queued {} generation job {} for '{}'", job.getType(), job.getId(), job.getName());
+        return job;
+    }
+
+    private void checkReservations(GenerationJob job, Integer serverPort) {
+        if (generationJobRepository.existsByNameAndStatusIn(job.getName(),
+                EnumSet.of(GenerationJobStatus.QUEUED, GenerationJobStatus.RUNNING))) {
+            throw new GenerationConflictException("'" + job.getName() + "' is already being generated.");
+        }
+        if (serverPort != null && generationJobRepository.existsActiveMonolithOnPort(serverPort)) {
+            throw new GenerationConflictException("Port " + serverPort + " is already used by a queued or running generation.");
+        }
+    }
+
+    /**
+     * Stores the options of a job with its GitHub token encrypted, leaving the given options as they are.
+     */
+    private void writeOptions(GenerationJob job, GenerationOptions options) throws JsonProcessingException {
+        ObjectNode stored = objectMapper.valueToTree(options);
+        stored.put("githubToken", credentialCipher.encrypt(job.getId(), options.getGithubToken()));
+        job.setOptions(objectMapper.writeValueAsString(stored));
+    }
+
+    private String scrubCredentials(String optionsJson) {
+        try {
+            GenerationOptions options = objectMapper.readValue(optionsJson, GenerationOptions.class);
+            options.setGithubToken(null);
+            return objectMapper.writeValueAsString(options);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not remove credentials from job options: {}", e.getMessage());
+            return "{}";
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package com.itstrat.acmf.apis.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures the output of generation jobs and streams it to clients as Server-Sent Events.
+ *
+ * <p>Each job running on this instance gets a bounded in-memory ring buffer of
+ * output lines ({@code acmf.generation.logs.buffer-lines}). Lines pushed out of the
+ * buffer are spilled to a gzip file per job, so the full output stays available
+ * while memory stays bounded. Lines are numbered from 0; a client resumes a
+ * stream from the offset of the next line it needs.</p>
+ *
+ * <p>Every spill is written as a gzip member of its own and indexed by its first
+ * line and its position in the file, so a client catching up only decompresses
+ * the members holding the lines it needs, never the file from its start.</p>
+ *
+ * <p>Producers only append to memory. A quarter of the buffer is handed to the
+ * {@code logSpillExecutor} whenever it fills up, and stays readable from memory until
+ * it is written. A writer falling more than four segments behind loses the oldest
+ * ones rather than holding up the generation.
+ * Subscribers are served on the dedicated {@code logStreamExecutor}, whose size
+ * bounds the number of open streams.</p>
+ */
+@Service
+public class GenerationLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationLogService.class);
+
+    private final Map<String, JobLog> logs = new ConcurrentHashMap<>();
+
+    @Autowired
+    @Qualifier("logStreamExecutor")
+    private ThreadPoolTaskExecutor logStreamExecutor;
+
+    @Autowired
+    @Qualifier("logSpillExecutor")
+    private ThreadPoolTaskExecutor logSpillExecutor;
+
+    @Value("${acmf.generation.logs.buffer-lines:2000}")
+    private int bufferLines;
+
+    @Value("${acmf.generation.logs.dir:generation-logs}")
+    private String logsDir;
+
+    @Value("${acmf.generation.logs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${acmf.generation.logs.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${acmf.generation.logs.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    /**
+     * Starts, or continues after an earlier attempt, the log of a job claimed by this instance.
+     */
+    public void start(String jobId) {
+        log(jobId).reopen();
+    }
+
+    /**
+     * Returns the sink collecting the output of the given job.
+     */
+    public Consumer<String> output(String jobId) {
+        return log(jobId)::append;
+    }
+
+    /**
+     * Marks the log of the given job complete: open streams end once they caught up.
+     */
+    public void finish(String jobId) {
+        JobLog log = logs.get(jobId);
+        if (log != null) {
+            log.finish();
+        }
+    }
+
+    /**
+     * Streams the output of the given job from the given line offset. Every line is
+     * sent as a {@code log} event whose id is its offset; an {@code end} event follows
+     * the last line once the job finished.
+     *
+     * @return Empty if the output of the job is not held by this instance.
+     * @throws TaskRejectedException If too many streams are open.
+     */
+    public Optional<SseEmitter> stream(String jobId, long offset) {
+        JobLog log = logs.get(jobId);
+        if (log == null) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        logStreamExecutor.execute(() -> {
+            try {
+                send(log, Math.max(0, offset), new LogListener() {
+                    @Override
+                    public void line(long number, String line) throws IOException {
+                        emitter.send(SseEmitter.event().name("log").id(String.valueOf(number)).data(line));
+                    }
+
+                    @Override
+                    public void end(long number) throws IOException {
+                        emitter.send(SseEmitter.event().name("end").id(String.valueOf(number)).data("end"));
+                    }
+
+                    @Override
+                    public void keepAlive() throws IOException {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    }
+                });
+                emitter.complete();
+            } catch (IOException e) {
+                // The client went away
+                emitter.completeWithError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            }
+        });
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Forgets the logs of jobs that finished more than {@code acmf.generation.logs.retention-minutes} ago.
+     */
+    @Scheduled(fixedDelayString = "${acmf.generation.logs.purge-interval-ms:300000}")
+    public void purgeFinishedLogs() {
+        long cutoff = System.currentTimeMillis() - retentionMinutes * 60_000;
+        logs.entrySet().removeIf(entry -> {
+            if (!entry.getValue().finishedBefore(cutoff)) {
+                return false;
+            }
+            entry.getValue().delete();
+            return true;
+        });
+    }
+
+    /**
+     * Replays the output of the given job from the given line offset to the listener,
+     * then follows it until the job finished or the stream timed out.
+     *
+     * @return False if the output of the job is not held by this instance.
+     */
+    boolean follow(String jobId, long offset, LogListener listener) throws IOException, InterruptedException {
+        JobLog log = logs.get(jobId);
+        if (log == null) {
+            return false;
+        }
+        send(log, Math.max(0, offset), listener);
+        return true;
+    }
+
+    private JobLog log(String jobId) {
+        return logs.computeIfAbsent(jobId, id -> new JobLog(Paths.get(logsDir, id + ".log.gz"), bufferLines, logSpillExecutor));
+    }
+
+    private void send(JobLog log, long offset, LogListener listener) throws IOException, InterruptedException {
+        long next = offset;
+        long deadline = System.currentTimeMillis() + streamTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            long spilled = log.spilledLines();
+            if (next < spilled) {
+                // Older lines left the buffer, read them back from the spill file
+                Batch old = log.readSpilled(next, spilled);
+                if (old.lines().isEmpty()) {
+                    next = spilled; // Lines that could not be spilled are skipped
+                    continue;
+                }
+                next = old.start();
+                for (String line : old.lines()) {
+                    listener.line(next++, line);
+                }
+                continue;
+            }
+            Batch batch = log.await(next, heartbeatMs);
+            if (batch.start() > next) {
+                continue; // Spilled while we waited
+            }
+            for (String line : batch.lines()) {
+                listener.line(next++, line);
+            }
+            if (batch.finished() && batch.lines().isEmpty()) {
+                listener.end(next);
+                return;
+            }
+            if (batch.lines().isEmpty()) {
+                listener.keepAlive();
+            }
+        }
+    }
+
+    /**
+     * Receives the events of a log stream.
+     */
+    interface LogListener {
+
+        void line(long number, String line) throws IOException;
+
+        void end(long number) throws IOException;
+
+        void keepAlive() throws IOException;
+    }
+
+    /**
+     * Lines of a log starting at a given offset.
+     */
+    private record Batch(long start, List<String> lines, boolean finished) {
+    }
+
+    /**
+     * A gzip member of a spill file, holding the lines from {@code firstLine} on.
+     */
+    private record SpillMember(long firstLine, int lines, long position, int length) {
+    }
+
+    /**
+     * Lines that left the ring buffer and are not written to the spill file yet.
+     */
+    private record Segment(long firstLine, String[] lines) {
+    }
+
+    /**
+     * Where the spilled lines from an offset on are held: members of the spill file,
+     * followed by segments still in memory.
+     */
+    private record Spilled(List<SpillMember> members, List<Segment> segments) {
+    }
+
+    /**
+     * Output of one job: the most recent lines in a ring buffer, older ones in a gzip file.
+     */
+    private static final class JobLog {
+
+        private static final int MAX_PENDING_SEGMENTS = 4;
+
+        private final Path spillFile;
+        private final Executor spillExecutor;
+        private final String[] ring;
+        private final List<SpillMember> members = new ArrayList<>();
+        private final Deque<Segment> pending = new ArrayDeque<>();
+        // The segment being written, still read from memory until it is a member
+        private Segment writing;
+        private boolean draining;
+        private boolean deleted;
+        private long appended;
+        private long spilled;
+        // Only used by the writer, or under the lock while no writer runs
+        private OutputStream spillOut;
+        private long spillSize;
+        private long finishedAt = -1;
+
+        private JobLog(Path spillFile, int capacity, Executor spillExecutor) {
+            this.spillFile = spillFile;
+            this.spillExecutor = spillExecutor;
+            this.ring = new String[Math.max(capacity, 4)];
+        }
+
+        private synchronized void append(String line) {
+            if (finishedAt >= 0) {
+                return;
+            }
+            if (appended - spilled == ring.length) {
+                spill(ring.length / 4);
+            }
+            ring[(int) (appended % ring.length)] = line;
+            appended++;
+            notifyAll();
+        }
+
+        private synchronized void reopen() {
+            finishedAt = -1;
+        }
+
+        private synchronized void finish() {
+            finishedAt = System.currentTimeMillis();
+            if (!pending.isEmpty()) {
+                scheduleDrain();
+            }
+            if (!draining) {
+                closeSpill();
+            }
+            notifyAll();
+        }
+
+        private synchronized long spilledLines() {
+            return spilled;
+        }
+
+        private synchronized boolean finishedBefore(long time) {
+            return finishedAt >= 0 && finishedAt < time;
+        }
+
+        /**
+         * Waits until lines from the given offset are available or the log finished.
+         */
+        private synchronized Batch await(long offset, long timeoutMs) throws InterruptedException {
+            if (offset >= appended && finishedAt < 0) {
+                wait(timeoutMs);
+            }
+            long start = Math.max(offset, spilled);
+            List<String> lines = new ArrayList<>();
+            for (long i = start; i < appended; i++) {
+                lines.add(ring[(int) (i % ring.length)]);
+            }
+            return new Batch(start, lines, finishedAt >= 0);
+        }
+
+        /**
+         * Reads spilled lines from the given offset on, up to the end offset, at most a
+         * buffer's worth and only up to the first gap left by lines that could not be
+         * spilled. Only complete members are read, so this runs without holding the lock
+         * while the file keeps growing; segments not written yet are read from memory.
+         *
+         * @return The lines, starting at the first one still held at or after the offset;
+         * no lines if none of them is held.
+         */
+        private Batch readSpilled(long offset, long end) throws IOException {
+            List<String> lines = new ArrayList<>();
+            long start = -1;
+            Spilled spilledFrom = spilledFrom(offset, end);
+            try (FileChannel channel = spilledFrom.members().isEmpty() ? null : FileChannel.open(spillFile, StandardOpenOption.READ)) {
+                for (SpillMember member : spilledFrom.members()) {
+                    if (start >= 0 && member.firstLine() != start + lines.size()) {
+                        break; // Gap
+                    }
+                    channel.position(member.position());
+                    byte[] compressed = Channels.newInputStream(channel).readNBytes(member.length());
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8))) {
+                        long number = member.firstLine();
+                        String line;
+                        while (number < end && (line = reader.readLine()) != null) {
+                            if (number >= offset) {
+                                if (start < 0) {
+                                    start = number;
+                                }
+                                lines.add(line);
+                            }
+                            number++;
+                        }
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // Nothing could be spilled
+            }
+            for (Segment segment : spilledFrom.segments()) {
+                if (start >= 0 && segment.firstLine() != start + lines.size()) {
+                    break; // Gap
+                }
+                for (int i = 0; i < segment.lines().length && segment.firstLine() + i < end; i++) {
+                    if (segment.firstLine() + i >= offset) {
+                        if (start < 0) {
+                            start = segment.firstLine() + i;
+                        }
+                        lines.add(segment.lines()[i]);
+                    }
+                }
+            }
+            return new Batch(start < 0 ? end : start, lines, false);
+        }
+
+        /**
+         * Returns the members and the segments holding lines from the given offset on,
+         * before the end offset, up to about a buffer's worth of lines.
+         */
+        private synchronized Spilled spilledFrom(long offset, long end) {
+            int low = 0;
+            int high = members.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                SpillMember member = members.get(middle);
+                if (member.firstLine() + member.lines() <= offset) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            List<SpillMember> found = new ArrayList<>();
+            long lines = 0;
+            for (int i = low; i < members.size() && members.get(i).firstLine() < end && lines < ring.length; i++) {
+                found.add(members.get(i));
+                lines += members.get(i).lines();
+            }
+            List<Segment> inMemory = new ArrayList<>();
+            if (writing != null) {
+                inMemory.add(writing);
+            }
+            inMemory.addAll(pending);
+            inMemory.removeIf(segment -> segment.firstLine() + segment.lines().length <= offset || segment.firstLine() >= end);
+            List<Segment> segments = new ArrayList<>();
+            for (int i = 0; i < inMemory.size() && lines < ring.length; i++) {
+                segments.add(inMemory.get(i));
+                lines += inMemory.get(i).lines().length;
+            }
+            return new Spilled(found, segments);
+        }
+
+        /**
+         * Moves the oldest lines out of the ring buffer, into a segment for the writer.
+         */
+        private void spill(int count) {
+            String[] lines = new String[count];
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((spilled + i) % ring.length);
+                lines[i] = ring[index];
+                ring[index] = null;
+            }
+            pending.add(new Segment(spilled, lines));
+            spilled += count;
+            if (pending.size() > MAX_PENDING_SEGMENTS) {
+                Segment dropped = pending.poll();
+                logger.warn("Generation log {} is written too slowly, dropping lines {} to {}", spillFile,
+                        dropped.firstLine(), dropped.firstLine() + dropped.lines().length - 1);
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining) {
+                return;
+            }
+            try {
+                spillExecutor.execute(this::drain);
+                draining = true;
+            } catch (RejectedExecutionException e) {
+                // Scheduled again on the next spill
+            }
+        }
+
+        /**
+         * Writes the pending segments, one gzip member each, until none is left.
+         */
+        private void drain() {
+            while (true) {
+                Segment segment;
+                synchronized (this) {
+                    if (deleted) {
+                        writing = null;
+                        draining = false;
+                        closeSpill();
+                        deleteSpillFile();
+                        return;
+                    }
+                    segment = pending.poll();
+                    writing = segment;
+                    if (segment == null) {
+                        draining = false;
+                        if (finishedAt >= 0) {
+                            closeSpill();
+                        }
+                        return;
+                    }
+                }
+                SpillMember member = write(segment);
+                synchronized (this) {
+                    if (member != null) {
+                        members.add(member);
+                    }
+                    writing = null;
+                }
+            }
+        }
+
+        /**
+         * Appends a segment to the spill file, without holding the lock.
+         *
+         * @return The member written, or null if it could not be.
+         */
+        private SpillMember write(Segment segment) {
+            try {
+                if (spillOut == null) {
+                    Files.createDirectories(spillFile.getParent());
+                    spillOut = Files.newOutputStream(spillFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    spillSize = Files.size(spillFile);
+                }
+                ByteArrayOutputStream member = new ByteArrayOutputStream();
+                try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(member), StandardCharsets.UTF_8)) {
+                    for (String line : segment.lines()) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+                member.writeTo(spillOut);
+                spillOut.flush();
+                SpillMember written = new SpillMember(segment.firstLine(), segment.lines().length, spillSize, member.size());
+                spillSize += member.size();
+                return written;
+            } catch (IOException e) {
+                // Drop these lines rather than failing the generation
+                logger.warn("Could not spill generation log to {}: {}", spillFile, e.getMessage());
+                // The file may hold part of the member, its size is read again on the next spill
+                closeSpill();
+                return null;
+            }
+        }
+
+        private void closeSpill() {
+            if (spillOut != null) {
+                try {
+                    spillOut.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close generation log {}: {}", spillFile, e.getMessage());
+                }
+                spillOut = null;
+            }
+        }
+
+        private synchronized void delete() {
+            deleted = true;
+            pending.clear();
+            members.clear();
+            // A running writer deletes the file once it is done with it
+            if (!draining) {
+                closeSpill();
+                deleteSpillFile();
+            }
+        }
+
+        private void deleteSpillFile() {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete generation log {}: {}", spillFile, e.getMessage());
+            }
+        }
+    }
+}
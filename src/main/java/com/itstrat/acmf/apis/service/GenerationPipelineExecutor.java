@@ -0,0 +1,196 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationStage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs the stages of a generation job as a dependency graph.
+ *
+ * <p>Each stage declares the stages it depends on and starts, on the shared
+ * {@code stageExecutor}, as soon as they completed; stages that do not depend on
+ * each other run concurrently, e.g. the GitHub repository is created while the
+ * JHipster generator runs. A stage the job completed in an earlier run is skipped,
+ * and every stage that completes is checkpointed on the job.</p>
+ *
+ * <p>When a stage fails its dependents are not run, but independent stages still
+ * finish (and are checkpointed) before the failure is rethrown, so the workspace is
+ * not changed behind the caller's back. The duration of each stage is recorded by
+ * the {@code acmf.generation.stage} timer and written to the job log.</p>
+ *
+ * <p>When the thread running the pipeline is interrupted (e.g. the job's lease was
+ * lost), stages not started yet are dropped and running ones are interrupted; the
+ * interrupt is only rethrown once they stopped, so nothing of the job still runs
+ * when its generation slot is freed.</p>
+ */
+@Component
+public class GenerationPipelineExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationPipelineExecutor.class);
+
+    @Autowired
+    @Qualifier("stageExecutor")
+    private ThreadPoolTaskExecutor stageExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private GenerationLogService generationLogService;
+
+    /**
+     * Work of one stage.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private record Stage(Action action, List<GenerationStage> dependsOn) {
+    }
+
+    /**
+     * Starts declaring the pipeline of the given job.
+     */
+    public Pipeline pipeline(GenerationJob job) {
+        return new Pipeline(job);
+    }
+
+    /**
+     * Stages of one job, run by {@link #run()}.
+     */
+    public final class Pipeline {
+
+        private final GenerationJob job;
+
+        private final Map<GenerationStage, Stage> stages = new LinkedHashMap<>();
+
+        private final RunningTasks runningStages = new RunningTasks();
+
+        private Pipeline(GenerationJob job) {
+            this.job = job;
+        }
+
+        /**
+         * Declares a stage. Its dependencies must be declared before it, which keeps the graph acyclic.
+         *
+         * @param dependsOn Stages that must complete before this one starts.
+         */
+        public Pipeline stage(GenerationStage stage, Action action, GenerationStage... dependsOn) {
+            for (GenerationStage dependency : dependsOn) {
+                if (!stages.containsKey(dependency)) {
+                    throw new IllegalArgumentException(stage + " depends on " + dependency + ", which is not declared before it");
+                }
+            }
+            if (stages.putIfAbsent(stage, new Stage(action, List.of(dependsOn))) != null) {
+                throw new IllegalArgumentException(stage + " is declared twice");
+            }
+            return this;
+        }
+
+        /**
+         * Runs the stages and waits until all of them completed, failed or were skipped
+         * because a dependency failed.
+         *
+         * @throws Exception The failure of the first failed stage, in declaration order.
+         */
+        public void run() throws Exception {
+            Consumer<String> output = generationLogService.output(job.getId());
+            Map<GenerationStage, CompletableFuture<Void>> futures = new EnumMap<>(GenerationStage.class);
+            for (Map.Entry<GenerationStage, Stage> entry : stages.entrySet()) {
+                GenerationStage stage = entry.getKey();
+                CompletableFuture<?>[] dependencies = entry.getValue().dependsOn().stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(stage, CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> runStage(stage, entry.getValue().action(), output), stageExecutor));
+            }
+
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new));
+            try {
+                all.get();
+            } catch (InterruptedException e) {
+                // Running stages are interrupted, the others dropped (a CompletableFuture
+                // does not interrupt by itself), and the caller only goes on once they stopped
+                runningStages.cancel();
+                futures.values().forEach(future -> future.cancel(true));
+                runningStages.awaitStopped();
+                throw e;
+            } catch (ExecutionException e) {
+                throw firstFailure(futures);
+            }
+        }
+
+        private void runStage(GenerationStage stage, Action action, Consumer<String> output) {
+            if (job.hasCompleted(stage)) {
+                output.accept("Skipping " + stage + ", completed by an earlier run.");
+                return;
+            }
+            if (job.isLeaseLost()) {
+                // Another worker runs the job now, it must not push or persist it a second time
+                throw new CompletionException(new IllegalStateException("Lease on generation job " + job.getId() + " was lost"));
+            }
+            if (!runningStages.enter()) {
+                throw new CancellationException(stage + " of generation job " + job.getId() + " was cancelled");
+            }
+            job.advance(stage);
+            long start = System.nanoTime();
+            String outcome = "failed";
+            try {
+                action.run();
+                job.checkpoint(stage);
+                outcome = "completed";
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                runningStages.exit();
+                long elapsed = System.nanoTime() - start;
+                meterRegistry.timer("acmf.generation.stage", "stage", stage.name(), "outcome", outcome)
+                        .record(elapsed, TimeUnit.NANOSECONDS);
+                long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+                logger.info("Stage {} of generation job {} {} in {} ms", stage, job.getId(), outcome, millis);
+                output.accept("Stage " + stage + " " + outcome + " in " + millis + " ms.");
+            }
+        }
+
+        /**
+         * Returns the failure of the first stage, in declaration order, that failed by itself
+         * rather than because one of its dependencies did.
+         */
+        private Exception firstFailure(Map<GenerationStage, CompletableFuture<Void>> futures) {
+            List<Throwable> failures = new ArrayList<>();
+            for (CompletableFuture<Void> future : futures.values()) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    failures.add(e.getCause() != null ? e.getCause() : e);
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                }
+            }
+            Throwable failure = failures.isEmpty() ? new IllegalStateException("Pipeline failed") : failures.get(0);
+            if (failure instanceof Exception exception) {
+                return exception;
+            }
+            return new IllegalStateException(failure.getMessage(), failure);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.User;
+import com.itstrat.acmf.apis.exception.GitHubApiException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Pulls generation jobs from the shared {@code generation_job} queue and runs them.
+ *
+ * <p>Every backend replica runs one worker. It claims jobs while it has free
+ * generation slots ({@code acmf.generation.concurrency}), so adding replicas adds
+ * generation throughput, and it renews the leases of its running jobs on a
+ * schedule. When a replica dies or is replaced during a rolling deploy, its leases
+ * expire and the jobs are picked up again by another replica.</p>
+ *
+ * <p>A job whose lease could not be renewed in time may already run on another
+ * replica. Its run here is interrupted with its running stages and starts no
+ * further stage, and its outcome is discarded, so the job is not pushed or
+ * completed twice. Its slot is only freed once those stages stopped.</p>
+ */
+@Component
+public class GenerationWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationWorker.class);
+
+    private final String workerId = Optional.ofNullable(System.getenv("HOSTNAME")).orElse("worker")
+            + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, ActiveRun> activeJobs = new ConcurrentHashMap<>();
+
+    private Semaphore slots;
+
+    private volatile boolean stopping;
+
+    @Autowired
+    @Qualifier("generationExecutor")
+    private ThreadPoolTaskExecutor generationExecutor;
+
+    @Autowired
+    private GenerationJobService generationJobService;
+
+    @Autowired
+    private ProjectGenerationService projectGenerationService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private GenerationLogService generationLogService;
+
+    @Autowired
+    private WorkspaceReaper workspaceReaper;
+
+    @Value("${acmf.generation.concurrency:2}")
+    public void setConcurrency(int concurrency) {
+        this.slots = new Semaphore(concurrency);
+    }
+
+    /**
+     * Claims queued jobs while this instance has free generation slots and its
+     * workspace root is within its disk quota.
+     */
+    @Scheduled(fixedDelayString = "${acmf.generation.poll-interval-ms:2000}")
+    public void poll() {
+        if (!workspaceReaper.hasCapacity()) {
+            return;
+        }
+        while (!stopping && slots.tryAcquire()) {
+            Optional<GenerationJob> claimed;
+            try {
+                claimed = generationJobService.claimNext(workerId);
+            } catch (RuntimeException e) {
+                slots.release();
+                logger.error("Could not claim a generation job: {}", e.getMessage());
+                return;
+            }
+            if (claimed.isEmpty()) {
+                slots.release();
+                return;
+            }
+            GenerationJob job = claimed.get();
+            ActiveRun active = new ActiveRun(job);
+            activeJobs.put(job.getId(), active);
+            try {
+                generationExecutor.execute(() -> {
+                    try {
+                        if (active.begin()) {
+                            try {
+                                run(job);
+                            } finally {
+                                active.end();
+                            }
+                        } else {
+                            generationJobService.abandon(job);
+                        }
+                    } finally {
+                        activeJobs.remove(job.getId(), active);
+                        slots.release();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // The lease will expire and the job will be claimed again
+                activeJobs.remove(job.getId(), active);
+                slots.release();
+                logger.error("Generation executor rejected job {}", job.getId());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Renews the leases of the jobs running on this instance, and stops the jobs whose
+     * lease was taken over by another worker.
+     */
+    @Scheduled(fixedDelayString = "${acmf.generation.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (ActiveRun active : activeJobs.values()) {
+            GenerationJob job = active.job;
+            try {
+                if (!generationJobService.renewLease(job, workerId)) {
+                    logger.warn("Lease on generation job {} was lost, stopping its run", job.getId());
+                    activeJobs.remove(job.getId(), active);
+                    active.cancel();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Could not renew lease on generation job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${acmf.generation.purge-interval-ms:3600000}")
+    public void purgeFinishedJobs() {
+        int purged = generationJobService.purgeFinishedJobs();
+        if (purged > 0) {
+            logger.info("Purged {} finished generation jobs", purged);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    /**
+     * A job claimed by this instance, and the thread running it once it started.
+     */
+    private static final class ActiveRun {
+
+        private final GenerationJob job;
+
+        private Thread thread;
+
+        private boolean cancelled;
+
+        private ActiveRun(GenerationJob job) {
+            this.job = job;
+        }
+
+        /**
+         * Registers the current thread as running the job.
+         *
+         * @return {@code false} if the job was cancelled before it started.
+         */
+        synchronized boolean begin() {
+            if (cancelled) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        /**
+         * Unregisters the thread, clearing an interrupt meant for this job only.
+         */
+        synchronized void end() {
+            thread = null;
+            Thread.interrupted();
+        }
+
+        /**
+         * Stops the job after its lease was lost: no further stage starts and a running
+         * one is interrupted.
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            job.loseLease();
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void run(GenerationJob job) {
+        logger.info("Running generation job {} for '{}' (attempt {})", job.getId(), job.getName(), job.getAttempts());
+        generationLogService.start(job.getId());
+        Consumer<String> output = generationLogService.output(job.getId());
+        output.accept("Generation of '" + job.getName() + "' started (attempt " + job.getAttempts() + ").");
+        try {
+            User user = userService.findUserById(job.getOwnerId());
+            String repoUrl;
+            String successMessage;
+            switch (job.getType()) {
+                case MONOLITH:
+                    repoUrl = projectGenerationService.generateMonolith(job,
+                            generationJobService.readMonolithSpec(job), generationJobService.readOptions(job), user);
+                    successMessage = "Project successfully created and pushed to GitHub.";
+                    break;
+                case MICROSERVICES:
+                    repoUrl = projectGenerationService.generateMicroservices(job,
+                            generationJobService.readMicroserviceSpec(job), generationJobService.readOptions(job), user);
+                    successMessage = "All microservices created and pushed successfully.";
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported job type: " + job.getType());
+            }
+            String failedPrefix = "Created and pushed with failed applications: ";
+            if (job.getDelivery() == GenerationDelivery.ARCHIVE) {
+                successMessage = "Project generated, download it from /api/projects/jobs/" + job.getId() + "/archive.";
+                failedPrefix = "Generated for download with failed applications: ";
+            }
+            String message = job.getApplicationErrors().isEmpty()
+                    ? successMessage
+                    : failedPrefix + String.join(", ", job.getApplicationErrors().keySet());
+            job.succeed(message, repoUrl);
+            logger.info("Generation job {} succeeded", job.getId());
+        } catch (GitHubApiException e) {
+            logger.error("GitHub API Error in job {}: {}", job.getId(), e.getMessage());
+            job.fail("GitHub API Error: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Generation error in job {}: {}", job.getId(), e.getMessage(), e);
+            job.fail("Error: " + e.getMessage());
+        }
+        output.accept(job.getError() != null ? job.getError() : job.getMessage());
+        if (job.getError() != null && !job.getCompletedStages().isEmpty()) {
+            output.accept("Workspace kept with completed stages " + job.getCompletedStages() + ", a retry resumes from there.");
+        }
+        generationLogService.finish(job.getId());
+        try {
+            generationJobService.complete(job, workerId);
+        } catch (RuntimeException e) {
+            logger.error("Could not store the outcome of generation job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+}
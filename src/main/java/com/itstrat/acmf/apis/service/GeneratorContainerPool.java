@@ -0,0 +1,363 @@
+package com.itstrat.acmf.apis.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of long-lived JHipster generator containers.
+ *
+ * <p>Instead of a {@code docker run --rm} per application, which pays container
+ * creation and Node startup every time, the generator is {@code docker exec}'d in
+ * a pre-started container. Each container mounts the whole workspace root at
+ * {@code /workspace}, and the memory-backed workspace root if there is one at
+ * {@code /workspace-memory}, and is kept alive by a {@code sleep} entrypoint, so a
+ * job only needs its working directory inside one of them.</p>
+ *
+ * <p>The pool holds at most {@code acmf.generator.pool.size} containers, which is also
+ * the number of generator runs allowed at once on this instance. Containers are
+ * health-checked while idle and recycled after {@code acmf.generator.pool.max-uses}
+ * runs or {@code acmf.generator.pool.max-age-minutes}.</p>
+ *
+ * <p>Containers are labelled with the owner of the pool ({@code acmf.generator.pool.owner},
+ * the host name by default), which stays the same when the backend restarts; the
+ * containers a crashed backend left behind are removed when it starts again. Backends
+ * sharing a Docker daemon must have distinct owners. A container whose backend never
+ * comes back stops on its own once its {@code sleep} ends, twice the maximum age.</p>
+ *
+ * <p>Containers are started, checked and removed through the {@link DockerEngineClient}
+ * when the daemon's socket is usable, otherwise through the Docker CLI.</p>
+ */
+@Component
+public class GeneratorContainerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratorContainerPool.class);
+
+    private static final String WORKSPACE_MOUNT = "/workspace";
+
+    private static final String MEMORY_WORKSPACE_MOUNT = "/workspace-memory";
+
+    private static final String POOL_LABEL = "acmf.generator-pool";
+
+    private final BlockingQueue<GeneratorContainer> idle = new LinkedBlockingQueue<>();
+
+    private final Set<GeneratorContainer> containers = ConcurrentHashMap.newKeySet();
+
+    private Semaphore permits;
+
+    private volatile boolean stopping;
+
+    @Autowired
+    private HostPathResolver hostPathResolver;
+
+    @Autowired
+    private CommandRunner commandRunner;
+
+    @Autowired
+    private DockerEngineClient dockerEngineClient;
+
+    @Autowired
+    private DockerReadinessService dockerReadinessService;
+
+    @Value("${acmf.generator.pool.owner:${HOSTNAME:acmf}}")
+    private String owner;
+
+    @Value("${acmf.generator.pool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${acmf.generator.pool.max-uses:20}")
+    private int maxUses;
+
+    @Value("${acmf.generator.pool.max-age-minutes:60}")
+    private long maxAgeMinutes;
+
+    @Value("${acmf.generator.pool.acquire-timeout-seconds:600}")
+    private long acquireTimeoutSeconds;
+
+    @Value("${acmf.generator.image:jhipster/jhipster:v8.11.0}")
+    private String generatorImage;
+
+    @Value("${acmf.generator.pool.size:4}")
+    public void setSize(int size) {
+        this.permits = new Semaphore(size);
+    }
+
+    /**
+     * A pre-started generator container.
+     */
+    public static final class GeneratorContainer {
+        private final String id;
+        private final long startedAt = System.currentTimeMillis();
+        private int uses;
+
+        private GeneratorContainer(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Tells whether the generator for the given directory can run in the pool: the pool
+     * must be enabled and the directory must live under a mounted workspace root.
+     */
+    public boolean canRun(File appDir) {
+        return enabled && !stopping && (hostPathResolver.workspaceRelativePath(appDir).isPresent()
+                || hostPathResolver.memoryRelativePath(appDir).isPresent());
+    }
+
+    /**
+     * Builds the {@code docker exec} command running the given command in the given
+     * container, in the directory the backend knows as {@code appDir}.
+     */
+    public List<String> execCommand(GeneratorContainer container, File appDir, List<String> command) {
+        List<String> exec = new ArrayList<>(List.of("docker", "exec", "-u", "root",
+                "-w", workingDirectory(appDir), container.getId()));
+        exec.addAll(command);
+        return exec;
+    }
+
+    /**
+     * Returns the path, inside the pooled containers, of the directory the backend
+     * knows as {@code appDir}.
+     */
+    public String workingDirectory(File appDir) {
+        Optional<String> memoryRelativePath = hostPathResolver.memoryRelativePath(appDir);
+        if (memoryRelativePath.isPresent()) {
+            return mountedPath(MEMORY_WORKSPACE_MOUNT, memoryRelativePath.get());
+        }
+        String relativePath = hostPathResolver.workspaceRelativePath(appDir)
+                .orElseThrow(() -> new IllegalArgumentException(appDir + " is outside of the generator workspace"));
+        return mountedPath(WORKSPACE_MOUNT, relativePath);
+    }
+
+    private static String mountedPath(String mount, String relativePath) {
+        return relativePath.isEmpty() ? mount : mount + "/" + relativePath;
+    }
+
+    /**
+     * Takes a container from the pool, starting one if none is idle, waiting while all
+     * containers are busy.
+     *
+     * @throws IllegalStateException If no container became available in time.
+     */
+    public GeneratorContainer acquire() throws IOException, InterruptedException {
+        if (!permits.tryAcquire(acquireTimeoutSeconds, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("No JHipster generator container became available in " + acquireTimeoutSeconds + "s.");
+        }
+        try {
+            GeneratorContainer container;
+            while ((container = idle.poll()) != null) {
+                if (isReusable(container)) {
+                    return container;
+                }
+                remove(container);
+            }
+            return start();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a container to the pool after a run. Containers that ran the generator
+     * {@code max-uses} times, or whose run failed and that no longer respond, are removed.
+     */
+    public void release(GeneratorContainer container, boolean succeeded) {
+        try {
+            container.uses++;
+            if (stopping || !isReusable(container) || (!succeeded && !isHealthy(container))) {
+                remove(container);
+            } else {
+                idle.offer(container);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Removes a container whose run was abandoned, as the command may still be running in it.
+     */
+    public void discard(GeneratorContainer container) {
+        try {
+            remove(container);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Removes idle containers that stopped responding or are due for recycling, and
+     * keeps one container warm for the next run.
+     */
+    @Scheduled(fixedDelayString = "${acmf.generator.pool.health-check-interval-ms:30000}")
+    public void maintain() {
+        if (!enabled || stopping) {
+            return;
+        }
+        for (GeneratorContainer container : List.copyOf(idle)) {
+            if ((!isReusable(container) || !isHealthy(container)) && idle.remove(container)) {
+                remove(container);
+            }
+        }
+        if (idle.isEmpty() && permits.tryAcquire()) {
+            try {
+                idle.offer(start());
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not start a JHipster generator container: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Removes the containers a previous run of this backend left behind, e.g. after a crash.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeOrphans() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<String> orphans;
+            if (dockerEngineClient.isAvailable()) {
+                orphans = dockerEngineClient.findContainers(POOL_LABEL, owner);
+                orphans.forEach(dockerEngineClient::remove);
+            } else {
+                orphans = run(List.of("docker", "ps", "-aq", "--filter", "label=" + POOL_LABEL + "=" + owner))
+                        .map(output -> output.lines().filter(id -> !id.isBlank()).toList())
+                        .orElse(List.of());
+                if (!orphans.isEmpty()) {
+                    List<String> command = new ArrayList<>(List.of("docker", "rm", "-f"));
+                    command.addAll(orphans);
+                    run(command);
+                }
+            }
+            if (!orphans.isEmpty()) {
+                logger.info("Removed {} JHipster generator containers left by a previous run", orphans.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not remove JHipster generator containers left by a previous run: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+        for (GeneratorContainer container : List.copyOf(containers)) {
+            remove(container);
+        }
+    }
+
+    private GeneratorContainer start() throws IOException, InterruptedException {
+        // The sleep outlives recycling, and ends the container if this instance dies
+        long lifetimeSeconds = TimeUnit.MINUTES.toSeconds(maxAgeMinutes) * 2;
+        List<String> binds = new ArrayList<>(List.of("/var/run/docker.sock:/var/run/docker.sock",
+                hostPathResolver.workspaceHostPath() + ":" + WORKSPACE_MOUNT));
+        hostPathResolver.memoryHostPath().ifPresent(memoryHostPath -> binds.add(memoryHostPath + ":" + MEMORY_WORKSPACE_MOUNT));
+        String containerId;
+        if (engineApi()) {
+            containerId = dockerEngineClient.start(new DockerEngineClient.ContainerSpec(generatorImage,
+                            List.of(String.valueOf(lifetimeSeconds)), null, "root", binds),
+                    List.of("sleep"), Map.of(POOL_LABEL, owner));
+        } else {
+            List<String> command = new ArrayList<>(List.of("docker", "run", "-d", "--rm", "-u", "root",
+                    "--label", POOL_LABEL + "=" + owner));
+            for (String bind : binds) {
+                command.add("-v");
+                command.add(bind);
+            }
+            command.addAll(List.of("--entrypoint", "sleep", generatorImage, String.valueOf(lifetimeSeconds)));
+            containerId = run(command).orElseThrow(
+                    () -> new IllegalStateException("Could not start a JHipster generator container.")).trim();
+        }
+        GeneratorContainer container = new GeneratorContainer(containerId);
+        containers.add(container);
+        logger.info("Started JHipster generator container {}", container.getId());
+        return container;
+    }
+
+    private boolean isReusable(GeneratorContainer container) {
+        long age = System.currentTimeMillis() - container.startedAt;
+        return container.uses < maxUses && age < TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+    }
+
+    private boolean isHealthy(GeneratorContainer container) {
+        try {
+            if (engineApi()) {
+                return dockerEngineClient.isRunning(container.getId());
+            }
+            return run(List.of("docker", "inspect", "-f", "{{.State.Running}}", container.getId()))
+                    .map(state -> state.trim().equals("true"))
+                    .orElse(false);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void remove(GeneratorContainer container) {
+        containers.remove(container);
+        try {
+            if (engineApi()) {
+                dockerEngineClient.remove(container.getId());
+            } else {
+                run(List.of("docker", "rm", "-f", container.getId()));
+            }
+            logger.info("Removed JHipster generator container {} after {} runs", container.getId(), container.uses);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not remove JHipster generator container {}: {}", container.getId(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Whether the daemon is reached through its Engine API socket, as of the last probe.
+     */
+    private boolean engineApi() {
+        return dockerReadinessService.state().engineApi();
+    }
+
+    /**
+     * Runs a short Docker CLI command and returns its output, or empty if it failed.
+     */
+    private Optional<String> run(List<String> command) throws IOException, InterruptedException {
+        StringBuilder output = new StringBuilder();
+        if (commandRunner.run(CommandRunner.Type.DOCKER, command, null, line -> output.append(line).append('\n')) != 0) {
+            logger.warn("'{}' failed: {}", String.join(" ", command.subList(0, 2)), output.toString().trim());
+            return Optional.empty();
+        }
+        return Optional.of(output.toString());
+    }
+}
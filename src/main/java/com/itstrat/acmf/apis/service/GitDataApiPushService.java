@@ -0,0 +1,241 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.exception.GitHubApiException;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Pushes a generated workspace through the GitHub Git Data API instead of {@code git push}.
+ *
+ * <p>Blobs are uploaded concurrently on the shared {@code githubUploadExecutor}, then
+ * the tree and a root commit are created and {@code refs/heads/main} is pointed at it.
+ * Files are keyed by their git blob id, computed locally, so content shared by
+ * several files (e.g. across the services of a microservice system) is uploaded
+ * once, and content already in the repository, e.g. when a push is retried, is not
+ * uploaded again. {@code .gitignore} files are honored like {@code git add} would.</p>
+ *
+ * <p>GitHub refuses blobs in an empty repository, so a new repository first gets a
+ * placeholder commit through the contents API; the pushed commit replaces it.</p>
+ */
+@Service
+public class GitDataApiPushService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitDataApiPushService.class);
+
+    private static final String BRANCH = "main";
+
+    @Autowired
+    private GitHubClient gitHubClient;
+
+    @Autowired
+    @Qualifier("githubUploadExecutor")
+    private ThreadPoolTaskExecutor githubUploadExecutor;
+
+    /**
+     * A file to push.
+     */
+    private record Entry(String path, String mode, Path file) {
+    }
+
+    /**
+     * Pushes all files of the given directory as a single commit on {@code main} of the given repository.
+     *
+     * @param projectPath The directory to push.
+     * @param repoUrl     HTTPS clone URL of the repository, e.g. {@code https://github.com/owner/repo.git}.
+     * @param username    GitHub user name.
+     * @param token       GitHub token authorizing the push.
+     * @throws GitHubApiException If GitHub rejects a request.
+     */
+    public void push(String projectPath, String repoUrl, String username, String token) throws IOException, InterruptedException {
+        String repository = repositoryName(repoUrl);
+        GitHubClient.Credentials credentials = new GitHubClient.Credentials(username, token);
+
+        // 1. List the files and their blob ids, sharing uploads of identical content
+        List<Entry> entries = listFiles(Paths.get(projectPath));
+        Map<String, List<Entry>> entriesByBlob = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            entriesByBlob.computeIfAbsent(blobId(entry.file()), id -> new ArrayList<>()).add(entry);
+        }
+        logger.info("Pushing {} files ({} distinct blobs) of {} through the Git Data API", entries.size(), entriesByBlob.size(), projectPath);
+
+        // 2. Make sure the repository accepts blobs, and find those it already has
+        Optional<GitHubClient.Reference> branch = gitHubClient.findBranch(credentials, repository, BRANCH);
+        Set<String> existingBlobs = Set.of();
+        if (branch.isEmpty()) {
+            gitHubClient.createFile(credentials, repository, ".acmf", "Initialize repository", new byte[0], BRANCH);
+        } else {
+            existingBlobs = gitHubClient.listBlobs(credentials, repository, branch.get().object().sha());
+        }
+
+        // 3. Upload the distinct blobs the repository lacks concurrently
+        List<GitHubClient.TreeEntry> tree = new ArrayList<>(entries.size());
+        Map<String, Future<String>> uploads = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Entry>> blob : entriesByBlob.entrySet()) {
+            if (existingBlobs.contains(blob.getKey())) {
+                for (Entry entry : blob.getValue()) {
+                    tree.add(new GitHubClient.TreeEntry(entry.path(), entry.mode(), "blob", blob.getKey()));
+                }
+                continue;
+            }
+            Path file = blob.getValue().get(0).file();
+            uploads.put(blob.getKey(), githubUploadExecutor.submit(() -> gitHubClient.createBlob(credentials, repository, readContent(file))));
+        }
+        logger.info("Uploading {} blobs, {} are already in {}", uploads.size(), entriesByBlob.size() - uploads.size(), repository);
+        try {
+            for (Map.Entry<String, Future<String>> upload : uploads.entrySet()) {
+                String sha = upload.getValue().get();
+                for (Entry entry : entriesByBlob.get(upload.getKey())) {
+                    tree.add(new GitHubClient.TreeEntry(entry.path(), entry.mode(), "blob", sha));
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GitHubApiException gitHubApiException) {
+                throw gitHubApiException;
+            }
+            throw new IOException("Could not upload a blob: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            uploads.values().forEach(upload -> upload.cancel(true));
+        }
+
+        // 4. Create the tree and the commit, then move the branch onto it
+        String treeSha = gitHubClient.createTree(credentials, repository, tree);
+        String commitSha = gitHubClient.createCommit(credentials, repository, "Initial commit by ACMF", treeSha,
+                List.of(), "ACMF Bot", "bot@acmf.com");
+        gitHubClient.updateBranch(credentials, repository, BRANCH, commitSha, true);
+        logger.info("Pushed {} to {} as commit {}", projectPath, repoUrl, commitSha);
+    }
+
+    /**
+     * Returns {@code owner/repo} of a clone URL.
+     */
+    private static String repositoryName(String repoUrl) {
+        String path = URI.create(repoUrl).getPath();
+        if (path.endsWith(".git")) {
+            path = path.substring(0, path.length() - 4);
+        }
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    /**
+     * Lists the files to push, skipping {@code .git} and what {@code .gitignore} files exclude.
+     */
+    private static List<Entry> listFiles(Path root) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Deque<Map.Entry<Path, IgnoreNode>> ignores = new ArrayDeque<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && (dir.getFileName().toString().equals(".git") || isIgnored(dir, true))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Path gitignore = dir.resolve(".gitignore");
+                IgnoreNode node = new IgnoreNode();
+                if (Files.isRegularFile(gitignore)) {
+                    try (InputStream in = Files.newInputStream(gitignore)) {
+                        node.parse(in);
+                    }
+                }
+                ignores.push(Map.entry(dir, node));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!isIgnored(file, false)) {
+                    String mode = attrs.isSymbolicLink() ? "120000" : Files.isExecutable(file) ? "100755" : "100644";
+                    entries.add(new Entry(root.relativize(file).toString().replace('\\', '/'), mode, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                ignores.pop();
+                return FileVisitResult.CONTINUE;
+            }
+
+            /**
+             * Asks the closest .gitignore first, like git does.
+             */
+            private boolean isIgnored(Path path, boolean isDirectory) {
+                for (Map.Entry<Path, IgnoreNode> ignore : ignores) {
+                    String relativePath = ignore.getKey().relativize(path).toString().replace('\\', '/');
+                    IgnoreNode.MatchResult result = ignore.getValue().isIgnored(relativePath, isDirectory);
+                    if (result == IgnoreNode.MatchResult.IGNORED) {
+                        return true;
+                    }
+                    if (result == IgnoreNode.MatchResult.NOT_IGNORED) {
+                        return false;
+                    }
+                }
+                return false;
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Content of a file as git stores it: the target path of a symbolic link, the bytes of anything else.
+     */
+    private static byte[] readContent(Path file) throws IOException {
+        if (Files.isSymbolicLink(file)) {
+            return Files.readSymbolicLink(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8);
+        }
+        return Files.readAllBytes(file);
+    }
+
+    /**
+     * Computes the git blob id of a file: SHA-1 of {@code "blob <size>\0"} followed by the content.
+     */
+    private static String blobId(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            if (Files.isSymbolicLink(file)) {
+                byte[] content = readContent(file);
+                digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+                return HexFormat.of().formatHex(digest.digest(content));
+            }
+            digest.update(("blob " + Files.size(file) + "\0").getBytes(StandardCharsets.US_ASCII));
+            try (InputStream in = Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.itstrat.acmf.apis.exception.GitHubApiException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Client of the GitHub REST API.
+ *
+ * <p>All calls share one {@link HttpClient}, so connections (HTTP/2 where GitHub
+ * offers it) are kept alive and TLS is negotiated once rather than per call.
+ * Calls are scheduled by the {@link GitHubRateLimiter} of their token. Responses are
+ * parsed from the stream straight into typed records, and any unexpected status is
+ * mapped to a {@link GitHubApiException} carrying the status and GitHub's error
+ * message.</p>
+ */
+@Component
+public class GitHubClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitHubClient.class);
+
+    private HttpClient httpClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private GitHubRateLimiter gitHubRateLimiter;
+
+    @Value("${acmf.github.api-url:https://api.github.com}")
+    private String apiUrl;
+
+    @Value("${acmf.github.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${acmf.github.read-timeout-ms:60000}")
+    private long readTimeoutMs;
+
+    /**
+     * GitHub account a call is made for.
+     */
+    public record Credentials(String username, String token) {
+
+        private String authorization() {
+            return "Basic " + Base64.getEncoder().encodeToString((username + ":" + token).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Repository(String name,
+                             @JsonProperty("full_name") String fullName,
+                             @JsonProperty("clone_url") String cloneUrl,
+                             @JsonProperty("html_url") String htmlUrl,
+                             @JsonProperty("default_branch") String defaultBranch) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record GitObject(String sha, String type) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Reference(String ref, GitObject object) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Commit(String sha, GitObject tree) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Tree(String sha, List<GitObject> tree, boolean truncated) {
+    }
+
+    /**
+     * Entry of a tree to create; {@code path} may contain slashes.
+     */
+    public record TreeEntry(String path, String mode, String type, String sha) {
+    }
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    /**
+     * Creates a public repository for the user, or in the given organization.
+     *
+     * @param organization Organization to create the repository in, {@code null} or empty for the user.
+     */
+    public Repository createRepository(Credentials credentials, String name, String organization) throws IOException {
+        String path = organization != null && !organization.isEmpty()
+                ? "/orgs/" + encode(organization) + "/repos"
+                : "/user/repos";
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("name", name)
+                .put("private", false);
+        Repository repository = send("POST", path, credentials, body, Repository.class);
+        logger.info("GitHub repository created successfully: {}", repository.htmlUrl());
+        return repository;
+    }
+
+    /**
+     * Returns the given branch of a repository, or empty if it does not exist or the repository is empty.
+     *
+     * @param repository Repository as {@code owner/name}.
+     */
+    public Optional<Reference> findBranch(Credentials credentials, String repository, String branch) throws IOException {
+        try {
+            return Optional.of(send("GET", "/repos/" + repository + "/git/ref/heads/" + branch, credentials, null, Reference.class));
+        } catch (GitHubApiException e) {
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 409) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the ids of the blobs reachable from the tree of a commit.
+     *
+     * <p>A tree too large for one response is truncated by GitHub; the ids returned are
+     * then a subset, which is fine for callers using them to skip uploads.</p>
+     */
+    public Set<String> listBlobs(Credentials credentials, String repository, String commitSha) throws IOException {
+        Commit commit = send("GET", "/repos/" + repository + "/git/commits/" + commitSha, credentials, null, Commit.class);
+        Tree tree = send("GET", "/repos/" + repository + "/git/trees/" + commit.tree().sha() + "?recursive=1", credentials, null, Tree.class);
+        if (tree.truncated()) {
+            logger.debug("Tree {} of {} is truncated, listing part of its blobs", tree.sha(), repository);
+        }
+        Set<String> blobs = new HashSet<>();
+        for (GitObject object : tree.tree()) {
+            if ("blob".equals(object.type())) {
+                blobs.add(object.sha());
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * Creates a file through the contents API, committing it on the given branch.
+     */
+    public void createFile(Credentials credentials, String repository, String path, String message, byte[] content, String branch) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("message", message)
+                .put("content", Base64.getEncoder().encodeToString(content))
+                .put("branch", branch);
+        send("PUT", "/repos/" + repository + "/contents/" + path, credentials, body, JsonNode.class);
+    }
+
+    /**
+     * Uploads a blob and returns its id.
+     */
+    public String createBlob(Credentials credentials, String repository, byte[] content) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("content", Base64.getEncoder().encodeToString(content))
+                .put("encoding", "base64");
+        return send("POST", "/repos/" + repository + "/git/blobs", credentials, body, GitObject.class).sha();
+    }
+
+    /**
+     * Creates a tree from scratch and returns its id.
+     */
+    public String createTree(Credentials credentials, String repository, List<TreeEntry> entries) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.set("tree", objectMapper.valueToTree(entries));
+        return send("POST", "/repos/" + repository + "/git/trees", credentials, body, GitObject.class).sha();
+    }
+
+    /**
+     * Creates a commit and returns its id.
+     */
+    public String createCommit(Credentials credentials, String repository, String message, String treeSha,
+                               List<String> parents, String authorName, String authorEmail) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("message", message)
+                .put("tree", treeSha);
+        body.set("parents", objectMapper.valueToTree(parents));
+        body.putObject("author").put("name", authorName).put("email", authorEmail);
+        return send("POST", "/repos/" + repository + "/git/commits", credentials, body, GitObject.class).sha();
+    }
+
+    /**
+     * Points a branch at the given commit.
+     *
+     * @param force Whether the branch may move to a commit that does not descend from its current one.
+     */
+    public void updateBranch(Credentials credentials, String repository, String branch, String commitSha, boolean force) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("sha", commitSha)
+                .put("force", force);
+        send("PATCH", "/repos/" + repository + "/git/refs/heads/" + branch, credentials, body, Reference.class);
+    }
+
+    /**
+     * Sends a request and parses a successful response into the given type.
+     *
+     * @throws GitHubApiException If GitHub answered with a status other than 2xx.
+     */
+    private <T> T send(String method, String path, Credentials credentials, JsonNode body, Class<T> responseType) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(apiUrl + path))
+                .timeout(Duration.ofMillis(readTimeoutMs))
+                .header("Authorization", credentials.authorization())
+                .header("Accept", "application/vnd.github+json")
+                .header("X-GitHub-Api-Version", "2022-11-28");
+        if (body != null) {
+            request.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            HttpRequest built = request.build();
+            response = gitHubRateLimiter.execute(credentials.token(),
+                    () -> httpClient.send(built, HttpResponse.BodyHandlers.ofInputStream()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling GitHub " + method + " " + path, e);
+        }
+        try (InputStream in = response.body()) {
+            if (response.statusCode() / 100 == 2) {
+                return objectMapper.readValue(in, responseType);
+            }
+            throw new GitHubApiException(response.statusCode(), method + " " + path + ": " + errorMessage(in));
+        }
+    }
+
+    /**
+     * Extracts GitHub's error message and the details of its {@code errors} array.
+     */
+    private String errorMessage(InputStream in) {
+        try {
+            JsonNode error = objectMapper.readTree(in);
+            if (error == null || error.isMissingNode()) {
+                return "no details";
+            }
+            StringBuilder message = new StringBuilder(error.path("message").asText("no details"));
+            for (JsonNode detail : error.path("errors")) {
+                message.append("; ").append(detail.hasNonNull("message")
+                        ? detail.get("message").asText()
+                        : detail.path("field").asText() + " " + detail.path("code").asText());
+            }
+            return message.toString();
+        } catch (IOException e) {
+            return "unreadable error response";
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,390 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.exception.GitHubApiException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules GitHub API calls per token, so concurrent generations slow down instead
+ * of failing on GitHub's rate limits.
+ *
+ * <p>Each token gets a bucket tracking {@code X-RateLimit-Remaining} and
+ * {@code X-RateLimit-Reset} from the responses, plus any {@code Retry-After}. Calls of
+ * a token wait while its limit is exhausted, and at most
+ * {@code acmf.github.rate-limit.max-concurrent-per-token} of them run at once, as
+ * GitHub's secondary limits punish concurrent requests of one user. A call that is
+ * rate limited anyway is retried after the delay GitHub asks for, or after an
+ * exponential backoff with jitter, until {@code acmf.github.rate-limit.max-wait-ms}.
+ * A 403 without rate limit headers is only taken for a rate limit when its message
+ * names a secondary rate limit; it is then retried after at least
+ * {@code acmf.github.rate-limit.secondary-wait-ms}, as GitHub asks.</p>
+ *
+ * <p>Queued calls are reported by the {@code acmf.github.queue} gauge, time spent
+ * waiting by the {@code acmf.github.wait} timer and rate-limited responses by the
+ * {@code acmf.github.rate-limited} counter. Buckets of tokens left idle are evicted.</p>
+ */
+@Component
+public class GitHubRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitHubRateLimiter.class);
+
+    /**
+     * Bytes of a 403 body searched for a secondary rate limit message.
+     */
+    private static final int FORBIDDEN_PEEK_BYTES = 8 * 1024;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${acmf.github.rate-limit.max-concurrent-per-token:4}")
+    private int maxConcurrentPerToken;
+
+    @Value("${acmf.github.rate-limit.backoff-ms:1000}")
+    private long backoffMs;
+
+    @Value("${acmf.github.rate-limit.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    @Value("${acmf.github.rate-limit.max-wait-ms:900000}")
+    private long maxWaitMs;
+
+    @Value("${acmf.github.rate-limit.secondary-wait-ms:60000}")
+    private long secondaryWaitMs;
+
+    @Value("${acmf.github.rate-limit.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+
+    /**
+     * A GitHub call, sent again on every retry.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        HttpResponse<T> send() throws IOException, InterruptedException;
+    }
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("acmf.github.queue", queued);
+    }
+
+    /**
+     * Sends a call for the given token once its rate limit allows, retrying while
+     * GitHub answers that the limit is exceeded.
+     *
+     * @return The first response that is not rate limited.
+     * @throws GitHubApiException If the call stayed rate limited for longer than the maximum wait.
+     */
+    public <T> HttpResponse<T> execute(String token, Call<T> call) throws IOException, InterruptedException {
+        String key = key(token);
+        // Counting the call in the map's lock keeps the bucket from being evicted while in use
+        Bucket bucket = buckets.compute(key, (k, existing) -> {
+            Bucket current = existing != null ? existing : new Bucket(maxConcurrentPerToken);
+            current.calls++;
+            return current;
+        });
+        long start = System.currentTimeMillis();
+        long deadline = start + maxWaitMs;
+        Timer.Sample wait = Timer.start(meterRegistry);
+        boolean waiting = true;
+        boolean acquired = false;
+        queued.incrementAndGet();
+        try {
+            bucket.permits.acquire();
+            acquired = true;
+            for (int attempt = 0; ; attempt++) {
+                bucket.awaitAllowed(deadline);
+                if (waiting) {
+                    waiting = false;
+                    queued.decrementAndGet();
+                    wait.stop(meterRegistry.timer("acmf.github.wait"));
+                }
+                HttpResponse<T> response = call.send();
+                bucket.update(response);
+                if (response.statusCode() == 403) {
+                    response = peeked(response);
+                }
+                OptionalLong delay = rateLimitDelay(response, attempt);
+                if (delay.isEmpty()) {
+                    return response;
+                }
+                meterRegistry.counter("acmf.github.rate-limited").increment();
+                close(response);
+                long retryAt = System.currentTimeMillis() + delay.getAsLong();
+                if (retryAt > deadline) {
+                    throw new GitHubApiException(response.statusCode(),
+                            "GitHub rate limit still exceeded after " + (System.currentTimeMillis() - start) / 1000 + "s.");
+                }
+                logger.warn("GitHub rate limit exceeded (HTTP {}), retrying in {} ms", response.statusCode(), delay.getAsLong());
+                bucket.block(retryAt);
+            }
+        } finally {
+            if (waiting) {
+                queued.decrementAndGet();
+            }
+            if (acquired) {
+                bucket.permits.release();
+            }
+            buckets.computeIfPresent(key, (k, current) -> {
+                current.calls--;
+                current.lastUsed = System.currentTimeMillis();
+                return current;
+            });
+        }
+    }
+
+    /**
+     * Forgets the buckets of tokens that made no call for {@code acmf.github.rate-limit.idle-eviction-ms},
+     * unless their limit is still exhausted.
+     */
+    @Scheduled(fixedDelayString = "${acmf.github.rate-limit.idle-eviction-ms:600000}")
+    public void evictIdleBuckets() {
+        long cutoff = System.currentTimeMillis() - idleEvictionMs;
+        for (String key : buckets.keySet()) {
+            buckets.computeIfPresent(key, (k, bucket) -> bucket.isIdleSince(cutoff) ? null : bucket);
+        }
+    }
+
+    /**
+     * Returns how long to wait before retrying a rate-limited response, or empty if
+     * the response is not rate limited.
+     */
+    private OptionalLong rateLimitDelay(HttpResponse<?> response, int attempt) {
+        int status = response.statusCode();
+        if (status != 403 && status != 429) {
+            return OptionalLong.empty();
+        }
+        OptionalLong retryAfter = response.headers().firstValueAsLong("retry-after");
+        if (retryAfter.isPresent()) {
+            return OptionalLong.of(TimeUnit.SECONDS.toMillis(retryAfter.getAsLong()));
+        }
+        if (response.headers().firstValueAsLong("x-ratelimit-remaining").orElse(-1) == 0) {
+            long reset = TimeUnit.SECONDS.toMillis(response.headers().firstValueAsLong("x-ratelimit-reset").orElse(0));
+            return OptionalLong.of(Math.max(reset - System.currentTimeMillis(), 0) + jitter(backoffMs));
+        }
+        long backoff = Math.min(maxBackoffMs, backoffMs << Math.min(attempt, 20));
+        if (status == 403) {
+            if (!isSecondaryRateLimit(response)) {
+                // A plain permission error
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(Math.max(secondaryWaitMs, backoff) + jitter(backoffMs));
+        }
+        return OptionalLong.of(backoff / 2 + jitter(backoff / 2));
+    }
+
+    /**
+     * Whether the message of a 403 says a secondary rate limit (formerly "abuse
+     * detection") was hit.
+     */
+    private static boolean isSecondaryRateLimit(HttpResponse<?> response) {
+        String body;
+        if (response instanceof PeekedResponse<?> peeked) {
+            body = new String(peeked.head, StandardCharsets.UTF_8);
+        } else if (response.body() instanceof String text) {
+            body = text;
+        } else if (response.body() instanceof byte[] bytes) {
+            body = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            return false;
+        }
+        String message = body.toLowerCase(Locale.ROOT);
+        return message.contains("secondary rate limit") || message.contains("abuse detection");
+    }
+
+    /**
+     * Reads the start of a streamed body, so its message can be checked while the caller
+     * still gets the whole body.
+     */
+    private static <T> HttpResponse<T> peeked(HttpResponse<T> response) throws IOException {
+        if (!(response.body() instanceof InputStream in)) {
+            return response;
+        }
+        return new PeekedResponse<>(response, in.readNBytes(FORBIDDEN_PEEK_BYTES), in);
+    }
+
+    private static long jitter(long bound) {
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound) : 0;
+    }
+
+    private static void close(HttpResponse<?> response) {
+        if (response.body() instanceof InputStream in) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // The response is discarded
+            }
+        }
+    }
+
+    /**
+     * A response whose body stream was partly read: the bytes read are served again
+     * before the rest of the stream.
+     */
+    private static final class PeekedResponse<T> implements HttpResponse<T> {
+
+        private final HttpResponse<T> response;
+        private final byte[] head;
+        private final T body;
+
+        @SuppressWarnings("unchecked")
+        private PeekedResponse(HttpResponse<T> response, byte[] head, InputStream rest) {
+            this.response = response;
+            this.head = head;
+            this.body = (T) new SequenceInputStream(new ByteArrayInputStream(head), rest);
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return response.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public T body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return response.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return response.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return response.version();
+        }
+    }
+
+    /**
+     * Tokens are only kept hashed.
+     */
+    private static String key(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rate limit state of one token.
+     */
+    private static final class Bucket {
+
+        private final Semaphore permits;
+        private long remaining = -1;
+        private long resetAt;
+        private long blockedUntil;
+
+        // Guarded by the lock of the buckets map entry
+        private int calls;
+        private long lastUsed = System.currentTimeMillis();
+
+        private Bucket(int maxConcurrent) {
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        /**
+         * Whether no call is running or waiting, none was made since the cutoff, and the
+         * limit GitHub reported does not block calls anymore.
+         */
+        private boolean isIdleSince(long cutoff) {
+            if (calls > 0 || lastUsed >= cutoff) {
+                return false;
+            }
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                return blockedUntil <= now && (remaining != 0 || resetAt <= now);
+            }
+        }
+
+        /**
+         * Waits until the token may send again.
+         */
+        private void awaitAllowed(long deadline) throws InterruptedException {
+            while (true) {
+                long allowedAt;
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    allowedAt = Math.max(blockedUntil, remaining == 0 ? resetAt : 0);
+                    if (allowedAt <= now) {
+                        return;
+                    }
+                }
+                if (allowedAt > deadline) {
+                    throw new GitHubApiException(429, "GitHub rate limit of this token is exhausted until "
+                            + Instant.ofEpochMilli(allowedAt) + ".");
+                }
+                Thread.sleep(Math.max(allowedAt - System.currentTimeMillis(), 1));
+            }
+        }
+
+        private synchronized void update(HttpResponse<?> response) {
+            OptionalLong remainingHeader = response.headers().firstValueAsLong("x-ratelimit-remaining");
+            OptionalLong resetHeader = response.headers().firstValueAsLong("x-ratelimit-reset");
+            if (remainingHeader.isPresent() && resetHeader.isPresent()) {
+                remaining = remainingHeader.getAsLong();
+                resetAt = TimeUnit.SECONDS.toMillis(resetHeader.getAsLong());
+            }
+        }
+
+        private synchronized void block(long until) {
+            blockedUntil = Math.max(blockedUntil, until);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.exception.GitHubApiException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+
+/**
+ * Commits a generated workspace and pushes it to its GitHub repository, in process with JGit.
+ *
+ * <p>The index is built from a single scan of the workspace ({@code .gitignore} files
+ * are honored) and committed on {@code main}. The push goes over HTTPS with the
+ * credentials held in memory, never in the remote URL, and runs under the
+ * {@link CommandRunner.Type#GIT} limits and timeout.</p>
+ *
+ * <p>A push retried after a failure starts from a fresh repository and replaces
+ * whatever an earlier attempt pushed, so the remote always gets one commit.</p>
+ *
+ * <p>With {@code acmf.github.push-mode=data-api} the files are uploaded through the
+ * GitHub Git Data API instead, see {@link GitDataApiPushService}.</p>
+ */
+@Service
+public class GitPushService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitPushService.class);
+
+    private static final String BRANCH = "main";
+
+    private static final PersonIdent BOT = new PersonIdent("ACMF Bot", "bot@acmf.com");
+
+    @Autowired
+    private CommandRunner commandRunner;
+
+    @Autowired
+    private GitDataApiPushService gitDataApiPushService;
+
+    @Value("${acmf.github.push-mode:git}")
+    private String pushMode;
+
+    /**
+     * Initializes a repository in the given directory, commits all its files and pushes
+     * them to the {@code main} branch of the given remote.
+     *
+     * @param projectPath The directory to push.
+     * @param repoUrl     HTTPS clone URL of the remote repository.
+     * @param username    GitHub user name.
+     * @param token       GitHub token authorizing the push.
+     * @throws GitHubApiException If the commit fails or the remote rejects the push.
+     */
+    public void initAndPush(String projectPath, String repoUrl, String username, String token) throws IOException, InterruptedException {
+        if ("data-api".equalsIgnoreCase(pushMode)) {
+            commandRunner.limited(CommandRunner.Type.GIT, () -> {
+                gitDataApiPushService.push(projectPath, repoUrl, username, token);
+                return null;
+            });
+            return;
+        }
+        int timeoutSeconds = (int) Math.min(Integer.MAX_VALUE, commandRunner.timeoutSeconds(CommandRunner.Type.GIT));
+        // A repository left by an earlier attempt would add a second commit and a duplicate remote
+        FileSystemUtils.deleteRecursively(Paths.get(projectPath, ".git"));
+        commandRunner.limited(CommandRunner.Type.GIT, () -> {
+            try (Git git = Git.init().setDirectory(new File(projectPath)).setInitialBranch(BRANCH).call()) {
+                // 1. Stage every file and commit the index
+                git.add().addFilepattern(".").call();
+                git.commit()
+                        .setMessage("Initial commit by ACMF")
+                        .setAuthor(BOT)
+                        .setCommitter(BOT)
+                        .setSign(false)
+                        .call();
+
+                // 2. Remember the remote without credentials
+                git.remoteAdd().setName("origin").setUri(new URIish(repoUrl)).call();
+
+                // 3. Push, authenticating with the token
+                Iterable<PushResult> results = git.push()
+                        .setRemote("origin")
+                        .setRefSpecs(new RefSpec("refs/heads/" + BRANCH + ":refs/heads/" + BRANCH))
+                        .setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, token))
+                        .setForce(true)
+                        .setTimeout(timeoutSeconds)
+                        .call();
+                checkPushed(results);
+                logger.info("Pushed {} to {}", projectPath, repoUrl);
+                return null;
+            } catch (TransportException e) {
+                throw new GitHubApiException(HttpStatus.BAD_GATEWAY.value(), "Could not push to " + repoUrl + ": " + e.getMessage());
+            } catch (GitAPIException | URISyntaxException e) {
+                throw new GitHubApiException(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Could not commit " + projectPath + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static void checkPushed(Iterable<PushResult> results) {
+        for (PushResult result : results) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                if (update.getStatus() != RemoteRefUpdate.Status.OK && update.getStatus() != RemoteRefUpdate.Status.UP_TO_DATE) {
+                    String reason = update.getMessage() != null ? update.getMessage() : update.getStatus().name();
+                    throw new GitHubApiException(HttpStatus.BAD_GATEWAY.value(),
+                            "GitHub rejected the push of " + update.getRemoteName() + ": " + reason);
+                }
+            }
+        }
+    }
+}
@@ -9,13 +9,34 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 public class GithubWorkflowService {
 
     private static final Logger LOGGER = Logger.getLogger(GithubWorkflowService.class.getName());
 
+    private static final WorkflowTemplate.Escaper NAME = WorkflowTemplate.Escaper.NAME;
+
+    private static final WorkflowTemplate.Escaper QUOTED = WorkflowTemplate.Escaper.YAML_DOUBLE_QUOTED;
+
+    // Workflow templates, compiled once; service names are quoted in the YAML matrix lists,
+    // every other value is written bare into YAML and shell commands and must be a plain name
+    private static final WorkflowTemplate EC2_DEPLOYMENT = WorkflowTemplate.compile(ec2DeploymentTemplate(),
+            NAME, NAME, NAME, NAME, NAME);
+
+    private static final WorkflowTemplate EKS_DEPLOYMENT = WorkflowTemplate.compile(eksDeploymentTemplate(),
+            NAME, NAME, NAME);
+
+    private static final WorkflowTemplate EC2_WORKFLOW = WorkflowTemplate.compile(ec2WorkflowTemplate(),
+            QUOTED, NAME, NAME, NAME, NAME, NAME, NAME, NAME, NAME, NAME);
+
+    private static final WorkflowTemplate EKS_WORKFLOW = WorkflowTemplate.compile(eksWorkflowTemplate(),
+            QUOTED, NAME, NAME, NAME, NAME, NAME);
+
+    private static final String DOCKER_PULL_PREFIX = "                    docker pull public.ecr.aws/c4d3l3m6/";
+
+    private static final String DOCKER_PULL_SUFFIX = ":latest";
+
     public static void createGithubWorkflow(String appName, String projectPath, String cloudProvider,
                                             String cloudService, String awsAccountId, String region, String githubOrg , String githubUsername, String serverPort) {
         String workflowDir = projectPath + "/.github/workflows";
@@ -43,6 +64,13 @@ public class GithubWorkflowService {
         }
     }
     private static String getEC2DeploymentYAML(String appName, String region, String githubOrg , String appNameLowerCase, String serverPort) {
+        return EC2_DEPLOYMENT.render(appName, region, githubOrg, appNameLowerCase, serverPort);
+    }
+
+    /**
+     * Arguments: app name, region, GitHub organization, lower-case app name, server port.
+     */
+    private static String ec2DeploymentTemplate() {
         return """
                 name: Build, Push to ECR, and Deploy to EC2
                 on:
@@ -242,12 +270,18 @@ public class GithubWorkflowService {
                             -e SPRING_CLOUD_DISCOVERY_ENABLED=false \\
                             public.ecr.aws/c4d3l3m6/%4$s:latest
                           EOF
-                """.formatted(appName, region, githubOrg, appNameLowerCase, serverPort);
-//                    .formatted(appName.toLowerCase().replaceAll("[^a-z0-9-]", "-"), region, githubOrg, appNameLowerCase);
+                """;
     }
 
 
     private static String getEKSDeploymentYAML(String appName, String awsAccountId, String region) {
+        return EKS_DEPLOYMENT.render(appName, awsAccountId, region);
+    }
+
+    /**
+     * Arguments: app name, AWS account id, region.
+     */
+    private static String eksDeploymentTemplate() {
         return """
     name: Deploy to EKS
 
@@ -338,7 +372,7 @@ public class GithubWorkflowService {
               done
               EXTERNAL_IP=$(kubectl get svc %1$s -o jsonpath='{.status.loadBalancer.ingress[0].hostname}')
               echo "Application is accessible at http://${EXTERNAL_IP}"
-    """.formatted(appName, awsAccountId, region);
+    """;
     }
 
 
@@ -775,22 +809,30 @@ public class GithubWorkflowService {
 //        );
 //    }
 
-    private String getEC2WorkflowYAML(
+    String getEC2WorkflowYAML(
             List<String> services,
             String githubOrg,
             String repoName
     ) {
+        return EC2_WORKFLOW.render(
+                WorkflowTemplate.list(services, "\"", "\", \"", "\""),
+                repoName,
+                repoName,
+                githubOrg,
+                repoName,
+                githubOrg,
+                repoName,
+                repoName,
+                WorkflowTemplate.list(services, "", " ", ""),
+                WorkflowTemplate.list(services, DOCKER_PULL_PREFIX, DOCKER_PULL_SUFFIX + "\n" + DOCKER_PULL_PREFIX, DOCKER_PULL_SUFFIX)
+        );
+    }
 
-        String matrixList = services.stream()
-                .map(s -> "\"" + s + "\"")
-                .collect(Collectors.joining(", "));
-
-        String dockerPulls = services.stream()
-                .map(s -> "                    docker pull public.ecr.aws/c4d3l3m6/" + s + ":latest")
-                .collect(Collectors.joining("\n"));
-
-        String serviceLoop = String.join(" ", services);
-
+    /**
+     * Arguments: quoted service matrix, repository name (twice), GitHub organization, repository name,
+     * GitHub organization, repository name (twice), space-separated services, docker pull lines.
+     */
+    static String ec2WorkflowTemplate() {
         return """
 name: Build, Push to ECR Public, and Deploy to EC2
 
@@ -976,26 +1018,25 @@ jobs:
             docker compose down --remove-orphans || true
             docker compose up -d --force-recreate
           EOF
-""".formatted(
-                matrixList,
-                repoName,
-                repoName,
-                githubOrg,
-                repoName,
-                githubOrg,
-                repoName,
-                repoName,
-                serviceLoop,
-                dockerPulls
-        );
+""";
     }
 
 
 
     // ---------- EKS (Private ECR per account/region) ----------
-    private String getEKSWorkflowYAML(List<String> services, String awsAccountId, String region) {
-        String matrixList = services.stream().map(s -> "\"" + s + "\"").collect(Collectors.joining(", "));
+    String getEKSWorkflowYAML(List<String> services, String awsAccountId, String region) {
+        return EKS_WORKFLOW.render(
+                WorkflowTemplate.list(services, "\"", "\", \"", "\""),
+                awsAccountId, region,
+                awsAccountId, region,
+                region
+        );
+    }
 
+    /**
+     * Arguments: quoted service matrix, AWS account id, region, AWS account id, region, region.
+     */
+    static String eksWorkflowTemplate() {
         return """
         name: Build & Deploy Microservices to EKS
         on:
@@ -1064,12 +1105,7 @@ jobs:
               - name: Apply Kubernetes Manifests
                 run: |
                   kubectl apply -f kubernetes/
-        """.formatted(
-                matrixList,
-                awsAccountId, region,
-                awsAccountId, region,
-                region
-        );
+        """;
     }
 
 
@@ -0,0 +1,158 @@
+package com.itstrat.acmf.apis.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Translates backend paths into paths the Docker daemon can mount.
+ *
+ * <p>When the backend itself runs in a container (EC2), containers it starts are
+ * created by the host's Docker daemon, so volume mounts must use host paths. The
+ * host directory holding the generated projects is given by the
+ * {@code HOST_ROOT_PATH} environment variable and matches the backend's
+ * {@code generated-projects} directory. Without it (local development) backend
+ * paths are used as they are.</p>
+ *
+ * <p>Workspaces may also live under a memory-backed root
+ * ({@code acmf.workspace.memory.root}, e.g. a tmpfs). When the backend runs in a
+ * container, the host path of that root is given by {@code HOST_MEMORY_ROOT_PATH};
+ * without it the memory root cannot be mounted and is not used.</p>
+ */
+@Component
+public class HostPathResolver {
+
+    private static final String SPLIT_MARKER = "generated-projects";
+
+    private final String hostRootPath = System.getenv("HOST_ROOT_PATH");
+
+    private final String hostMemoryRootPath = System.getenv("HOST_MEMORY_ROOT_PATH");
+
+    @Value("${acmf.generation.workspace-root:generated-projects}")
+    private String workspaceRoot;
+
+    @Value("${acmf.workspace.memory.root:}")
+    private String memoryRoot;
+
+    /**
+     * Returns the host path of the given backend directory, to be used as a volume mount.
+     */
+    public String toHostPath(File dir) {
+        Optional<String> memoryRelativePath = memoryRelativePath(dir);
+        if (memoryRelativePath.isPresent() && isContainerized()) {
+            return join(hostMemoryRootPath, memoryRelativePath.get());
+        }
+        if (!isContainerized()) {
+            // Local development (Windows/Mac) or no Env Var set
+            return dir.getAbsolutePath().replace("\\", "/");
+        }
+        // Keep structures like 'microservice-system/service1' instead of flattening to 'service1'
+        String relativePath = relativeToMarker(dir).orElse(dir.getName());
+        return join(hostRootPath, relativePath);
+    }
+
+    /**
+     * Whether workspaces may be placed under the memory root: it is configured, and
+     * its host path is known when the backend runs in a container.
+     */
+    public boolean canMountMemoryRoot() {
+        return memoryRoot != null && !memoryRoot.isEmpty()
+                && (!isContainerized() || (hostMemoryRootPath != null && !hostMemoryRootPath.isEmpty()));
+    }
+
+    /**
+     * Returns the host path of the memory root, or empty if it cannot be mounted.
+     */
+    public Optional<String> memoryHostPath() {
+        if (!canMountMemoryRoot()) {
+            return Optional.empty();
+        }
+        return Optional.of(isContainerized()
+                ? join(hostMemoryRootPath, "")
+                : memoryRootPath().toString().replace("\\", "/"));
+    }
+
+    /**
+     * Returns the path of the given directory relative to the memory root, with
+     * forward slashes, or empty if the directory lies outside of it or the memory
+     * root cannot be mounted.
+     */
+    public Optional<String> memoryRelativePath(File dir) {
+        if (!canMountMemoryRoot()) {
+            return Optional.empty();
+        }
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        Path root = memoryRootPath();
+        if (!path.startsWith(root)) {
+            return Optional.empty();
+        }
+        return Optional.of(root.relativize(path).toString().replace("\\", "/"));
+    }
+
+    /**
+     * Returns the host path of the workspace root, the directory all generated
+     * projects are expected to live under.
+     */
+    public String workspaceHostPath() {
+        return isContainerized()
+                ? join(hostRootPath, "")
+                : workspaceRootPath().toString().replace("\\", "/");
+    }
+
+    /**
+     * Returns the path of the given directory relative to the workspace root, with
+     * forward slashes, or empty if the directory lies outside of it.
+     */
+    public Optional<String> workspaceRelativePath(File dir) {
+        if (isContainerized()) {
+            return relativeToMarker(dir);
+        }
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        Path root = workspaceRootPath();
+        if (!path.startsWith(root)) {
+            return Optional.empty();
+        }
+        return Optional.of(root.relativize(path).toString().replace("\\", "/"));
+    }
+
+    private boolean isContainerized() {
+        return hostRootPath != null && !hostRootPath.isEmpty();
+    }
+
+    private Path workspaceRootPath() {
+        return Paths.get(workspaceRoot).toAbsolutePath().normalize();
+    }
+
+    private Path memoryRootPath() {
+        return Paths.get(memoryRoot).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Extracts everything after "generated-projects", e.g. {@code microservice-system/gateway1}
+     * for {@code /app/generated-projects/microservice-system/gateway1}.
+     */
+    private Optional<String> relativeToMarker(File dir) {
+        String internalPath = dir.getAbsolutePath().replace("\\", "/");
+        int index = internalPath.indexOf(SPLIT_MARKER);
+        if (index == -1) {
+            return Optional.empty();
+        }
+        String relativePath = internalPath.substring(index + SPLIT_MARKER.length());
+        while (relativePath.startsWith("/")) {
+            relativePath = relativePath.substring(1);
+        }
+        return Optional.of(relativePath);
+    }
+
+    private static String join(String hostRoot, String relativePath) {
+        String root = hostRoot.replace("\\", "/");
+        if (relativePath.isEmpty()) {
+            return root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+        }
+        return (root.endsWith("/") ? root : root + "/") + relativePath;
+    }
+}
@@ -1,38 +1,95 @@
 package com.itstrat.acmf.apis.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.itstrat.acmf.apis.entity.JdlRequest;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.exception.CommandTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class JHipsterDockerService {
 
+    private static final Logger logger = LoggerFactory.getLogger(JHipsterDockerService.class);
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private static final long MAX_SECRET_SCAN_BYTES = 1024 * 1024;
+
+    /**
+     * Non-interactive generator run: --force (overwrite files), --skip-install, --skip-git, --no-insight, --defaults
+     */
+    private static final List<String> GENERATOR_COMMAND =
+            List.of("jhipster", "--force", "--skip-install", "--skip-git", "--no-insight", "--defaults");
+
+    /**
+     * Directory the application directory is mounted under when it runs outside of the pool
+     */
+    private static final String CONTAINER_APPS_DIR = "/home/jhipster/apps";
+
+    @Autowired
+    private GeneratedProjectCache generatedProjectCache;
+
+    @Autowired
+    private GeneratorContainerPool generatorContainerPool;
+
+    @Autowired
+    private HostPathResolver hostPathResolver;
+
+    @Autowired
+    private DockerEngineClient dockerEngineClient;
+
+    @Autowired
+    private CommandRunner commandRunner;
+
+    @Autowired
+    private DockerReadinessService dockerReadinessService;
+
+    @Autowired
+    private RemoteGeneratorClient remoteGeneratorClient;
+
+    @Value("${acmf.generator.image:jhipster/jhipster:v8.11.0}")
+    private String generatorImage;
+
     /**
      * Generates a JHipster Monolith project using Docker.
      *
      * <p>This method will:</p>
      * <ul>
      *     <li>Create a project directory based on the provided path.</li>
-     *     <li>Write the .yo-rc.json configuration file using the given {@link JdlRequest}.</li>
-     *     <li>Run the JHipster Docker generator inside the created directory.</li>
+     *     <li>Write the .yo-rc.json configuration file using the given {@link GenerationSpec}.</li>
+     *     <li>Restore an identical previous generation from the {@link GeneratedProjectCache},
+     *     or run the JHipster Docker generator inside the created directory.</li>
      * </ul>
      *
-     * @param request     JDL request containing the monolith configuration.
+     * @param spec        Compiled monolith configuration.
      * @param projectPath Directory path where the monolith project will be generated.
+     * @param output      Receives the generator output line by line.
      * @throws IOException          If writing files or running Docker fails.
      * @throws InterruptedException If the Docker process is interrupted.
      */
-    public void generateMonolithProjectViaDocker(JdlRequest request, String projectPath) throws IOException, InterruptedException {
+    public void generateMonolithProjectViaDocker(GenerationSpec spec, String projectPath, Consumer<String> output) throws IOException, InterruptedException {
         File appDir = new File(projectPath);
-        writeYoRc(appDir, request);  // Generate .yo-rc.json file from JDL config
-        runDocker(appDir);           // Execute JHipster generator inside Docker
+        writeYoRc(appDir, spec);  // Generate .yo-rc.json file from JDL config
+        generate(appDir, output);    // Restore from cache or execute JHipster generator inside Docker
     }
 
     /**
@@ -41,25 +98,112 @@ public class JHipsterDockerService {
      * <p>This method will:</p>
      * <ul>
      *     <li>Create a project directory based on the provided path.</li>
-     *     <li>Write the .yo-rc.json configuration file using the given {@link JdlRequest}.</li>
-     *     <li>Run the JHipster Docker generator inside the created directory.</li>
+     *     <li>Write the .yo-rc.json configuration file using the given {@link GenerationSpec}.</li>
+     *     <li>Restore an identical previous generation from the {@link GeneratedProjectCache},
+     *     or run the JHipster Docker generator inside the created directory.</li>
      * </ul>
      *
-     * @param request     JDL request containing the microservice configuration.
+     * @param spec        Compiled microservice configuration.
      * @param projectPath Directory path where the microservice project will be generated.
+     * @param output      Receives the generator output line by line.
      * @throws IOException          If writing files or running Docker fails.
      * @throws InterruptedException If the Docker process is interrupted.
      */
-    public void generateMicroserviceProjectViaDocker(JdlRequest request, String projectPath) throws IOException, InterruptedException {
+    public void generateMicroserviceProjectViaDocker(GenerationSpec spec, String projectPath, Consumer<String> output) throws IOException, InterruptedException {
         File appDir = new File(projectPath);
-        writeYoRc(appDir, request);  // Generate .yo-rc.json file from JDL config
-        runDocker(appDir);           // Execute JHipster generator inside Docker
+        writeYoRc(appDir, spec);  // Generate .yo-rc.json file from JDL config
+        generate(appDir, output);    // Restore from cache or execute JHipster generator inside Docker
     }
 
+    /**
+     * Fills the application directory from the {@link GeneratedProjectCache} when the
+     * same .yo-rc.json was generated before by the same generator, otherwise runs the
+     * generator and caches its output.
+     *
+     * @param appDir The application directory holding the .yo-rc.json to generate.
+     * @param output Receives the generator output line by line.
+     */
+    private void generate(File appDir, Consumer<String> output) throws IOException, InterruptedException {
+        if (!generatedProjectCache.isEnabled()) {
+            runGenerator(appDir, output);
+            return;
+        }
+        File yoRc = new File(appDir, ".yo-rc.json");
+        boolean secretProvided = readJwtSecretKey(yoRc) != null;
+        String key;
+        if (remoteGeneratorClient.isEnabled()) {
+            key = generatedProjectCache.key(yoRc.toPath(), "remote " + remoteGeneratorClient.getUrl());
+        } else {
+            key = generatedProjectCache.key(yoRc.toPath());
+        }
+        if (generatedProjectCache.restore(key, appDir.toPath())) {
+            output.accept("Restored previously generated project from cache.");
+            if (!secretProvided) {
+                rotateJwtSecretKey(appDir);
+            }
+            return;
+        }
+        runGenerator(appDir, output);
+        generatedProjectCache.store(key, appDir.toPath());
+    }
+
+    /**
+     * Runs the generator on the remote generator when it is enabled, otherwise in Docker.
+     */
+    private void runGenerator(File appDir, Consumer<String> output) throws IOException, InterruptedException {
+        if (!remoteGeneratorClient.isEnabled()) {
+            runDocker(appDir, output);
+            return;
+        }
+        commandRunner.limited(CommandRunner.Type.GENERATOR, () -> {
+            remoteGeneratorClient.generate(appDir.toPath(), output);
+            return null;
+        });
+    }
+
+    /**
+     * Replaces the JWT secret the generator created for a cached tree with a fresh one,
+     * so projects restored from the same cache entry never share a signing key.
+     *
+     * @param appDir The restored application directory.
+     */
+    private void rotateJwtSecretKey(File appDir) throws IOException {
+        String generatedSecret = readJwtSecretKey(new File(appDir, ".yo-rc.json"));
+        if (generatedSecret == null) {
+            return;
+        }
+        byte[] random = new byte[64];
+        SECURE_RANDOM.nextBytes(random);
+        String freshSecret = Base64.getEncoder().encodeToString(random);
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(appDir.toPath())) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            if (Files.size(file) > MAX_SECRET_SCAN_BYTES) {
+                continue;
+            }
+            String content;
+            try {
+                content = Files.readString(file);
+            } catch (MalformedInputException e) {
+                continue; // Binary file
+            }
+            if (content.contains(generatedSecret)) {
+                Files.writeString(file, content.replace(generatedSecret, freshSecret));
+            }
+        }
+    }
+
+    private String readJwtSecretKey(File yoRc) throws IOException {
+        JsonNode secret = new ObjectMapper().readTree(yoRc).path("generator-jhipster").path("jwtSecretKey");
+        return secret.isTextual() ? secret.asText() : null;
+    }
 
     /**
      * Writes the JHipster configuration file (.yo-rc.json) into the specified directory
-     * based on the properties provided in the {@link JdlRequest}.
+     * based on the compiled {@link GenerationSpec} of the application.
      *
      * <p>The .yo-rc.json file is required by the JHipster generator and contains
      * all necessary metadata such as application type, database type, build tool,
@@ -67,10 +211,10 @@ public class JHipsterDockerService {
      * according to the request.</p>
      *
      * @param dir     The directory where the .yo-rc.json file should be created.
-     * @param request The {@link JdlRequest} containing JHipster application settings.
+     * @param spec The {@link GenerationSpec} containing JHipster application settings.
      * @throws IOException If there is an error writing the file.
      */
-    private void writeYoRc(File dir, JdlRequest request) throws IOException {
+    private void writeYoRc(File dir, GenerationSpec spec) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         ObjectNode config = mapper.createObjectNode();
 
@@ -78,86 +222,78 @@ public class JHipsterDockerService {
         ObjectNode gen = config.putObject("generator-jhipster");
 
         // Basic metadata
-        gen.put("baseName", request.getBaseName());
-        gen.put("applicationType", request.getApplicationType());
-        gen.put("packageName", request.getPackageName());
-        gen.put("authenticationType", request.getAuthenticationType());
-        gen.put("buildTool", request.getBuildTool());
+        gen.put("baseName", spec.getBaseName());
+        gen.put("applicationType", spec.getApplicationType().getValue());
+        gen.put("packageName", spec.getPackageName());
+        gen.put("authenticationType", spec.getAuthenticationType());
+        gen.put("buildTool", spec.getBuildTool().getValue());
 
         // Optional client framework
-        if (request.getClientFramework() != null) {
-            gen.put("clientFramework", request.getClientFramework());
+        if (spec.getClientFramework() != null) {
+            gen.put("clientFramework", spec.getClientFramework());
         }
 
         // Database configuration
-        gen.put("databaseType", request.getDatabaseType());
-        gen.put("prodDatabaseType", request.getProdDatabaseType());
+        gen.put("databaseType", spec.getDatabaseType());
+        gen.put("prodDatabaseType", spec.getProdDatabaseType());
 
         // Optional cache provider
-        if (request.getCacheProvider() != null) {
-            gen.put("cacheProvider", request.getCacheProvider());
+        if (spec.getCacheProvider() != null) {
+            gen.put("cacheProvider", spec.getCacheProvider());
         }
 
         // Optional server port
-        if (request.getServerPort() != null) {
-            gen.put("serverPort", request.getServerPort());
+        if (spec.getServerPort() != null) {
+            gen.put("serverPort", String.valueOf(spec.getServerPort()));
         }
 
         // Hibernate cache toggle
-        gen.put("enableHibernateCache", request.isEnableHibernateCache());
+        gen.put("enableHibernateCache", spec.isEnableHibernateCache());
 
         // Optional JWT secret key
-        if (request.getJwtSecretKey() != null) {
-            gen.put("jwtSecretKey", request.getJwtSecretKey());
+        if (spec.getJwtSecretKey() != null) {
+            gen.put("jwtSecretKey", spec.getJwtSecretKey());
         }
 
         // Optional service discovery type (Eureka, Consul, etc.)
-        if (request.getServiceDiscoveryType() != null) {
-            gen.put("serviceDiscoveryType", request.getServiceDiscoveryType());
+        if (spec.getServiceDiscoveryType() != null) {
+            gen.put("serviceDiscoveryType", spec.getServiceDiscoveryType());
         }
 
-        // Reactive vs. traditional app
-        if (request.getApplicationType().equals("gateway")) {
-            gen.put("reactive", true);
-        } else {
-            gen.put("reactive", request.isReactive());
-        }
+        // Reactive vs. traditional app (gateways are always reactive)
+        gen.put("reactive", spec.isReactive());
 
         // Internationalization (i18n) settings
-        gen.put("nativeLanguage", request.getNativeLanguage() != null ? request.getNativeLanguage() : "en");
+        gen.put("nativeLanguage", spec.getNativeLanguage());
         ArrayNode languages = mapper.createArrayNode();
-        if (request.getOtherLanguages() != null && !request.getOtherLanguages().isEmpty()) {
-            request.getOtherLanguages().forEach(languages::add);
-        } else {
-            languages.add("en");
-        }
+        spec.getLanguages().forEach(languages::add);
         gen.set("languages", languages);
-        gen.put("enableTranslation", request.isEnableTranslation());
+        gen.put("enableTranslation", spec.isEnableTranslation());
 
         // Micro-frontend setting
-        gen.put("microfrontend", request.isMicrofrontend());
+        gen.put("microfrontend", spec.isMicrofrontend());
 
-        // Websocket support (only for monoliths)
-        if (request.getApplicationType().equals("monolith") && request.getWebsocket() != null) {
-            gen.put("websocket", request.getWebsocket());
+        // Websocket support (only set for monoliths)
+        if (spec.getWebsocket() != null) {
+            gen.put("websocket", spec.getWebsocket());
         }
 
         // Optional client package manager (npm/yarn/pnpm)
-        if (request.getClientPackageManager() != null) {
-            gen.put("clientPackageManager", request.getClientPackageManager());
+        if (spec.getClientPackageManager() != null) {
+            gen.put("clientPackageManager", spec.getClientPackageManager());
         }
 
         // Optional client themes
-        if (request.getClientTheme() != null && !request.getClientTheme().isEmpty()) {
+        if (!spec.getClientTheme().isEmpty()) {
             ArrayNode themes = mapper.createArrayNode();
-            request.getClientTheme().forEach(themes::add);
+            spec.getClientTheme().forEach(themes::add);
             gen.set("clientTheme", themes);
         }
 
         // Optional test frameworks
-        if (request.getTestFrameworks() != null && !request.getTestFrameworks().isEmpty()) {
+        if (!spec.getTestFrameworks().isEmpty()) {
             ArrayNode testFrameworks = mapper.createArrayNode();
-            request.getTestFrameworks().forEach(testFrameworks::add);
+            spec.getTestFrameworks().forEach(testFrameworks::add);
             gen.set("testFrameworks", testFrameworks);
         }
 
@@ -301,123 +437,80 @@ public class JHipsterDockerService {
 //        }
 //    }
 
-    private void runDocker(File appDir) throws IOException, InterruptedException {
-        // 1. Determine the path on the HOST machine (EC2)
-        String hostRootPath = System.getenv("HOST_ROOT_PATH");
-        String mountPath;
-
-        if (hostRootPath != null && !hostRootPath.isEmpty()) {
-            // CRITICAL FIX: Calculate the relative path from the backend's internal working directory
-            // This ensures structures like 'microservice-system/service1' are preserved
-            // instead of just flattening it to 'service1'
-
-            String internalPath = appDir.getAbsolutePath();
-            // Example internalPath: /app/generated-projects/microservice-system/gateway1
-
-            String splitMarker = "generated-projects";
-            int index = internalPath.indexOf(splitMarker);
-
-            String relativePath;
-            if (index != -1) {
-                // Extract everything after "generated-projects"
-                // Result: /microservice-system/gateway1
-                relativePath = internalPath.substring(index + splitMarker.length());
-            } else {
-                // Fallback if path structure is different
-                relativePath = "/" + appDir.getName();
-            }
-
-            // Ensure no double slashes or missing slashes when joining
-            if (!hostRootPath.endsWith("/")) {
-                hostRootPath += "/";
-            }
-            if (relativePath.startsWith("/") || relativePath.startsWith("\\")) {
-                relativePath = relativePath.substring(1);
+    private void runDocker(File appDir, Consumer<String> output) throws IOException, InterruptedException {
+        // Validate Docker availability from the cached probe: the Engine API socket, else the CLI
+        boolean engineAvailable = dockerReadinessService.awaitReady().engineApi();
+        long timeoutSeconds = commandRunner.timeoutSeconds(CommandRunner.Type.GENERATOR);
+
+        // Prefer exec'ing the generator in a warm pooled container
+        if (generatorContainerPool.canRun(appDir)) {
+            GeneratorContainerPool.GeneratorContainer container = generatorContainerPool.acquire();
+            boolean succeeded = false;
+            boolean timedOut = false;
+            try {
+                int exitCode = engineAvailable
+                        ? commandRunner.limited(CommandRunner.Type.GENERATOR, () -> dockerEngineClient.exec(container.getId(),
+                                GENERATOR_COMMAND, generatorContainerPool.workingDirectory(appDir), "root", timeoutSeconds, output))
+                        : commandRunner.run(CommandRunner.Type.GENERATOR,
+                                generatorContainerPool.execCommand(container, appDir, GENERATOR_COMMAND), null, output);
+                checkExitCode(exitCode, appDir);
+                succeeded = true;
+            } catch (CommandTimeoutException e) {
+                timedOut = true;
+                throw e;
+            } finally {
+                if (timedOut) {
+                    // The generator may still run inside the container
+                    generatorContainerPool.discard(container);
+                } else {
+                    generatorContainerPool.release(container, succeeded);
+                }
             }
+            return;
+        }
 
-            // Final Path: /home/ec2-user/generated-projects/microservice-system/gateway1
-            mountPath = hostRootPath + relativePath;
-
-            // Fix Windows slashes if they appeared somehow
-            mountPath = mountPath.replace("\\", "/");
-
-        } else {
-            // Local development (Windows/Mac) or no Env Var set
-            mountPath = appDir.getAbsolutePath().replace("\\", "/");
+        // 1. Determine the path on the HOST machine (EC2)
+        String mountPath = hostPathResolver.toHostPath(appDir);
+        // Mounted under its own name
+        String containerDir = CONTAINER_APPS_DIR + "/" + appDir.getName();
+
+        // Talk to the daemon directly when its socket is reachable
+        if (engineAvailable) {
+            DockerEngineClient.ContainerSpec spec = new DockerEngineClient.ContainerSpec(
+                    generatorImage, GENERATOR_COMMAND, containerDir, "root",
+                    List.of("/var/run/docker.sock:/var/run/docker.sock", mountPath + ":" + containerDir));
+            checkExitCode(commandRunner.limited(CommandRunner.Type.GENERATOR,
+                    () -> dockerEngineClient.run(spec, timeoutSeconds, output)), appDir);
+            return;
         }
 
         // 2. Construct the command using the correct Host Path
         // -u root: Runs as root to avoid permission issues
         // -v ...docker.sock: Allows the inner JHipster container to check Docker version if needed
-        String dockerCmd = String.format(
-                "docker run --rm -i -u root " +
-                        "-v /var/run/docker.sock:/var/run/docker.sock " +
-                        "-v \"%s:/home/jhipster/app\" " +
-                        "-w /home/jhipster/app " +
-                        "jhipster/jhipster:v8.11.0 jhipster --force --skip-install --skip-git --no-insight --defaults",
-                mountPath
-        );
-
-        System.out.println("Executing Docker Command: " + dockerCmd); // Debug log
-
-        // Detect host OS to determine how to invoke the shell
-        String os = System.getProperty("os.name").toLowerCase();
-        ProcessBuilder pb;
-        if (os.contains("win")) {
-            pb = new ProcessBuilder("cmd.exe", "/c", dockerCmd);
-        } else {
-            pb = new ProcessBuilder("/bin/bash", "-c", dockerCmd);
-        }
-
-        // Merge stderr into stdout for consistent log output
-        pb.redirectErrorStream(true);
+        // --name: Lets the container be removed if the run times out, killing the CLI does not stop it
+        String containerName = "acmf-generator-" + UUID.randomUUID();
+        List<String> command = new ArrayList<>(List.of(
+                "docker", "run", "--rm", "-i", "-u", "root",
+                "--name", containerName,
+                "-v", "/var/run/docker.sock:/var/run/docker.sock",
+                "-v", mountPath + ":" + containerDir,
+                "-w", containerDir,
+                generatorImage));
+        command.addAll(GENERATOR_COMMAND);
+
+        logger.debug("Executing Docker Command: {}", String.join(" ", command));
 
-        // Validate Docker availability
-        if (!isDockerInstalled()) {
-            throw new RuntimeException("Docker is not installed or not in PATH. Please install Docker and try again.");
-        }
-
-        Process process = pb.start();
-
-        // Stream logs from the container in real time
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[Docker] " + line);
-            }
-        }
-
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("JHipster Docker generation failed for: " + appDir.getAbsolutePath());
-        }
-    }
-
-    /**
-     * Check if Docker CLI is installed and accessible
-     */
-    private boolean isDockerInstalled() {
         try {
-            Process process = new ProcessBuilder("docker", "--version").start();
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            return false;
+            checkExitCode(commandRunner.run(CommandRunner.Type.GENERATOR, command, null, output), appDir);
+        } catch (CommandTimeoutException e) {
+            commandRunner.run(CommandRunner.Type.DOCKER, List.of("docker", "rm", "-f", containerName), null, logger::debug);
+            throw e;
         }
     }
 
-    /**
-     * Check if Docker daemon is running
-     */
-    private boolean isDockerRunning() {
-        try {
-            Process process = new ProcessBuilder("docker", "info").start();
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            return false;
+    private void checkExitCode(int exitCode, File appDir) {
+        if (exitCode != 0) {
+            throw new RuntimeException("JHipster Docker generation failed for: " + appDir.getAbsolutePath());
         }
     }
 }
-
-
@@ -0,0 +1,316 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobStatus;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams the project of a job delivered as an archive as a ZIP, straight from its
+ * workspace to the response.
+ *
+ * <p>A full download is not staged: files are deflated one at a time through a
+ * {@link ZipArchiveOutputStream} over the response stream, so memory use does not
+ * depend on the size of the project and no temporary archive is written. Entries
+ * are written in a fixed order (sorted per directory, with their modification time
+ * and Unix mode, so build wrappers such as {@code mvnw} stay executable), so the
+ * same workspace always yields the same bytes.</p>
+ *
+ * <p>A download resumed with an HTTP {@code Range} is served from a copy of the
+ * archive stored once per entity tag under {@code acmf.archive.cache-dir}, so
+ * neither the length nor the requested bytes require deflating the project again.
+ * Stored archives are evicted, least recently used first, once they take more than
+ * {@code acmf.archive.cache-mb}, and are cleared at startup.</p>
+ */
+@Service
+public class ProjectArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectArchiveService.class);
+
+    private static final long MB = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int DIRECTORY_MODE = 040755;
+
+    private static final int FILE_MODE = 0100644;
+
+    private static final int EXECUTABLE_MODE = 0100755;
+
+    // Guarded by this, in access order
+    private final Map<String, StoredArchive> stored = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long storedBytes;
+
+    private final Map<String, Object> storing = new ConcurrentHashMap<>();
+
+    @Value("${acmf.archive.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${acmf.archive.cache-dir:generation-archives}")
+    private String cacheDir;
+
+    @Value("${acmf.archive.cache-mb:2048}")
+    private long cacheMb;
+
+    /**
+     * A copy of an archive in the cache directory.
+     */
+    private record StoredArchive(Path file, long size) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = Paths.get(cacheDir);
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the workspace the archive of the given job is produced from, or empty if
+     * the job did not succeed as an archive or its workspace is not on this instance.
+     */
+    public Optional<Path> findArchiveRoot(GenerationJob job) {
+        if (job.getDelivery() != GenerationDelivery.ARCHIVE || job.getStatus() != GenerationJobStatus.SUCCEEDED
+                || job.getWorkspacePath() == null) {
+            return Optional.empty();
+        }
+        Path root = Paths.get(job.getWorkspacePath());
+        return Files.isDirectory(root) ? Optional.of(root) : Optional.empty();
+    }
+
+    /**
+     * Returns the entity tag of the archive of the given job, which changes if the job
+     * is generated again.
+     */
+    public String etag(GenerationJob job) {
+        return "\"" + job.getId() + "-" + job.getFinishedAt().toEpochSecond(ZoneOffset.UTC) + "\"";
+    }
+
+    /**
+     * Returns the length of the archive of the given job, storing the archive if it is not yet.
+     */
+    public long length(GenerationJob job, Path root) throws IOException {
+        try (FileChannel archive = openStored(job, root)) {
+            return archive.size();
+        }
+    }
+
+    /**
+     * Writes the whole archive of the given job.
+     */
+    public void write(GenerationJob job, Path root, OutputStream out) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        produce(root, counting);
+        logger.info("Streamed archive of generation job {} ({} bytes)", job.getId(), counting.count);
+    }
+
+    /**
+     * Writes the bytes {@code start} to {@code end} (inclusive) of the archive of the given
+     * job, from its stored copy.
+     */
+    public void write(GenerationJob job, Path root, OutputStream out, long start, long end) throws IOException {
+        try (FileChannel archive = openStored(job, root)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position <= end) {
+                long sent = archive.transferTo(position, end + 1 - position, target);
+                if (sent <= 0) {
+                    throw new EOFException("Stored archive of generation job " + job.getId() + " ends at " + position);
+                }
+                position += sent;
+            }
+        }
+        out.flush();
+        logger.info("Streamed bytes {}-{} of the archive of generation job {}", start, end, job.getId());
+    }
+
+    /**
+     * Opens the stored archive of a job, storing it first if needed. The archive is
+     * opened under the lock eviction deletes under, so it cannot vanish in between.
+     */
+    private FileChannel openStored(GenerationJob job, Path root) throws IOException {
+        String key = etag(job);
+        while (true) {
+            synchronized (this) {
+                StoredArchive archive = stored.get(key);
+                if (archive != null) {
+                    try {
+                        return FileChannel.open(archive.file(), StandardOpenOption.READ);
+                    } catch (NoSuchFileException e) {
+                        // Deleted behind our back, store it again
+                        stored.remove(key);
+                        storedBytes -= archive.size();
+                    }
+                }
+            }
+            store(job, key, root);
+        }
+    }
+
+    /**
+     * Produces the archive of a job into the cache directory, once even if several
+     * ranges of it are requested at the same time.
+     */
+    private void store(GenerationJob job, String key, Path root) throws IOException {
+        Object lock = storing.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                synchronized (this) {
+                    if (stored.containsKey(key)) {
+                        return;
+                    }
+                }
+                long begin = System.nanoTime();
+                Path dir = Files.createDirectories(Paths.get(cacheDir));
+                Path temporary = Files.createTempFile(dir, ".", ".zip.part");
+                try {
+                    try (OutputStream out = Files.newOutputStream(temporary)) {
+                        produce(root, out);
+                    }
+                    Path archive = dir.resolve(key.replace("\"", "") + ".zip");
+                    Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    long size = Files.size(archive);
+                    synchronized (this) {
+                        stored.put(key, new StoredArchive(archive, size));
+                        storedBytes += size;
+                        evict();
+                    }
+                    logger.info("Stored archive of generation job {} ({} bytes) in {} ms", job.getId(), size,
+                            (System.nanoTime() - begin) / 1_000_000);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+        } finally {
+            storing.remove(key, lock);
+        }
+    }
+
+    /**
+     * Deletes the least recently used archives while the cache exceeds its size, keeping the latest one.
+     */
+    private void evict() {
+        Iterator<StoredArchive> eldest = stored.values().iterator();
+        while (storedBytes > cacheMb * MB && stored.size() > 1) {
+            StoredArchive archive = eldest.next();
+            eldest.remove();
+            storedBytes -= archive.size();
+            try {
+                Files.deleteIfExists(archive.file());
+            } catch (IOException e) {
+                logger.warn("Could not delete stored archive {}: {}", archive.file(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Produces the archive of a workspace.
+     */
+    private void produce(Path root, OutputStream out) throws IOException {
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(new BufferedOutputStream(new CountingOutputStream(out), BUFFER_SIZE))) {
+            zip.setLevel(compressionLevel);
+            writeDirectory(zip, root, root.getFileName() + "/");
+        }
+        out.flush();
+    }
+
+    private void writeDirectory(ZipArchiveOutputStream zip, Path directory, String prefix) throws IOException {
+        zip.putArchiveEntry(entry(prefix, directory, DIRECTORY_MODE));
+        zip.closeArchiveEntry();
+        for (Path child : sortedChildren(directory)) {
+            String name = prefix + child.getFileName();
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                writeDirectory(zip, child, name + "/");
+            } else if (Files.isRegularFile(child, LinkOption.NOFOLLOW_LINKS)) {
+                zip.putArchiveEntry(entry(name, child, Files.isExecutable(child) ? EXECUTABLE_MODE : FILE_MODE));
+                Files.copy(child, zip);
+                zip.closeArchiveEntry();
+            } else {
+                logger.debug("Leaving {} out of the archive, it is not a regular file", child);
+            }
+        }
+    }
+
+    private static ZipArchiveEntry entry(String name, Path path, int mode) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setLastModifiedTime(Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS));
+        entry.setUnixMode(mode);
+        return entry;
+    }
+
+    private static List<Path> sortedChildren(Path directory) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(children::add);
+        }
+        Collections.sort(children);
+        return children;
+    }
+
+    /**
+     * Counts the bytes written through it, and leaves the stream it writes to open.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The response stream is closed by its owner
+            flush();
+        }
+    }
+}
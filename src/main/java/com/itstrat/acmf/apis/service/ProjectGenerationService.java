@@ -0,0 +1,495 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationOptions;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.entity.GenerationStage;
+import com.itstrat.acmf.apis.entity.MicroserviceSpec;
+import com.itstrat.acmf.apis.entity.Project;
+import com.itstrat.acmf.apis.entity.User;
+import com.itstrat.acmf.apis.repository.ProjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs the project generation pipeline (JHipster generation, Dockerfile, deployment
+ * descriptors, GitHub workflow, repository creation, push and persistence).
+ *
+ * <p>The pipeline is long running and is invoked by {@link GenerationJobService} on
+ * the generation executor; progress is reported through the given {@link GenerationJob}.</p>
+ *
+ * <p>The stages run as a dependency graph on the {@link GenerationPipelineExecutor}:
+ * the GitHub repository is created, and the Dockerfile and workflow of a monolith are
+ * written, while the JHipster generator runs. Each stage that completes is
+ * checkpointed on the job. When a stage fails the workspace is kept, and the next run
+ * of the job (a lease re-claim or {@link GenerationJobService#retry}) skips the
+ * completed stages, so e.g. a failed push is retried without generating the project
+ * again.</p>
+ */
+@Service
+public class ProjectGenerationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectGenerationService.class);
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private DockerFileService dockerFileService;
+
+    @Autowired
+    private DeploymentService deploymentService;
+
+    @Autowired
+    private GithubWorkflowService githubWorkflowService;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private JHipsterDockerService jhipsterDockerService;
+
+    @Autowired
+    private GenerationLogService generationLogService;
+
+    @Autowired
+    private GitPushService gitPushService;
+
+    @Autowired
+    private GitHubClient gitHubClient;
+
+    @Autowired
+    private GenerationPipelineExecutor generationPipelineExecutor;
+
+    @Autowired
+    private WorkspaceReaper workspaceReaper;
+
+    @Autowired
+    private WorkspaceAllocator workspaceAllocator;
+
+    @Autowired
+    @Qualifier("applicationGenerationExecutor")
+    private ThreadPoolTaskExecutor applicationGenerationExecutor;
+
+    @Value("${acmf.generation.per-system-parallelism:3}")
+    private int perSystemParallelism;
+
+    /**
+     * Generates a JHipster monolith, configures its deployment and pushes it to a new
+     * GitHub repository, then saves the project for the given user. A job delivered as
+     * an archive skips the GitHub stages and keeps its workspace to be downloaded.
+     *
+     * @param job     Job the progress is reported to.
+     * @param spec    The application to generate, compiled when the job was submitted and shared by every stage.
+     * @param options Workspace, GitHub and cloud deployment parameters.
+     * @param user    Authenticated user the project is created for.
+     * @return The URL of the created GitHub repository, or {@code null} for an archive.
+     * @throws Exception If any stage of the pipeline fails.
+     */
+    public String generateMonolith(GenerationJob job, GenerationSpec spec, GenerationOptions options, User user) throws Exception {
+        String appBaseName = spec.getBaseName();
+        logger.info("Starting project generation for baseName: {}", appBaseName);
+
+        // Step 1: Create project directory, or resume in the one kept from an earlier run.
+        // Files written while the generator runs go to an overlay, merged before the push,
+        // so they never end up in the generated-project cache.
+        String newProjectPath = openWorkspace(job, options.getProjectPath() + File.separator + appBaseName, 1);
+        String overlayPath = overlayOf(newProjectPath);
+
+        GenerationPipelineExecutor.Pipeline pipeline = generationPipelineExecutor.pipeline(job)
+                // Step 2: Generate JHipster project using Docker
+                .stage(GenerationStage.GENERATE, () -> {
+                    jhipsterDockerService.generateMonolithProjectViaDocker(spec, newProjectPath, generationLogService.output(job.getId()));
+                    workspaceAllocator.account(job.getId(), newProjectPath);
+                })
+                // Step 3: Create Dockerfile based on build tool
+                .stage(GenerationStage.DOCKERFILE, () -> dockerFileService.generateDockerfile(overlayPath, spec.getBuildTool()))
+                // Step 4: Create GitHub workflow for CI/CD
+                .stage(GenerationStage.WORKFLOW, () -> githubWorkflowService.createGithubWorkflow(
+                        appBaseName,
+                        overlayPath,
+                        options.getCloudProvider(),
+                        options.getCloudService(),
+                        options.getAccountId(),
+                        options.getRegion(),
+                        options.getGithubOrganization(),
+                        options.getGithubUsername(),
+                        String.valueOf(spec.getPort())
+                ))
+                // Step 5: Render deployment configurations (cloud provider + service) while the project is generated
+                .stage(GenerationStage.DEPLOYMENT, () -> deploymentService.applicationDeployment(
+                        appBaseName,
+                        overlayPath,
+                        options.getCloudProvider(),
+                        options.getCloudService(),
+                        options.getAccountId(),
+                        options.getRegion(),
+                        options.getGithubOrganization(),
+                        spec
+                ));
+
+        if (job.getDelivery() == GenerationDelivery.ARCHIVE) {
+            // Step 6: Complete the project in its workspace, where it is downloaded from
+            pipeline.stage(GenerationStage.ARCHIVE, () -> mergeOverlay(overlayPath, newProjectPath),
+                            GenerationStage.GENERATE, GenerationStage.DOCKERFILE, GenerationStage.WORKFLOW, GenerationStage.DEPLOYMENT)
+                    .run();
+            logger.info("Monolith generated and kept for download.");
+            return null;
+        }
+
+        pipeline
+                // Step 6: Create GitHub repository while the project is generated
+                .stage(GenerationStage.REPOSITORY, () -> createRepository(job, options, appBaseName))
+                // Step 7: Initialize Git and push project to GitHub
+                .stage(GenerationStage.PUSH, () -> {
+                    mergeOverlay(overlayPath, newProjectPath);
+                    gitPushService.initAndPush(newProjectPath, job.getGithubUrl(), options.getGithubUsername(), options.getGithubToken());
+                }, GenerationStage.REPOSITORY, GenerationStage.GENERATE, GenerationStage.DOCKERFILE, GenerationStage.WORKFLOW, GenerationStage.DEPLOYMENT)
+                // Step 8: Save project details in database
+                .stage(GenerationStage.PERSIST, () -> {
+                    if (!projectRepository.existsByName(appBaseName)) {
+                        Project project = buildProject(spec, user);
+                        project.setGithubUrl(job.getGithubUrl());
+                        projectService.createProject(project, user);
+                    }
+                }, GenerationStage.PUSH)
+                .run();
+
+        // Step 9: Clean up local project directory; it is kept when a stage fails, for a retry
+        closeWorkspace(job);
+        logger.info("Monolith created and pushed to GitHub.");
+        return job.getGithubUrl();
+    }
+
+    /**
+     * Generates multiple JHipster microservice projects into a single root directory (monorepo),
+     * creates Dockerfiles per service, a single GitHub Actions workflow at the repo root,
+     * cloud deployment descriptors (docker-compose for EC2 OR k8s manifests for EKS),
+     * creates a single GitHub repo and pushes everything. A job delivered as an archive
+     * skips the GitHub stages and keeps the root directory to be downloaded.
+     *
+     * @param job     Job the progress is reported to.
+     * @param system  Root directory name and the specs of all applications, compiled when the job was submitted.
+     * @param options Workspace, GitHub and cloud deployment parameters.
+     * @param user    Authenticated user the projects are created for.
+     * @return The URL of the created GitHub repository, or {@code null} for an archive.
+     * @throws Exception If any stage of the pipeline fails.
+     */
+    public String generateMicroservices(GenerationJob job, MicroserviceSpec system, GenerationOptions options, User user) throws Exception {
+        List<GenerationSpec> applications = system.getApplications();
+
+        // 0) Create the root directory for the monorepo, or resume in the one kept from an earlier run
+        String rootDirPath = openWorkspace(job, options.getProjectPath() + File.separator + system.getRootDirectoryName(),
+                applications.size());
+        List<Project> savedProjects = new ArrayList<>();
+        List<GenerationSpec> generatedApps = new ArrayList<>();
+
+        if (job.hasCompleted(GenerationStage.GENERATE)) {
+            // The applications generated earlier are the ones whose directory was kept
+            for (GenerationSpec app : applications) {
+                if (Files.isDirectory(Paths.get(rootDirPath, app.getBaseName()))) {
+                    generatedApps.add(app);
+                    savedProjects.add(buildProject(app, user));
+                }
+            }
+            if (savedProjects.isEmpty()) {
+                throw new IllegalStateException("No generated application was kept in " + rootDirPath);
+            }
+        }
+
+        GenerationPipelineExecutor.Pipeline pipeline = generationPipelineExecutor.pipeline(job)
+                // 1) Generate all microservices under the single root in parallel
+                .stage(GenerationStage.GENERATE, () -> {
+                    savedProjects.addAll(generateApplications(job, applications, rootDirPath, user, generatedApps));
+                    if (savedProjects.isEmpty()) {
+                        if (!job.getApplicationErrors().isEmpty()) {
+                            throw new IllegalStateException("Generation failed for all applications: " + job.getApplicationErrors());
+                        }
+                        throw new IllegalStateException("All requested baseNames already exist.");
+                    }
+                    workspaceAllocator.account(job.getId(), rootDirPath);
+                })
+                // 2) Cloud deployment descriptors (docker-compose for EC2 OR k8s for EKS)
+                .stage(GenerationStage.DEPLOYMENT, () -> deploymentService.microservicesDeployment(
+                        rootDirPath,
+                        generatedApps,
+                        options.getCloudProvider(),
+                        options.getCloudService(),
+                        options.getAccountId(),
+                        options.getRegion(),
+                        options.getGithubOrganization()
+                ), GenerationStage.GENERATE)
+                // 3) Create ONE GitHub Actions workflow at root for ALL generated services
+                .stage(GenerationStage.WORKFLOW, () -> {
+                    List<String> serviceNames = new ArrayList<>();
+                    for (GenerationSpec app : generatedApps) {
+                        serviceNames.add(app.getBaseName());
+                    }
+
+                    // Choose build tool per service at runtime (wrapper detection), so no need to pass build tool list
+                    githubWorkflowService.createGithubWorkflowForMicroservices(
+                            rootDirPath,
+                            serviceNames,
+                            options.getCloudProvider(),
+                            options.getCloudService(),
+                            options.getAccountId(),
+                            options.getRegion(),
+                            options.getGithubOrganization(),
+                            system.getRootDirectoryName()
+                    );
+                }, GenerationStage.GENERATE);
+
+        if (job.getDelivery() == GenerationDelivery.ARCHIVE) {
+            // 4) Complete the monorepo in its root directory, where it is downloaded from
+            pipeline.stage(GenerationStage.ARCHIVE, () -> mergeOverlay(overlayOf(rootDirPath), rootDirPath),
+                            GenerationStage.GENERATE, GenerationStage.DEPLOYMENT, GenerationStage.WORKFLOW)
+                    .run();
+            logger.info("Microservices generated and kept for download.");
+            return null;
+        }
+
+        pipeline
+                // 4) Create GitHub repo for the ROOT directory (single repo) while the services are generated
+                .stage(GenerationStage.REPOSITORY, () -> createRepository(job, options, system.getRootDirectoryName()))
+                // 5) Push monorepo
+                .stage(GenerationStage.PUSH, () -> gitPushService.initAndPush(rootDirPath, job.getGithubUrl(), options.getGithubUsername(), options.getGithubToken()),
+                        GenerationStage.REPOSITORY, GenerationStage.GENERATE, GenerationStage.DEPLOYMENT, GenerationStage.WORKFLOW)
+                // 6) Persist each project with a subdirectory URL
+                .stage(GenerationStage.PERSIST, () -> {
+                    String repoUrl = job.getGithubUrl();
+                    String cleanRepoUrl = repoUrl.endsWith(".git") ? repoUrl.substring(0, repoUrl.length() - 4) : repoUrl;
+                    for (Project project : savedProjects) {
+                        // Projects persisted before an earlier run failed are not created twice
+                        if (projectRepository.existsByName(project.getName())) {
+                            continue;
+                        }
+                        project.setRootDirectoryName(system.getRootDirectoryName());
+                        project.setGithubUrl(cleanRepoUrl + "/tree/main/" + project.getName());
+                        projectService.createProject(project, project.getAdmin());
+                    }
+                }, GenerationStage.PUSH)
+                .run();
+
+        // 7) Cleanup of the local root directory; it is kept when a stage fails, for a retry
+        closeWorkspace(job);
+        logger.info("Microservices generated and pushed to GitHub (single workflow at root).");
+        return job.getGithubUrl();
+    }
+
+    /**
+     * Prepares the workspace of a job. A job that already completed stages keeps the
+     * workspace of its earlier run; if that workspace is gone (e.g. the job moved to a
+     * replica that does not share it) the job starts over. A job starting over gets a
+     * workspace from the {@link WorkspaceAllocator}, in memory when it fits, and the
+     * workspace of a job that did not complete its generation is cleared of any leftovers.
+     *
+     * @param diskPath     Where the workspace goes when it is not placed in memory.
+     * @param applications Number of applications the job generates.
+     * @return The workspace path.
+     */
+    private String openWorkspace(GenerationJob job, String diskPath, int applications) throws IOException {
+        String path = job.getWorkspacePath();
+        boolean kept = path != null && Files.isDirectory(Paths.get(path));
+        if (!job.getCompletedStages().isEmpty() && !kept) {
+            logger.warn("Workspace {} of generation job {} is gone, starting over", path, job.getId());
+            job.resetCheckpoints();
+        }
+        if (job.getCompletedStages().isEmpty()) {
+            if (path != null) {
+                workspaceReaper.reapWorkspace(Paths.get(path));
+            }
+            workspaceReaper.reapWorkspace(Paths.get(diskPath));
+            path = workspaceAllocator.allocate(job.getId(), diskPath, applications);
+        } else {
+            if (!job.hasCompleted(GenerationStage.GENERATE)) {
+                workspaceReaper.reap(Paths.get(path));
+            }
+            logger.info("Resuming generation job {} with completed stages {} in {}", job.getId(), job.getCompletedStages(), path);
+            generationLogService.output(job.getId()).accept("Resuming with completed stages " + job.getCompletedStages() + ".");
+        }
+        Files.createDirectories(Paths.get(path));
+        Files.createDirectories(Paths.get(overlayOf(path)));
+        job.setWorkspacePath(path);
+        return path;
+    }
+
+    /**
+     * Hands the workspace of a job that completed all its stages to the reaper.
+     */
+    private void closeWorkspace(GenerationJob job) {
+        if (job.getWorkspacePath() != null) {
+            workspaceReaper.reapWorkspace(Paths.get(job.getWorkspacePath()));
+            job.setWorkspacePath(null);
+        }
+    }
+
+    private static String overlayOf(String workspacePath) {
+        return workspacePath + ".overlay";
+    }
+
+    /**
+     * Moves the files of the overlay into the workspace, replacing generated files of
+     * the same path, then removes the overlay. Does nothing if it was merged already.
+     */
+    private void mergeOverlay(String overlayPath, String workspacePath) throws IOException {
+        Path overlay = Paths.get(overlayPath);
+        if (!Files.isDirectory(overlay)) {
+            return;
+        }
+        Path workspace = Paths.get(workspacePath);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(overlay)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            Path target = workspace.resolve(overlay.relativize(file));
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        workspaceReaper.reap(overlay);
+    }
+
+    /**
+     * Creates the GitHub repository of a job, unless an earlier run already did; its
+     * clone URL is kept on the job.
+     */
+    private void createRepository(GenerationJob job, GenerationOptions options, String name) throws IOException {
+        if (job.getGithubUrl() == null) {
+            job.setGithubUrl(gitHubClient.createRepository(
+                    new GitHubClient.Credentials(options.getGithubUsername(), options.getGithubToken()),
+                    name, options.getGithubOrganization()).cloneUrl());
+        }
+    }
+
+    /**
+     * Generates the applications of a microservice system concurrently.
+     *
+     * <p>At most {@code acmf.generation.per-system-parallelism} applications of this system
+     * run at once, on the shared application executor which bounds the total across all
+     * jobs. An application that fails is recorded on the job and its directory removed,
+     * the others are still returned.</p>
+     *
+     * @param generatedApps Receives the specs of the applications that were generated.
+     * @return Project metadata of the generated applications, in request order.
+     */
+    private List<Project> generateApplications(GenerationJob job, List<GenerationSpec> applications, String rootDirPath,
+                                               User user, List<GenerationSpec> generatedApps) throws InterruptedException {
+        Semaphore systemPermits = new Semaphore(perSystemParallelism);
+        AtomicInteger completed = new AtomicInteger();
+        List<GenerationSpec> submittedApps = new ArrayList<>();
+        List<Future<Project>> futures = new ArrayList<>();
+
+        for (GenerationSpec app : applications) {
+            final String appName = app.getBaseName();
+
+            // Skip if this project name already exists (same as the monolith flow)
+            if (projectRepository.existsByName(appName)) {
+                logger.warn("Project '" + appName + "' already exists. Skipping.");
+                continue;
+            }
+            submittedApps.add(app);
+        }
+
+        RunningTasks runningApps = new RunningTasks();
+        List<Project> projects = new ArrayList<>();
+        try {
+            for (GenerationSpec app : submittedApps) {
+                systemPermits.acquire();
+                try {
+                    futures.add(applicationGenerationExecutor.submit(() -> {
+                        if (!runningApps.enter()) {
+                            systemPermits.release();
+                            throw new CancellationException("Generation of '" + app.getBaseName() + "' was cancelled");
+                        }
+                        try {
+                            return generateApplication(job, app, rootDirPath, user);
+                        } finally {
+                            runningApps.exit();
+                            systemPermits.release();
+                            int done = completed.incrementAndGet();
+                            job.setProgress(GenerationStage.GENERATE.getProgress()
+                                    + (GenerationStage.DOCKERFILE.getProgress() - GenerationStage.GENERATE.getProgress()) * done / submittedApps.size());
+                        }
+                    }));
+                } catch (TaskRejectedException e) {
+                    systemPermits.release();
+                    throw e;
+                }
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                GenerationSpec app = submittedApps.get(i);
+                try {
+                    projects.add(futures.get(i).get());
+                    generatedApps.add(app);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.error("Generation of '{}' failed: {}", app.getBaseName(), cause.getMessage(), cause);
+                    job.recordApplicationError(app.getBaseName(), cause.getMessage());
+                    workspaceReaper.reap(Paths.get(rootDirPath, app.getBaseName()));
+                }
+            }
+        } catch (InterruptedException e) {
+            // The stage was cancelled: stop the applications being generated before it ends
+            runningApps.cancel();
+            futures.forEach(future -> future.cancel(true));
+            runningApps.awaitStopped();
+            throw e;
+        }
+        return projects;
+    }
+
+    private Project generateApplication(GenerationJob job, GenerationSpec app, String rootDirPath, User user) throws IOException, InterruptedException {
+        final String appName = app.getBaseName();
+        final String appPath = rootDirPath + File.separator + appName;
+
+        // Create service directory
+        Files.createDirectories(Paths.get(appPath));
+
+        // Generate JHipster microservice via Docker
+        // Prefix the output with the application name, applications are generated in parallel
+        Consumer<String> output = generationLogService.output(job.getId());
+        jhipsterDockerService.generateMicroserviceProjectViaDocker(app, appPath, line -> output.accept("[" + appName + "] " + line));
+
+        // Generate a Dockerfile per service (uses the build tool of its spec)
+        dockerFileService.generateDockerfile(appPath, app.getBuildTool());
+
+        // NOTE: Do NOT create per-service workflows here (we create ONE at root for all services)
+
+        // Build metadata to persist later
+        return buildProject(app, user);
+    }
+
+    private Project buildProject(GenerationSpec app, User user) {
+        Project p = new Project();
+        p.setName(app.getBaseName());
+        p.setCategory(app.getApplicationType().getValue());
+        p.setDescription("Generated using JHipster");
+        p.setAdmin(user);
+        p.setTags(new ArrayList<>(app.getTags()));
+        p.setPort(app.getServerPort() != null ? String.valueOf(app.getServerPort()) : null);
+        return p;
+    }
+}
\ No newline at end of file
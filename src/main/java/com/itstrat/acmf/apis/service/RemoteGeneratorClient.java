@@ -0,0 +1,217 @@
+package com.itstrat.acmf.apis.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Generates JHipster applications on a remote generator, such as the JHipster Online
+ * API, instead of running the generator image locally ({@code acmf.generator.mode=remote}).
+ *
+ * <p>The {@code .yo-rc.json} of the application is posted to
+ * {@code acmf.generator.remote.url}, which answers with the generated project as a
+ * ZIP. The ZIP is unzipped while it is received, so it is never written to disk as
+ * a whole. Entries up to {@value #MAX_BUFFERED_ENTRY_BYTES} bytes are read into
+ * memory and written by the {@code unzipExecutor} pool, at most
+ * {@code acmf.generator.remote.max-buffered-mb} of them at once, while reading goes
+ * on; larger entries are written as they are read. Entries whose path would land
+ * outside of the application directory (zip slip) fail the generation.</p>
+ */
+@Service
+public class RemoteGeneratorClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteGeneratorClient.class);
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int MAX_BUFFERED_ENTRY_BYTES = 1024 * 1024;
+
+    private static final int MAX_ERROR_BYTES = 2048;
+
+    private HttpClient httpClient;
+
+    @Autowired
+    @Qualifier("unzipExecutor")
+    private ThreadPoolTaskExecutor unzipExecutor;
+
+    @Value("${acmf.generator.mode:docker}")
+    private String mode;
+
+    @Value("${acmf.generator.remote.url:https://start.jhipster.tech/api/download-application}")
+    private String url;
+
+    @Value("${acmf.generator.remote.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${acmf.generator.remote.timeout-ms:600000}")
+    private long timeoutMs;
+
+    @Value("${acmf.generator.remote.max-buffered-mb:64}")
+    private int maxBufferedMb;
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        if (isEnabled()) {
+            logger.info("JHipster applications are generated remotely by {}", url);
+        }
+    }
+
+    /**
+     * Whether applications are generated remotely rather than by the local generator image.
+     */
+    public boolean isEnabled() {
+        return "remote".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * URL of the remote generator, which identifies its output in the generated-project cache.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Generates the application described by the {@code .yo-rc.json} in the given
+     * directory, unzipping the project into it.
+     *
+     * @param appDir Application directory holding the .yo-rc.json.
+     * @param output Receives progress lines.
+     * @throws IOException If the remote generator fails or sends an entry outside of the directory.
+     */
+    public void generate(Path appDir, Consumer<String> output) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/zip")
+                .POST(HttpRequest.BodyPublishers.ofFile(appDir.resolve(".yo-rc.json")))
+                .build();
+        output.accept("Generating " + appDir.getFileName() + " on the remote generator.");
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                String error = new String(body.readNBytes(MAX_ERROR_BYTES), StandardCharsets.UTF_8);
+                throw new IOException("Remote generator answered HTTP " + response.statusCode() + ": " + error);
+            }
+            int files = unzip(body, appDir);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.info("Remote generator produced {} files for {} in {} ms", files, appDir, millis);
+            output.accept("Received " + files + " files from the remote generator in " + millis + " ms.");
+        }
+    }
+
+    /**
+     * Unzips a stream into the given directory as it is read.
+     *
+     * @return The number of files written.
+     */
+    private int unzip(InputStream in, Path target) throws IOException, InterruptedException {
+        Path root = target.toAbsolutePath().normalize();
+        Semaphore buffered = new Semaphore(Math.max(maxBufferedMb, 1) * 1024 * 1024);
+        List<Future<?>> writes = new ArrayList<>();
+        int files = 0;
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Path path = resolve(root, entry.getName());
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                    continue;
+                }
+                Files.createDirectories(path.getParent());
+                files++;
+                byte[] content = zip.readNBytes(MAX_BUFFERED_ENTRY_BYTES);
+                if (content.length == MAX_BUFFERED_ENTRY_BYTES) {
+                    // Possibly larger: written from this thread as it is read
+                    try (OutputStream out = Files.newOutputStream(path)) {
+                        out.write(content);
+                        zip.transferTo(out);
+                    }
+                    continue;
+                }
+                buffered.acquire(content.length);
+                writes.add(unzipExecutor.submit(() -> {
+                    try {
+                        Files.write(path, content);
+                    } finally {
+                        buffered.release(content.length);
+                    }
+                    return null;
+                }));
+            }
+        } catch (Throwable e) {
+            // Leave no write running, without hiding why the unzip failed
+            try {
+                awaitWrites(writes);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            } catch (InterruptedException suppressed) {
+                Thread.currentThread().interrupt();
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        awaitWrites(writes);
+        return files;
+    }
+
+    /**
+     * Waits for the given writes and rethrows the first failure.
+     */
+    private static void awaitWrites(List<Future<?>> writes) throws IOException, InterruptedException {
+        IOException failure = null;
+        for (Future<?> write : writes) {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Resolves a ZIP entry name in the target directory, rejecting names that escape it.
+     */
+    private static Path resolve(Path root, String name) throws IOException {
+        Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root)) {
+            throw new IOException("Remote generator sent an entry outside of the application directory: " + name);
+        }
+        return path;
+    }
+}
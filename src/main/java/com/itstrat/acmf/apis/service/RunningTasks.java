@@ -0,0 +1,67 @@
+package com.itstrat.acmf.apis.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Threads running the tasks of one piece of work (the stages of a pipeline, the
+ * applications of a system), so the work can be cancelled and waited for as a whole.
+ *
+ * <p>A task calls {@link #enter()} before it starts and {@link #exit()} once it is
+ * done. {@link #cancel()} interrupts the tasks running and makes further ones not
+ * start; {@link #awaitStopped()} then returns once the last running task exited.</p>
+ */
+final class RunningTasks {
+
+    private final Set<Thread> threads = new HashSet<>();
+
+    private boolean cancelled;
+
+    /**
+     * Registers the current thread as running a task.
+     *
+     * @return {@code false} if the work was cancelled, the task must not start.
+     */
+    synchronized boolean enter() {
+        if (cancelled) {
+            return false;
+        }
+        threads.add(Thread.currentThread());
+        return true;
+    }
+
+    /**
+     * Unregisters the current thread, clearing an interrupt meant for its task only.
+     */
+    synchronized void exit() {
+        threads.remove(Thread.currentThread());
+        Thread.interrupted();
+        notifyAll();
+    }
+
+    /**
+     * Interrupts the running tasks; no further task starts.
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Waits until no task runs any more. An interrupt of the waiting thread is kept
+     * for its caller rather than ending the wait.
+     */
+    synchronized void awaitStopped() {
+        boolean interrupted = false;
+        while (!threads.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.itstrat.acmf.apis.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A text template compiled once into literal segments and argument slots, then
+ * rendered any number of times by appending segments and arguments to a buffer.
+ *
+ * <p>Templates use the {@link String#format} placeholders the workflow text blocks
+ * were written with: {@code %s} (next argument), {@code %2$s} (second argument),
+ * {@code %%} and {@code %n}. Unlike {@code String.format}, the template is parsed
+ * once rather than on every call, and rendering allocates a single pre-sized buffer.
+ * Any other conversion is rejected when the template is compiled.</p>
+ *
+ * <p>Each argument is escaped for the context of its slots by the {@link Escaper}
+ * given at compile time. An argument may also be a {@link #list list} of values,
+ * rendered in place with separators and each value escaped like a plain argument,
+ * instead of being joined into an intermediate string.</p>
+ */
+public final class WorkflowTemplate {
+
+    /**
+     * How argument values are written into the template.
+     */
+    public enum Escaper {
+        /**
+         * As they are.
+         */
+        RAW {
+            @Override
+            void append(StringBuilder out, String value) {
+                out.append(value);
+            }
+        },
+        /**
+         * Inside a YAML double-quoted scalar: backslashes and double quotes are escaped,
+         * and so are tabs, line breaks and other control characters, which would
+         * otherwise be folded or end the scalar.
+         */
+        YAML_DOUBLE_QUOTED {
+            @Override
+            void append(StringBuilder out, String value) {
+                // Characters that need no escaping are appended in runs
+                int run = 0;
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    String escaped = switch (c) {
+                        case '"' -> "\\\"";
+                        case '\\' -> "\\\\";
+                        case '\n' -> "\\n";
+                        case '\r' -> "\\r";
+                        case '\t' -> "\\t";
+                        default -> c < 0x20 || c == 0x7F || c == '\u0085' || c == '\u2028' || c == '\u2029'
+                                ? String.format("\\u%04X", (int) c) : null;
+                    };
+                    if (escaped != null) {
+                        out.append(value, run, i).append(escaped);
+                        run = i + 1;
+                    }
+                }
+                out.append(value, run, value.length());
+            }
+        },
+        /**
+         * Bare, in plain YAML scalars and shell commands alike, where no quoting is valid
+         * in every context: only letters, digits, {@code .}, {@code _} and {@code -} are
+         * accepted, and any other character (quotes, spaces, line breaks...) is rejected.
+         */
+        NAME {
+            @Override
+            void append(StringBuilder out, String value) {
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '_' || c == '-')) {
+                        throw new IllegalArgumentException("Invalid character at offset " + i + " of workflow value '"
+                                + YAML_DOUBLE_QUOTED.escape(value) + "': only letters, digits, '.', '_' and '-' are allowed");
+                    }
+                }
+                out.append(value);
+            }
+        };
+
+        /**
+         * Returns the escaped value.
+         */
+        String escape(String value) {
+            StringBuilder out = new StringBuilder(value.length());
+            append(out, value);
+            return out.toString();
+        }
+
+        abstract void append(StringBuilder out, String value);
+    }
+
+    /**
+     * Values rendered in one slot, between a prefix and a suffix and separated by a separator.
+     */
+    public record ListValue(Collection<String> values, String prefix, String separator, String suffix) {
+    }
+
+    private final String[] segments;
+
+    private final int[] slots;
+
+    private final Escaper[] escapers;
+
+    private final int literalLength;
+
+    private WorkflowTemplate(String[] segments, int[] slots, Escaper[] escapers) {
+        this.segments = segments;
+        this.slots = slots;
+        this.escapers = escapers;
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compiles a template whose arguments are written as they are.
+     *
+     * @throws IllegalArgumentException If the template has a placeholder other than {@code %s}, {@code %N$s}, {@code %%} or {@code %n}.
+     */
+    public static WorkflowTemplate compile(String template) {
+        return compile(template, new Escaper[0]);
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param escapers Escaper of each argument, in argument order; arguments beyond them are written as they are.
+     * @throws IllegalArgumentException If the template has a placeholder other than {@code %s}, {@code %N$s}, {@code %%} or {@code %n}.
+     */
+    public static WorkflowTemplate compile(String template, Escaper... escapers) {
+        List<String> segments = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        int nextArgument = 0;
+        int maxArgument = -1;
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i++);
+            if (c != '%') {
+                segment.append(c);
+                continue;
+            }
+            if (i >= template.length()) {
+                throw new IllegalArgumentException("Dangling % at the end of the template");
+            }
+            char next = template.charAt(i);
+            if (next == '%') {
+                segment.append('%');
+                i++;
+                continue;
+            }
+            if (next == 'n') {
+                segment.append(System.lineSeparator());
+                i++;
+                continue;
+            }
+            int argument;
+            if (next == 's') {
+                argument = nextArgument++;
+                i++;
+            } else {
+                int digits = i;
+                while (i < template.length() && Character.isDigit(template.charAt(i))) {
+                    i++;
+                }
+                if (i == digits || i + 1 >= template.length() || template.charAt(i) != '$' || template.charAt(i + 1) != 's') {
+                    throw new IllegalArgumentException("Unsupported placeholder at offset " + (digits - 1) + ": only %s, %N$s, %% and %n are supported");
+                }
+                argument = Integer.parseInt(template.substring(digits, i)) - 1;
+                if (argument < 0) {
+                    throw new IllegalArgumentException("Argument index at offset " + (digits - 1) + " must start at 1");
+                }
+                i += 2;
+            }
+            segments.add(segment.toString());
+            segment.setLength(0);
+            slots.add(argument);
+            maxArgument = Math.max(maxArgument, argument);
+        }
+        segments.add(segment.toString());
+
+        Escaper[] slotEscapers = new Escaper[maxArgument + 1];
+        for (int argument = 0; argument < slotEscapers.length; argument++) {
+            slotEscapers[argument] = argument < escapers.length ? escapers[argument] : Escaper.RAW;
+        }
+        return new WorkflowTemplate(segments.toArray(String[]::new),
+                slots.stream().mapToInt(Integer::intValue).toArray(), slotEscapers);
+    }
+
+    /**
+     * Returns a list argument: the values between the prefix and the suffix, separated by the separator.
+     */
+    public static ListValue list(Collection<String> values, String prefix, String separator, String suffix) {
+        return new ListValue(values, prefix, separator, suffix);
+    }
+
+    /**
+     * Renders the template with the given arguments, each a {@link String} (or any
+     * object, written as by {@link String#valueOf}) or a {@link ListValue}.
+     *
+     * @throws IllegalArgumentException If fewer arguments are given than the template refers to.
+     */
+    public String render(Object... arguments) {
+        if (arguments.length < escapers.length) {
+            throw new IllegalArgumentException("Template needs " + escapers.length + " arguments, got " + Arrays.toString(arguments));
+        }
+        int length = literalLength;
+        for (int slot : slots) {
+            length += length(arguments[slot]);
+        }
+        // Sized for the unescaped output, which escaping seldom exceeds
+        StringBuilder out = new StringBuilder(length);
+        out.append(segments[0]);
+        for (int slot = 0; slot < slots.length; slot++) {
+            append(out, arguments[slots[slot]], escapers[slots[slot]]);
+            out.append(segments[slot + 1]);
+        }
+        return out.toString();
+    }
+
+    private static int length(Object argument) {
+        if (argument instanceof ListValue list) {
+            int length = list.prefix().length() + list.suffix().length()
+                    + Math.max(0, list.values().size() - 1) * list.separator().length();
+            for (String value : list.values()) {
+                length += value.length();
+            }
+            return length;
+        }
+        return argument instanceof String value ? value.length() : 16;
+    }
+
+    private static void append(StringBuilder out, Object argument, Escaper escaper) {
+        if (argument instanceof ListValue list) {
+            boolean first = true;
+            for (String value : list.values()) {
+                out.append(first ? list.prefix() : list.separator());
+                escaper.append(out, value);
+                first = false;
+            }
+            if (!first) {
+                out.append(list.suffix());
+            }
+            return;
+        }
+        escaper.append(out, String.valueOf(argument));
+    }
+}
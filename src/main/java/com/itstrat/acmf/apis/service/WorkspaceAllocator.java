@@ -0,0 +1,184 @@
+package com.itstrat.acmf.apis.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decides where the workspace of a generation job lives: under the memory-backed
+ * root ({@code acmf.workspace.memory.root}, e.g. a tmpfs) when it fits the memory
+ * budget, otherwise at the disk path the job asked for.
+ *
+ * <p>JHipster trees are tens of thousands of small files, written by the generator
+ * and read back by git; on a tmpfs none of that hits the disk. Memory workspaces
+ * are laid out as {@code <memory root>/<job id>/<name>}. Each job holds a
+ * reservation of {@code acmf.workspace.memory.estimate-mb} per application until
+ * its project is generated, then of the bytes its workspace actually uses, and a
+ * job whose reservation would exceed {@code acmf.workspace.memory.budget-mb} is
+ * placed on disk. Reservations are checked and changed under one lock, and a job
+ * also goes to disk while the memory root has less free space than its estimate,
+ * so workspaces that outgrew their estimate stop further jobs from coming in.
+ * Reservations are rebuilt from the memory root at startup, and their total is
+ * reported by the {@code acmf.workspace.memory.bytes} gauge.</p>
+ */
+@Service
+public class WorkspaceAllocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceAllocator.class);
+
+    private static final long MB = 1024 * 1024;
+
+    // Guarded by this
+    private final Map<String, Long> reservations = new HashMap<>();
+
+    @Autowired
+    private HostPathResolver hostPathResolver;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${acmf.workspace.memory.root:}")
+    private String memoryRoot;
+
+    @Value("${acmf.workspace.memory.budget-mb:4096}")
+    private long budgetMb;
+
+    @Value("${acmf.workspace.memory.estimate-mb:400}")
+    private long estimateMb;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("acmf.workspace.memory.bytes", this, WorkspaceAllocator::reservedBytes);
+        if (!isEnabled()) {
+            return;
+        }
+        Path root = memoryRoot().orElseThrow();
+        try {
+            Files.createDirectories(root);
+            try (DirectoryStream<Path> jobs = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path job : jobs) {
+                    if (!job.getFileName().toString().startsWith(".")) {
+                        long bytes = WorkspaceReaper.sizeOf(job);
+                        synchronized (this) {
+                            reservations.put(job.getFileName().toString(), bytes);
+                        }
+                    }
+                }
+            }
+            logger.info("Memory workspaces under {} with a budget of {} MB, {} MB in use", root, budgetMb, reservedBytes() / MB);
+        } catch (IOException e) {
+            logger.warn("Memory workspace root {} is not usable, workspaces stay on disk: {}", root, e.getMessage());
+            memoryRoot = "";
+        }
+    }
+
+    /**
+     * Whether workspaces may be placed in memory.
+     */
+    public boolean isEnabled() {
+        return memoryRoot != null && !memoryRoot.isEmpty() && budgetMb > 0 && hostPathResolver.canMountMemoryRoot();
+    }
+
+    /**
+     * Returns the memory root, or empty if memory workspaces are disabled.
+     */
+    public Optional<Path> memoryRoot() {
+        return isEnabled() ? Optional.of(Paths.get(memoryRoot).toAbsolutePath().normalize()) : Optional.empty();
+    }
+
+    /**
+     * Whether the given path lies under the memory root.
+     */
+    public boolean isInMemory(Path path) {
+        return memoryRoot().map(root -> path.toAbsolutePath().normalize().startsWith(root)).orElse(false);
+    }
+
+    /**
+     * Chooses the workspace of a job and reserves memory for it if it goes in memory.
+     *
+     * @param diskPath     Where the workspace goes when it does not fit in memory.
+     * @param applications Number of applications the job generates.
+     * @return The workspace path.
+     */
+    public synchronized String allocate(String jobId, String diskPath, int applications) {
+        reservations.remove(jobId);
+        if (!isEnabled()) {
+            return diskPath;
+        }
+        Path root = memoryRoot().orElseThrow();
+        long estimate = Math.max(applications, 1) * estimateMb * MB;
+        if (total(reservations) + estimate > budgetMb * MB) {
+            logger.info("Memory workspace budget of {} MB exhausted, generation job {} works on disk", budgetMb, jobId);
+            return diskPath;
+        }
+        if (usableBytes(root) < estimate) {
+            logger.info("Memory root {} has less than {} MB free, generation job {} works on disk", root, estimate / MB, jobId);
+            return diskPath;
+        }
+        reservations.put(jobId, estimate);
+        return root.resolve(jobId).resolve(new File(diskPath).getName()).toString();
+    }
+
+    /**
+     * Replaces the reservation of a job by the bytes its memory workspace actually uses,
+     * even over the budget, so that allocations are refused until enough is released.
+     */
+    public void account(String jobId, String workspacePath) throws IOException {
+        Path workspace = Paths.get(workspacePath);
+        if (!isInMemory(workspace)) {
+            return;
+        }
+        long bytes = WorkspaceReaper.sizeOf(workspace.getParent());
+        long total;
+        synchronized (this) {
+            reservations.put(jobId, bytes);
+            total = total(reservations);
+        }
+        logger.info("Memory workspace of generation job {} uses {} MB", jobId, bytes / MB);
+        if (total > budgetMb * MB) {
+            // The workspace cannot move anymore, but no job goes to memory until enough is released
+            logger.warn("Memory workspaces use {} MB, over the budget of {} MB; new jobs work on disk", total / MB, budgetMb);
+        }
+    }
+
+    /**
+     * Frees the reservation of a job whose memory workspace is deleted.
+     */
+    public synchronized void release(String jobId) {
+        reservations.remove(jobId);
+    }
+
+    private synchronized long reservedBytes() {
+        return total(reservations);
+    }
+
+    /**
+     * Free space of the file system holding the memory root, or none if it cannot be read.
+     */
+    private static long usableBytes(Path root) {
+        try {
+            return Files.getFileStore(root).getUsableSpace();
+        } catch (IOException e) {
+            logger.warn("Could not read the free space of memory root {}: {}", root, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static long total(Map<String, Long> reservations) {
+        return reservations.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
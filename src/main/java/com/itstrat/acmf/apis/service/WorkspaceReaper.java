@@ -0,0 +1,362 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes generation workspaces in the background and keeps the workspace root
+ * within its disk quota.
+ *
+ * <p>{@link #reap(Path)} moves a directory to a {@code .reaping-} entry of the
+ * workspace root, which frees its path at once and takes it out of any workspace
+ * about to be pushed, and deletes it on the {@code workspaceReaperExecutor},
+ * one task per top-level subtree so large trees are deleted in parallel. Files that
+ * cannot be deleted (e.g. created as root by a generator container) are logged and
+ * left to the next sweep. Workspaces in memory (see {@link WorkspaceAllocator}) are
+ * moved aside within the memory root, and their reservation is released.</p>
+ *
+ * <p>A sweep runs at startup and every {@code acmf.workspace.reaper.sweep-interval-ms}
+ * over {@code acmf.generation.workspace-root} and the memory root. It reaps leftovers of interrupted
+ * deletions and directories no generation job refers to that are older than
+ * {@code acmf.workspace.reaper.min-age-minutes}, e.g. after the JVM died
+ * mid-generation. While the disk root exceeds {@code acmf.workspace.quota-mb}, the
+ * disk workspaces kept for retrying failed jobs or for downloading archives are
+ * evicted, oldest first, and no new job is claimed (see {@link #hasCapacity()}).</p>
+ */
+@Service
+public class WorkspaceReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceReaper.class);
+
+    private static final String REAPING_PREFIX = ".reaping-";
+
+    private static final String OVERLAY_SUFFIX = ".overlay";
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final AtomicLong workspaceBytes = new AtomicLong();
+
+    private final Set<Path> deleting = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean overQuota;
+
+    @Autowired
+    @Qualifier("workspaceReaperExecutor")
+    private ThreadPoolTaskExecutor workspaceReaperExecutor;
+
+    @Autowired
+    private GenerationJobService generationJobService;
+
+    @Autowired
+    private WorkspaceAllocator workspaceAllocator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${acmf.generation.workspace-root:generated-projects}")
+    private String workspaceRoot;
+
+    @Value("${acmf.workspace.reaper.min-age-minutes:60}")
+    private long minAgeMinutes;
+
+    @Value("${acmf.workspace.quota-mb:20480}")
+    private long quotaMb;
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("acmf.workspace.bytes", workspaceBytes);
+    }
+
+    /**
+     * Deletes a directory in the background. Its path is free for reuse once this returns.
+     */
+    public void reap(Path directory) {
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Path root = workspaceAllocator.isInMemory(directory) ? workspaceAllocator.memoryRoot().orElseThrow() : root();
+        Path target = root.resolve(REAPING_PREFIX + UUID.randomUUID() + "-" + directory.getFileName());
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(directory, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The path must be free when we return, so delete in place
+            logger.warn("Could not move {} aside ({}), deleting it in place", directory, e.getMessage());
+            deleteTree(directory);
+            return;
+        }
+        deleteInBackground(target);
+    }
+
+    /**
+     * Deletes the workspace of a job in the background, with its overlay, and releases
+     * its memory reservation if it lives in memory.
+     */
+    public void reapWorkspace(Path workspace) {
+        if (workspaceAllocator.isInMemory(workspace)) {
+            // <memory root>/<job id>/<name>: the job directory holds the overlay too
+            Path jobDirectory = workspace.toAbsolutePath().normalize().getParent();
+            reap(jobDirectory);
+            workspaceAllocator.release(jobDirectory.getFileName().toString());
+            return;
+        }
+        reap(workspace);
+        reap(Paths.get(workspace + OVERLAY_SUFFIX));
+    }
+
+    /**
+     * Whether the workspace root is within its quota, as of the last sweep.
+     */
+    public boolean hasCapacity() {
+        return !overQuota;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        scheduleSweep();
+    }
+
+    /**
+     * Starts a sweep of the workspace root on the reaper executor, unless one is running.
+     * The scheduler thread is shared with lease renewals, so it does not walk trees itself.
+     */
+    @Scheduled(initialDelayString = "${acmf.workspace.reaper.sweep-interval-ms:300000}",
+            fixedDelayString = "${acmf.workspace.reaper.sweep-interval-ms:300000}")
+    public void scheduleSweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            workspaceReaperExecutor.execute(() -> {
+                try {
+                    sweep();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Workspace sweep failed: {}", e.getMessage(), e);
+                } finally {
+                    sweeping.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            sweeping.set(false);
+            logger.warn("Workspace sweep rejected: {}", e.getMessage());
+        }
+    }
+
+    private void sweep() throws IOException {
+        Path root = root();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        // 1. Reap what no job refers to, once it is old enough not to belong to a job just starting
+        Set<Path> referenced = generationJobService.findWorkspacePaths();
+        Instant cutoff = Instant.now().minus(minAgeMinutes, ChronoUnit.MINUTES);
+        int reaped = sweepStale(root, referenced, cutoff);
+        Optional<Path> memoryRoot = workspaceAllocator.memoryRoot();
+        if (memoryRoot.isPresent() && Files.isDirectory(memoryRoot.get())) {
+            reaped += sweepStale(memoryRoot.get(), referenced, cutoff);
+        }
+
+        // 2. Enforce the quota, evicting the disk workspaces kept for failed jobs and undownloaded archives
+        long bytes = sizeOf(root);
+        long quotaBytes = quotaMb * 1024 * 1024;
+        if (quotaMb > 0 && bytes > quotaBytes) {
+            for (GenerationJob job : generationJobService.findEvictableWorkspaces()) {
+                Path workspace = Paths.get(job.getWorkspacePath()).toAbsolutePath().normalize();
+                if (workspaceAllocator.isInMemory(workspace) || !generationJobService.forgetWorkspace(job.getId())) {
+                    // Not on disk, or retried meanwhile
+                    continue;
+                }
+                long freed = sizeOf(workspace) + sizeOf(Paths.get(workspace + OVERLAY_SUFFIX));
+                logger.info("Workspace root exceeds its quota, evicting workspace {} of {} job {}", workspace, job.getStatus(), job.getId());
+                reapWorkspace(workspace);
+                reaped++;
+                bytes -= freed;
+                if (bytes <= quotaBytes) {
+                    break;
+                }
+            }
+        }
+        workspaceBytes.set(bytes);
+        boolean wasOverQuota = overQuota;
+        overQuota = quotaMb > 0 && bytes > quotaBytes;
+        if (overQuota != wasOverQuota) {
+            if (overQuota) {
+                logger.warn("Workspace root uses {} MB, above its quota of {} MB; no new generation is claimed", bytes / (1024 * 1024), quotaMb);
+            } else {
+                logger.info("Workspace root is back within its quota of {} MB", quotaMb);
+            }
+        }
+        if (reaped > 0) {
+            logger.info("Workspace sweep reaped {} directories", reaped);
+        }
+    }
+
+    /**
+     * Reaps the entries of a root no job refers to and leftovers of interrupted deletions.
+     *
+     * @return The number of entries reaped.
+     */
+    private int sweepStale(Path root, Set<Path> referenced, Instant cutoff) throws IOException {
+        int reaped = 0;
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (name.startsWith(REAPING_PREFIX)) {
+                    // Left over by a deletion that was interrupted or failed
+                    if (!deleting.contains(child)) {
+                        deleteInBackground(child);
+                        reaped++;
+                    }
+                    continue;
+                }
+                Path workspace = name.endsWith(OVERLAY_SUFFIX)
+                        ? child.resolveSibling(name.substring(0, name.length() - OVERLAY_SUFFIX.length()))
+                        : child;
+                // Memory workspaces are nested in a directory per job, hence the prefix match
+                boolean inUse = referenced.stream().anyMatch(path -> path.startsWith(workspace));
+                if (!name.startsWith(".") && !inUse
+                        && Files.getLastModifiedTime(child, LinkOption.NOFOLLOW_LINKS).toInstant().isBefore(cutoff)) {
+                    logger.info("Reaping stale workspace {}", child);
+                    reap(child);
+                    if (workspaceAllocator.isInMemory(child)) {
+                        workspaceAllocator.release(name);
+                    }
+                    reaped++;
+                }
+            }
+        }
+        return reaped;
+    }
+
+    /**
+     * Deletes a tree on the reaper executor: its top-level subtrees in parallel, then the tree itself.
+     */
+    private void deleteInBackground(Path tree) {
+        if (!deleting.add(tree)) {
+            return;
+        }
+        List<CompletableFuture<Void>> subtrees = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(tree)) {
+            for (Path child : children) {
+                subtrees.add(CompletableFuture.runAsync(() -> deleteTree(child), workspaceReaperExecutor));
+            }
+        } catch (NoSuchFileException e) {
+            deleting.remove(tree);
+            return;
+        } catch (IOException e) {
+            // Not a directory, or unreadable: delete it as a whole
+            subtrees.clear();
+        } catch (TaskRejectedException e) {
+            logger.warn("Could not schedule the deletion of {}: {}", tree, e.getMessage());
+        }
+        CompletableFuture.allOf(subtrees.toArray(CompletableFuture[]::new))
+                .whenCompleteAsync((ignored, failure) -> {
+                    deleteTree(tree);
+                    deleting.remove(tree);
+                }, workspaceReaperExecutor);
+    }
+
+    private Path root() {
+        return Paths.get(workspaceRoot).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Deletes a tree depth-first without following symbolic links. Files that cannot be
+     * deleted are skipped, so as much as possible is freed.
+     */
+    private static void deleteTree(Path tree) {
+        AtomicLong failures = new AtomicLong();
+        try {
+            Files.walkFileTree(tree, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (!(e instanceof NoSuchFileException)) {
+                        failures.incrementAndGet();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void delete(Path path) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+        if (failures.get() > 0) {
+            logger.warn("Could not delete {} entries of {}, the next sweep retries", failures.get(), tree);
+        }
+    }
+
+    static long sizeOf(Path tree) throws IOException {
+        if (!Files.exists(tree, LinkOption.NOFOLLOW_LINKS)) {
+            return 0;
+        }
+        AtomicLong bytes = new AtomicLong();
+        Files.walkFileTree(tree, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                bytes.addAndGet(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return bytes.get();
+    }
+}
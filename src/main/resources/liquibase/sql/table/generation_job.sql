@@ -0,0 +1,31 @@
+CREATE TABLE acmf.generation_job (
+  id                VARCHAR(36) PRIMARY KEY,
+  type              VARCHAR(20) NOT NULL,
+  name              VARCHAR(255) NOT NULL,
+  owner_id          BIGINT NOT NULL,
+  request           TEXT NOT NULL,
+  options           TEXT NOT NULL,
+  status            VARCHAR(20) NOT NULL,
+  stage             VARCHAR(20) NOT NULL,
+  progress          INTEGER NOT NULL DEFAULT 0,
+  message           TEXT,
+  github_url        VARCHAR(255),
+  error             TEXT,
+  completed_stages  VARCHAR(255),
+  workspace_path    VARCHAR(1024),
+  attempts          INTEGER NOT NULL DEFAULT 0,
+  lease_owner       VARCHAR(255),
+  lease_expires_at  TIMESTAMP,
+  created_at        TIMESTAMP NOT NULL,
+  started_at        TIMESTAMP,
+  finished_at       TIMESTAMP
+);
+
+CREATE INDEX generation_job_status_created_at_idx ON acmf.generation_job (status, created_at);
+
+CREATE TABLE acmf.generation_job_application_error (
+  job_id       VARCHAR(36) NOT NULL REFERENCES acmf.generation_job (id) ON DELETE CASCADE,
+  application  VARCHAR(255) NOT NULL,
+  error        TEXT,
+  PRIMARY KEY (job_id, application)
+);
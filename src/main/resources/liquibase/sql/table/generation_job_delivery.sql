@@ -0,0 +1 @@
+ALTER TABLE acmf.generation_job ADD COLUMN delivery VARCHAR(16) NOT NULL DEFAULT 'GITHUB';
@@ -0,0 +1,53 @@
+package com.itstrat.acmf.apis.config;
+
+import com.itstrat.acmf.apis.service.DockerReadinessService;
+import com.itstrat.acmf.apis.service.RemoteGeneratorClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DockerHealthIndicatorTest {
+
+    private final DockerReadinessService dockerReadinessService = mock(DockerReadinessService.class);
+
+    private final RemoteGeneratorClient remoteGeneratorClient = mock(RemoteGeneratorClient.class);
+
+    private DockerHealthIndicator dockerHealthIndicator;
+
+    @BeforeEach
+    void setUp() {
+        dockerHealthIndicator = new DockerHealthIndicator();
+        ReflectionTestUtils.setField(dockerHealthIndicator, "dockerReadinessService", dockerReadinessService);
+        ReflectionTestUtils.setField(dockerHealthIndicator, "remoteGeneratorClient", remoteGeneratorClient);
+        ReflectionTestUtils.setField(dockerHealthIndicator, "generatorImage", "jhipster/jhipster:v8.11.0");
+    }
+
+    @Test
+    void localGeneratorNeedsTheDaemon() {
+        assertThat(status(false, false)).isEqualTo(Status.DOWN);
+        assertThat(status(true, false)).isEqualTo(Status.UNKNOWN);
+        assertThat(status(true, true)).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void remoteGeneratorDoesNotNeedTheDaemon() {
+        when(remoteGeneratorClient.isEnabled()).thenReturn(true);
+
+        assertThat(status(false, false)).isEqualTo(Status.UNKNOWN);
+        assertThat(status(true, false)).isEqualTo(Status.UP);
+        assertThat(dockerHealthIndicator.health().getDetails()).containsEntry("generator", "remote");
+    }
+
+    private Status status(boolean daemon, boolean imagePresent) {
+        when(dockerReadinessService.state()).thenReturn(new DockerReadinessService.DockerState(true, daemon, imagePresent,
+                Instant.now(), daemon ? null : "Cannot connect to the Docker daemon"));
+        return dockerHealthIndicator.health().getStatus();
+    }
+}
@@ -0,0 +1,54 @@
+package com.itstrat.acmf.apis.entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenerationSpecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void storedSpecReadsBackAsItWasCompiled() throws Exception {
+        JdlRequest request = request("gateway", "gateway");
+        request.setServerPort("8081");
+        request.setOtherLanguages(List.of("fr", "de"));
+        request.setWebsocket("spring-websocket");
+        GenerationSpec spec = GenerationSpec.compile(request);
+
+        GenerationSpec stored = objectMapper.readValue(objectMapper.writeValueAsString(spec), GenerationSpec.class);
+
+        assertThat(stored).usingRecursiveComparison().isEqualTo(spec);
+        // Normalized when compiled, not when read back
+        assertThat(stored.getApplicationType()).isEqualTo(GenerationSpec.ApplicationType.GATEWAY);
+        assertThat(stored.isReactive()).isTrue();
+        assertThat(stored.getWebsocket()).isNull();
+        assertThat(stored.getPort()).isEqualTo(8081);
+    }
+
+    @Test
+    void storedSystemKeepsItsApplications() throws Exception {
+        MicroserviceJdlRequest request = new MicroserviceJdlRequest();
+        request.setRootDirectoryName("store");
+        request.setApplications(List.of(request("gateway", "gateway"), request("orders", "microservice")));
+        MicroserviceSpec spec = MicroserviceSpec.compile(request);
+
+        MicroserviceSpec stored = objectMapper.readValue(objectMapper.writeValueAsString(spec), MicroserviceSpec.class);
+
+        assertThat(stored.getRootDirectoryName()).isEqualTo("store");
+        assertThat(stored.getApplications()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(spec.getApplications());
+    }
+
+    private static JdlRequest request(String baseName, String applicationType) {
+        JdlRequest request = new JdlRequest();
+        request.setBaseName(baseName);
+        request.setApplicationType(applicationType);
+        request.setBuildTool("gradle");
+        request.setDatabaseType("sql");
+        return request;
+    }
+}
@@ -0,0 +1,119 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.exception.CommandTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandRunnerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CommandRunner commandRunner;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("acmf.commands.docker.max-concurrent", "1")
+                .withProperty("acmf.commands.docker.timeout-seconds", "1")
+                .withProperty("acmf.commands.git.max-concurrent", "4");
+        commandRunner = new CommandRunner();
+        ReflectionTestUtils.setField(commandRunner, "environment", environment);
+        ReflectionTestUtils.setField(commandRunner, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(commandRunner, "maxConcurrent", 2);
+        commandRunner.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        commandRunner.stop();
+    }
+
+    @Test
+    void returnsTheExitCodeAndTheMergedOutput() throws Exception {
+        List<String> output = new CopyOnWriteArrayList<>();
+
+        int exitCode = commandRunner.run(CommandRunner.Type.GIT, List.of("sh", "-c", "echo out; echo err >&2; exit 3"), null, output::add);
+
+        assertThat(exitCode).isEqualTo(3);
+        assertThat(output).containsExactlyInAnyOrder("out", "err");
+        assertThat(meterRegistry.get("acmf.command").tags("type", "git", "outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void killsACommandAndItsChildrenOnTimeout() throws Exception {
+        List<String> output = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> commandRunner.run(CommandRunner.Type.DOCKER,
+                List.of("sh", "-c", "sleep 60 & echo $!; wait"), null, output::add))
+                .isInstanceOf(CommandTimeoutException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(15);
+        assertThat(output).hasSize(1);
+        long child = Long.parseLong(output.get(0));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (isAlive(child) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(isAlive(child)).isFalse();
+        assertThat(meterRegistry.get("acmf.command").tags("type", "docker", "outcome", "timeout").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void boundsConcurrentCommandsPerTypeAndOverall() throws Exception {
+        AtomicInteger docker = new AtomicInteger();
+        AtomicInteger all = new AtomicInteger();
+        AtomicInteger maxDocker = new AtomicInteger();
+        AtomicInteger maxAll = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            List<Callable<Object>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                CommandRunner.Type type = i % 2 == 0 ? CommandRunner.Type.DOCKER : CommandRunner.Type.GIT;
+                calls.add(() -> commandRunner.limited(type, () -> {
+                    maxAll.accumulateAndGet(all.incrementAndGet(), Math::max);
+                    if (type == CommandRunner.Type.DOCKER) {
+                        maxDocker.accumulateAndGet(docker.incrementAndGet(), Math::max);
+                    }
+                    Thread.sleep(50);
+                    if (type == CommandRunner.Type.DOCKER) {
+                        docker.decrementAndGet();
+                    }
+                    all.decrementAndGet();
+                    return 0;
+                }));
+            }
+            for (Future<Object> result : callers.invokeAll(calls)) {
+                assertThat(result.get()).isEqualTo(0);
+            }
+        } finally {
+            callers.shutdown();
+        }
+
+        assertThat(maxDocker).hasValue(1);
+        assertThat(maxAll).hasValue(2);
+    }
+
+    private static boolean isAlive(long pid) {
+        Optional<ProcessHandle> process = ProcessHandle.of(pid);
+        return process.isPresent() && process.get().isAlive();
+    }
+}
@@ -0,0 +1,44 @@
+package com.itstrat.acmf.apis.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CredentialCipherTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @Test
+    void tokenDecryptsOnAnyInstanceSharingTheKey() throws Exception {
+        String encrypted = cipher(KEY).encrypt("job-1", "ghp_secret");
+
+        assertThat(encrypted).doesNotContain("ghp_secret");
+        assertThat(cipher(KEY).decrypt("job-1", encrypted)).isEqualTo("ghp_secret");
+        assertThat(cipher(KEY).encrypt("job-1", "ghp_secret")).isNotEqualTo(encrypted);
+        assertThat(cipher(KEY).encrypt("job-1", null)).isNull();
+    }
+
+    @Test
+    void tokenOnlyDecryptsForItsJobAndKey() throws Exception {
+        CredentialCipher cipher = cipher(KEY);
+        String encrypted = cipher.encrypt("job-1", "ghp_secret");
+
+        assertThatThrownBy(() -> cipher.decrypt("job-2", encrypted)).isInstanceOf(IllegalStateException.class);
+        // Without a configured key, each instance has its own
+        assertThatThrownBy(() -> cipher("").decrypt("job-1", encrypted))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("retry the job");
+        assertThatThrownBy(() -> cipher.decrypt("job-1", "ghp_secret")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static CredentialCipher cipher(String key) throws Exception {
+        CredentialCipher cipher = new CredentialCipher();
+        ReflectionTestUtils.setField(cipher, "configuredKey", key);
+        cipher.init();
+        return cipher;
+    }
+}
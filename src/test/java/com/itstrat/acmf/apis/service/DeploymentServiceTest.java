@@ -0,0 +1,205 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.entity.JdlRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Renders deployment files into a temporary directory and reads them back as YAML.
+ */
+class DeploymentServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DeploymentService deploymentService;
+
+    @BeforeEach
+    void setUp() {
+        deploymentService = new DeploymentService();
+        ReflectionTestUtils.setField(deploymentService, "databaseStorage", "2Gi");
+    }
+
+    @Test
+    void composeOfAnApplicationWithoutDatabaseOrCache() throws IOException {
+        deploymentService.createDockerCompose(tempDir.toString(), spec("shop", "no", "no", null));
+
+        Map<String, Object> compose = yaml(tempDir.resolve("docker-compose.yml"));
+        assertThat(compose).containsEntry("name", "shop").doesNotContainKey("volumes");
+        Map<String, Object> services = map(compose, "services");
+        assertThat(services).containsOnlyKeys("shop");
+        Map<String, Object> shop = map(services, "shop");
+        assertThat(shop).containsEntry("image", "public.ecr.aws/c4d3l3m6/shop:latest")
+                .containsEntry("ports", List.of("8080:8080"))
+                .containsEntry("environment", List.of("SPRING_PROFILES_ACTIVE=prod"))
+                .doesNotContainKey("depends_on");
+    }
+
+    @Test
+    void composeOfAnApplicationWithPostgresqlAndRedis() throws IOException {
+        deploymentService.createDockerCompose(tempDir.toString(), spec("shop", "postgresql", "redis", "8081"));
+
+        Map<String, Object> compose = yaml(tempDir.resolve("docker-compose.yml"));
+        Map<String, Object> services = map(compose, "services");
+        assertThat(services).containsOnlyKeys("shop", "shop-postgresql", "shop-redis");
+        Map<String, Object> shop = map(services, "shop");
+        assertThat(shop).containsEntry("ports", List.of("8081:8081"))
+                .containsEntry("depends_on", List.of("shop-postgresql", "shop-redis"));
+        assertThat(list(shop, "environment")).contains(
+                "SPRING_DATASOURCE_URL=jdbc:postgresql://shop-postgresql:5432/shop",
+                "SPRING_DATASOURCE_USERNAME=shop",
+                "JHIPSTER_CACHE_REDIS_SERVER=redis://shop-redis:6379");
+        Map<String, Object> postgresql = map(services, "shop-postgresql");
+        assertThat(postgresql).containsEntry("image", "postgres:17")
+                .containsEntry("volumes", List.of("shop-postgresql-data:/var/lib/postgresql/data"));
+        assertThat(list(postgresql, "environment")).contains("POSTGRES_USER=shop", "POSTGRES_DB=shop");
+        assertThat(map(services, "shop-redis")).containsEntry("image", "redis:7.4");
+        assertThat(map(compose, "volumes")).containsOnlyKeys("shop-postgresql-data");
+    }
+
+    @Test
+    void composeOfAnApplicationWithMongodbAndMemcached() throws IOException {
+        deploymentService.createDockerCompose(tempDir.toString(), spec("shop", "mongodb", "memcached", null));
+
+        Map<String, Object> services = map(yaml(tempDir.resolve("docker-compose.yml")), "services");
+        assertThat(services).containsOnlyKeys("shop", "shop-mongodb", "shop-memcached");
+        assertThat(list(map(services, "shop"), "environment")).contains(
+                "SPRING_DATA_MONGODB_URI=mongodb://shop-mongodb:27017/shop",
+                "JHIPSTER_CACHE_MEMCACHED_SERVERS=shop-memcached:11211");
+        // The mongo image needs no environment
+        assertThat(map(services, "shop-mongodb")).containsEntry("image", "mongo:8.0").doesNotContainKey("environment");
+        assertThat(map(services, "shop-memcached")).containsEntry("image", "memcached:1.6");
+    }
+
+    @Test
+    void composeRunsNoServiceForAnEmbeddedCache() throws IOException {
+        deploymentService.createDockerCompose(tempDir.toString(), spec("shop", "mysql", "ehcache", null));
+
+        Map<String, Object> services = map(yaml(tempDir.resolve("docker-compose.yml")), "services");
+        assertThat(services).containsOnlyKeys("shop", "shop-mysql");
+        assertThat(map(services, "shop")).containsEntry("depends_on", List.of("shop-mysql"));
+        assertThat(list(map(services, "shop-mysql"), "environment")).contains("MYSQL_DATABASE=shop");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void kubernetesManifestsOfAnApplicationWithPostgresql() throws IOException {
+        deploymentService.createKubernetesDirectory(tempDir.toString(), spec("shop", "postgresql", "no", "8081"),
+                "123456789012", "eu-west-1");
+
+        Path manifests = tempDir.resolve("kubernetes/shop-k8s");
+        assertThat(manifests).isDirectoryContaining("glob:**/shop-postgresql.yml");
+
+        Map<String, Object> deployment = yaml(manifests.resolve("shop-deployment.yml"));
+        assertThat(deployment).containsEntry("kind", "Deployment");
+        Map<String, Object> container = container(deployment);
+        assertThat(container).containsEntry("name", "shop")
+                .containsEntry("image", "123456789012.dkr.ecr.eu-west-1.amazonaws.com/shop:latest")
+                .containsEntry("ports", List.of(Map.of("containerPort", 8081)))
+                .containsEntry("envFrom", List.of(Map.of("configMapRef", Map.of("name", "shop-config"))));
+        assertThat(map(map(container, "readinessProbe"), "httpGet")).containsEntry("port", 8081);
+
+        Map<String, Object> service = yaml(manifests.resolve("shop-service.yml"));
+        assertThat(map(service, "spec")).containsEntry("type", "LoadBalancer")
+                .containsEntry("ports", List.of(Map.of("protocol", "TCP", "port", 80, "targetPort", 8081)));
+
+        Map<String, Object> configMap = yaml(manifests.resolve("shop-configmap.yml"));
+        assertThat(map(configMap, "data")).containsEntry("SPRING_PROFILES_ACTIVE", "prod")
+                .containsEntry("SPRING_DATASOURCE_URL", "jdbc:postgresql://shop-postgresql:5432/shop");
+
+        List<Map<String, Object>> database = yamlDocuments(manifests.resolve("shop-postgresql.yml"));
+        assertThat(database).extracting(document -> document.get("kind")).containsExactly("StatefulSet", "Service");
+        Map<String, Object> statefulSet = database.get(0);
+        assertThat(container(statefulSet)).containsEntry("image", "postgres:17")
+                .containsEntry("volumeMounts", List.of(Map.of("name", "data", "mountPath", "/var/lib/postgresql/data", "subPath", "postgresql")));
+        Map<String, Object> claim = (Map<String, Object>) list(map(statefulSet, "spec"), "volumeClaimTemplates").get(0);
+        assertThat(map(map(map(claim, "spec"), "resources"), "requests")).containsEntry("storage", "2Gi");
+        assertThat(map(database.get(1), "spec")).containsEntry("clusterIP", "None");
+
+        assertThat(Files.readString(tempDir.resolve("kubernetes/kubectl-apply.sh"))).contains("kubectl apply -f shop-k8s/");
+    }
+
+    @Test
+    void kubernetesManifestsLeaveOutADatabaseTheClusterDoesNotRun() throws IOException {
+        deploymentService.createKubernetesDirectory(tempDir.toString(), spec("shop", "cassandra", "no", null),
+                "123456789012", "eu-west-1");
+
+        Path manifests = tempDir.resolve("kubernetes/shop-k8s");
+        try (var files = Files.list(manifests)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .containsExactlyInAnyOrder("shop-deployment.yml", "shop-service.yml", "shop-configmap.yml");
+        }
+        assertThat(map(yaml(manifests.resolve("shop-configmap.yml")), "data")).containsOnlyKeys("SPRING_PROFILES_ACTIVE");
+        assertThat(container(yaml(manifests.resolve("shop-deployment.yml")))).containsEntry("ports", List.of(Map.of("containerPort", 8080)));
+    }
+
+    @Test
+    void microserviceFilesAreRenderedWithTheirFinalImages() throws Exception {
+        List<GenerationSpec> services = List.of(spec("gateway", "postgresql", "no", "8080"), spec("orders", "postgresql", "no", "8081"));
+
+        deploymentService.microservicesDeployment(tempDir.toString(), services, "AWS", "EC2", "123456789012", "eu-west-1", "acme");
+        deploymentService.microservicesDeployment(tempDir.toString(), services, "AWS", "EKS", "123456789012", "eu-west-1", "acme");
+
+        Map<String, Object> compose = map(yaml(tempDir.resolve("docker-compose.yml")), "services");
+        assertThat(map(compose, "orders")).containsEntry("image", "public.ecr.aws/c4d3l3m6/orders:latest")
+                .containsEntry("ports", List.of("8081:8081"));
+        assertThat(container(yaml(tempDir.resolve("kubernetes/orders-deployment.yml"))))
+                .containsEntry("image", "123456789012.dkr.ecr.eu-west-1.amazonaws.com/orders:latest");
+        String service = Files.readString(tempDir.resolve("kubernetes/orders-service.yml"));
+        assertThat(service.split("type: LoadBalancer", -1)).hasSize(2);
+    }
+
+    private static GenerationSpec spec(String baseName, String prodDatabaseType, String cacheProvider, String serverPort) {
+        JdlRequest request = new JdlRequest();
+        request.setBaseName(baseName);
+        request.setApplicationType("monolith");
+        request.setBuildTool("maven");
+        request.setProdDatabaseType(prodDatabaseType);
+        request.setCacheProvider(cacheProvider);
+        request.setServerPort(serverPort);
+        return GenerationSpec.compile(request);
+    }
+
+    private static Map<String, Object> yaml(Path file) throws IOException {
+        return new Yaml().load(Files.readString(file));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> yamlDocuments(Path file) throws IOException {
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (Object document : new Yaml().loadAll(Files.readString(file))) {
+            documents.add((Map<String, Object>) document);
+        }
+        return documents;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> container(Map<String, Object> workload) {
+        return (Map<String, Object>) list(map(map(map(workload, "spec"), "template"), "spec"), "containers").get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Map<String, Object> parent, String key) {
+        assertThat(parent).containsKey(key);
+        return (Map<String, Object>) parent.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Map<String, Object> parent, String key) {
+        assertThat(parent).containsKey(key);
+        return (List<Object>) parent.get(key);
+    }
+}
@@ -0,0 +1,268 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the client against a fake daemon on a Unix socket that answers with canned bytes.
+ */
+class DockerEngineClientTest {
+
+    private static final byte STDOUT = 1;
+
+    private static final byte STDERR = 2;
+
+    @TempDir
+    Path tempDir;
+
+    private FakeDaemon daemon;
+
+    private DockerEngineClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        daemon = new FakeDaemon(tempDir.resolve("docker.sock"));
+        daemon.respond("GET /_ping", FakeDaemon.fixed(200, "OK"));
+        daemon.respond("GET /version", FakeDaemon.fixed(200, "{\"ApiVersion\":\"1.43\"}"));
+        client = new DockerEngineClient();
+        ReflectionTestUtils.setField(client, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(client, "socketPath", daemon.path.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        daemon.close();
+    }
+
+    @Test
+    void decodesChunkedLogsWithChunksSplittingFrames() throws IOException {
+        daemon.respond("POST /v1.43/containers/create", FakeDaemon.fixed(201, "{\"Id\":\"c1\"}"));
+        daemon.respond("POST /v1.43/containers/c1/start", FakeDaemon.fixed(204, ""));
+        byte[] frames = concat(
+                frame(STDOUT, "Generating application\nWriting "),
+                frame(STDERR, "warning: slow disk\r\n"),
+                frame(STDOUT, "files\ndone"));
+        // Chunk boundaries fall inside frame headers and payloads, one chunk has an extension
+        daemon.respond("GET /v1.43/containers/c1/logs?follow=1&stdout=1&stderr=1", FakeDaemon.chunked(200,
+                List.of(Arrays.copyOfRange(frames, 0, 3), Arrays.copyOfRange(frames, 3, 20),
+                        Arrays.copyOfRange(frames, 20, frames.length)), "3;name=value"));
+        daemon.respond("POST /v1.43/containers/c1/wait", FakeDaemon.chunked(200,
+                List.of("{\"StatusCode\"".getBytes(StandardCharsets.UTF_8), ":3}".getBytes(StandardCharsets.UTF_8)), null));
+        daemon.respond("DELETE /v1.43/containers/c1?force=1", FakeDaemon.fixed(204, ""));
+
+        List<String> output = new ArrayList<>();
+        int exitCode = client.run(new DockerEngineClient.ContainerSpec("jhipster/jhipster:v8.11.0",
+                List.of("jhipster"), "/app", "root", List.of("/host:/app")), 60, output::add);
+
+        assertThat(exitCode).isEqualTo(3);
+        assertThat(output).containsExactly("Generating application", "Writing warning: slow disk", "files", "done");
+        assertThat(daemon.requests).contains("DELETE /v1.43/containers/c1?force=1");
+    }
+
+    @Test
+    void demultiplexesHijackedExecStream() throws IOException {
+        daemon.respond("POST /v1.43/containers/c1/exec", FakeDaemon.fixed(201, "{\"Id\":\"e1\"}"));
+        byte[] payload = new byte[70_000];
+        Arrays.fill(payload, (byte) 'x');
+        daemon.respond("POST /v1.43/exec/e1/start", FakeDaemon.upgraded(concat(
+                frame(STDOUT, "first\n"),
+                frame(STDERR, "second\n"),
+                frame(STDOUT, new String(payload, StandardCharsets.UTF_8) + "\n"),
+                frame(STDOUT, ""),
+                frame(STDOUT, "last"))));
+        daemon.respond("GET /v1.43/exec/e1/json", FakeDaemon.fixed(200, "{\"ExitCode\":0}"));
+
+        List<String> output = new ArrayList<>();
+        int exitCode = client.exec("c1", List.of("jhipster"), "/workspace/app", "root", 60, output::add);
+
+        assertThat(exitCode).isZero();
+        assertThat(output).hasSize(4);
+        assertThat(output.get(0)).isEqualTo("first");
+        assertThat(output.get(1)).isEqualTo("second");
+        assertThat(output.get(2)).hasSize(payload.length);
+        assertThat(output.get(3)).isEqualTo("last");
+    }
+
+    @Test
+    void negotiatesTheVersionOfAnOlderDaemon() throws IOException {
+        daemon.respond("GET /version", FakeDaemon.fixed(200, "{\"ApiVersion\":\"1.41\"}"));
+        daemon.respond("GET /v1.41/containers/c1/json", FakeDaemon.fixed(200, "{\"State\":{\"Running\":true}}"));
+
+        assertThat(client.isAvailable()).isTrue();
+        assertThat(client.isRunning("c1")).isTrue();
+        assertThat(daemon.requests).contains("GET /v1.41/containers/c1/json");
+    }
+
+    @Test
+    void capsTheVersionOfANewerDaemon() throws IOException {
+        daemon.respond("GET /version", FakeDaemon.fixed(200, "{\"ApiVersion\":\"1.47\"}"));
+        daemon.respond("GET /v1.43/containers/c1/json", FakeDaemon.fixed(404, "{\"message\":\"No such container\"}"));
+
+        assertThat(client.isRunning("c1")).isFalse();
+        assertThat(daemon.requests).contains("GET /v1.43/containers/c1/json");
+    }
+
+    @Test
+    void daemonWithTooOldApiIsNotAvailable() {
+        daemon.respond("GET /version", FakeDaemon.fixed(200, "{\"ApiVersion\":\"1.24\"}"));
+
+        assertThat(client.isAvailable()).isFalse();
+    }
+
+    @Test
+    void comparesVersionsNumerically() {
+        assertThat(DockerEngineClient.compareVersions("1.9", "1.25")).isNegative();
+        assertThat(DockerEngineClient.compareVersions("1.43", "1.43")).isZero();
+        assertThat(DockerEngineClient.compareVersions("2.0", "1.43")).isPositive();
+    }
+
+    private static byte[] frame(byte stream, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[8 + bytes.length];
+        frame[0] = stream;
+        frame[4] = (byte) (bytes.length >>> 24);
+        frame[5] = (byte) (bytes.length >>> 16);
+        frame[6] = (byte) (bytes.length >>> 8);
+        frame[7] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, frame, 8, bytes.length);
+        return frame;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Answers each request, one per connection, with the canned response registered
+     * for its method and path.
+     */
+    private static final class FakeDaemon implements AutoCloseable {
+
+        private final Path path;
+
+        private final ServerSocketChannel server;
+
+        private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+
+        private final Thread acceptor;
+
+        private FakeDaemon(Path path) throws IOException {
+            this.path = path;
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+            this.acceptor = new Thread(this::accept, "fake-docker-daemon");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        void respond(String request, byte[] response) {
+            responses.put(request, response);
+        }
+
+        static byte[] fixed(int status, String body) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            return concat(head(status, "Content-Length: " + bytes.length), bytes);
+        }
+
+        /**
+         * A chunked response; {@code firstChunkSize} overrides the size line of the first chunk.
+         */
+        static byte[] chunked(int status, List<byte[]> chunks, String firstChunkSize) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(head(status, "Transfer-Encoding: chunked"));
+            for (int i = 0; i < chunks.size(); i++) {
+                String size = i == 0 && firstChunkSize != null ? firstChunkSize : Integer.toHexString(chunks.get(i).length);
+                out.writeBytes((size + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.writeBytes(chunks.get(i));
+                out.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            out.writeBytes("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            return out.toByteArray();
+        }
+
+        static byte[] upgraded(byte[] stream) {
+            return concat(("HTTP/1.1 101 UPGRADED\r\nContent-Type: application/vnd.docker.raw-stream\r\n"
+                    + "Connection: Upgrade\r\nUpgrade: tcp\r\n\r\n").getBytes(StandardCharsets.US_ASCII), stream);
+        }
+
+        private static byte[] head(int status, String header) {
+            return ("HTTP/1.1 " + status + " Status\r\n" + header + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        private void accept() {
+            while (server.isOpen()) {
+                try (SocketChannel channel = server.accept()) {
+                    InputStream in = Channels.newInputStream(channel);
+                    OutputStream out = Channels.newOutputStream(channel);
+                    String requestLine = readLine(in);
+                    long contentLength = 0;
+                    String line;
+                    while (!(line = readLine(in)).isEmpty()) {
+                        if (line.toLowerCase().startsWith("content-length:")) {
+                            contentLength = Long.parseLong(line.substring(15).trim());
+                        }
+                    }
+                    in.readNBytes((int) contentLength);
+                    String[] parts = requestLine.split(" ");
+                    String request = parts[0] + " " + parts[1];
+                    requests.add(request);
+                    byte[] response = responses.get(request);
+                    out.write(response != null ? response : fixed(404, "{\"message\":\"no canned response\"}"));
+                    out.flush();
+                } catch (IOException e) {
+                    // Closed
+                }
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new IOException("Connection closed");
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            acceptor.interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.itstrat.acmf.apis.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stores trees of 400 KB in a cache of 1 MB, which holds two of them.
+ */
+class GeneratedProjectCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private GeneratedProjectCache generatedProjectCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        generatedProjectCache = cache("jhipster/jhipster:v8.11.0");
+    }
+
+    @Test
+    void keyOnlyDependsOnTheConfigurationAndTheGenerator() throws Exception {
+        Path compact = Files.writeString(tempDir.resolve("compact.json"),
+                "{\"generator-jhipster\":{\"baseName\":\"shop\",\"buildTool\":\"maven\",\"languages\":[\"en\",\"fr\"]}}");
+        Path reordered = Files.writeString(tempDir.resolve("reordered.json"), """
+                {
+                  "generator-jhipster": {
+                    "languages": ["en", "fr"],
+                    "buildTool": "maven",
+                    "baseName": "shop"
+                  }
+                }
+                """);
+        Path otherLanguages = Files.writeString(tempDir.resolve("other.json"),
+                "{\"generator-jhipster\":{\"baseName\":\"shop\",\"buildTool\":\"maven\",\"languages\":[\"fr\",\"en\"]}}");
+
+        String key = generatedProjectCache.key(compact);
+        assertThat(generatedProjectCache.key(reordered)).isEqualTo(key);
+        assertThat(generatedProjectCache.key(otherLanguages)).isNotEqualTo(key);
+        assertThat(generatedProjectCache.key(compact, "remote http://generator")).isNotEqualTo(key);
+        assertThat(cache("jhipster/jhipster:v8.12.0").key(compact)).isNotEqualTo(key);
+    }
+
+    @Test
+    void restoresStoredTrees() throws Exception {
+        generatedProjectCache.store("shop", tree("shop"));
+
+        Path target = tempDir.resolve("restored");
+        assertThat(generatedProjectCache.restore("shop", target)).isTrue();
+        assertThat(target.resolve("src/main/java/App.java")).hasContent("class shop {}");
+        assertThat(generatedProjectCache.restore("blog", tempDir.resolve("missing"))).isFalse();
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedTree() throws Exception {
+        generatedProjectCache.store("shop", tree("shop"));
+        generatedProjectCache.store("blog", tree("blog"));
+        assertThat(generatedProjectCache.restore("shop", tempDir.resolve("restored"))).isTrue();
+
+        generatedProjectCache.store("store", tree("store"));
+
+        assertThat(generatedProjectCache.restore("blog", tempDir.resolve("blog-restored"))).isFalse();
+        assertThat(generatedProjectCache.restore("shop", tempDir.resolve("shop-restored"))).isTrue();
+        assertThat(generatedProjectCache.restore("store", tempDir.resolve("store-restored"))).isTrue();
+        // The evicted tree is deleted, nothing is left aside
+        try (Stream<Path> children = Files.list(tempDir.resolve("cache"))) {
+            assertThat(children.map(child -> child.getFileName().toString())).containsExactlyInAnyOrder("shop", "store");
+        }
+    }
+
+    @Test
+    void neverEvictsPinnedTrees() throws Exception {
+        generatedProjectCache.store("shop", tree("shop"));
+        generatedProjectCache.store("blog", tree("blog"));
+        assertThat((Boolean) ReflectionTestUtils.invokeMethod(generatedProjectCache, "pin", "shop")).isTrue();
+
+        generatedProjectCache.store("store", tree("store"));
+
+        assertThat(generatedProjectCache.restore("blog", tempDir.resolve("blog-restored"))).isFalse();
+        assertThat(tempDir.resolve("cache/shop")).isDirectory();
+
+        ReflectionTestUtils.invokeMethod(generatedProjectCache, "unpin", "shop");
+        generatedProjectCache.store("blog", tree("blog"));
+        generatedProjectCache.store("cart", tree("cart"));
+
+        assertThat(tempDir.resolve("cache/shop")).doesNotExist();
+    }
+
+    @Test
+    void reloadsTheIndexOnStartup() throws Exception {
+        generatedProjectCache.store("shop", tree("shop"));
+        Files.createDirectories(tempDir.resolve("cache/.tmp-interrupted"));
+
+        GeneratedProjectCache restarted = cache("jhipster/jhipster:v8.11.0");
+
+        assertThat(restarted.restore("shop", tempDir.resolve("restored"))).isTrue();
+        assertThat(tempDir.resolve("cache/.tmp-interrupted")).doesNotExist();
+    }
+
+    private GeneratedProjectCache cache(String generatorImage) throws Exception {
+        GeneratedProjectCache cache = new GeneratedProjectCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", tempDir.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(cache, "generatorImage", generatorImage);
+        cache.init();
+        return cache;
+    }
+
+    private Path tree(String name) throws Exception {
+        Path tree = Files.createDirectories(tempDir.resolve("generated").resolve(name));
+        Files.createDirectories(tree.resolve("src/main/java"));
+        Files.writeString(tree.resolve("src/main/java/App.java"), "class " + name + " {}");
+        Files.write(tree.resolve("node_modules.tar"), new byte[400 * 1024]);
+        return tree;
+    }
+}
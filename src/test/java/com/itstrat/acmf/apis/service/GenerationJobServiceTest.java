@@ -0,0 +1,122 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobStatus;
+import com.itstrat.acmf.apis.entity.GenerationOptions;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.entity.JdlRequest;
+import com.itstrat.acmf.apis.entity.User;
+import com.itstrat.acmf.apis.exception.GenerationConflictException;
+import com.itstrat.acmf.apis.repository.GenerationJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GenerationJobServiceTest {
+
+    private final GenerationJobRepository generationJobRepository = mock(GenerationJobRepository.class);
+
+    private GenerationJobService generationJobService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CredentialCipher credentialCipher = new CredentialCipher();
+        ReflectionTestUtils.setField(credentialCipher, "configuredKey", Base64.getEncoder().encodeToString(new byte[32]));
+        credentialCipher.init();
+
+        generationJobService = new GenerationJobService();
+        ReflectionTestUtils.setField(generationJobService, "generationJobRepository", generationJobRepository);
+        ReflectionTestUtils.setField(generationJobService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(generationJobService, "credentialCipher", credentialCipher);
+        ReflectionTestUtils.setField(generationJobService, "queueCapacity", 2L);
+
+        user = new User();
+        user.setId(1L);
+    }
+
+    @Test
+    void countsTheQueueUnderTheQueueLock() throws Exception {
+        when(generationJobRepository.countByStatus(GenerationJobStatus.QUEUED)).thenReturn(1L);
+
+        GenerationJob job = generationJobService.submitMonolith(spec("shop"), options(), GenerationDelivery.GITHUB, user);
+
+        InOrder order = inOrder(generationJobRepository);
+        order.verify(generationJobRepository).lockQueue(anyLong());
+        order.verify(generationJobRepository).countByStatus(GenerationJobStatus.QUEUED);
+        order.verify(generationJobRepository).save(job);
+        // The token is stored encrypted, and read back for the worker
+        assertThat(job.getOptions()).doesNotContain("ghp_secret");
+        assertThat(generationJobService.readOptions(job).getGithubToken()).isEqualTo("ghp_secret");
+        assertThat(generationJobService.readMonolithSpec(job).getBaseName()).isEqualTo("shop");
+    }
+
+    @Test
+    void rejectsJobsOnceTheQueueIsFull() {
+        when(generationJobRepository.countByStatus(GenerationJobStatus.QUEUED)).thenReturn(2L);
+
+        assertThatThrownBy(() -> generationJobService.submitMonolith(spec("shop"), options(), GenerationDelivery.GITHUB, user))
+                .isInstanceOf(TaskRejectedException.class);
+        verify(generationJobRepository).lockQueue(anyLong());
+        verify(generationJobRepository, never()).save(any());
+    }
+
+    @Test
+    void rejectsANameAlreadyQueuedOrRunning() {
+        when(generationJobRepository.existsByNameAndStatusIn(eq("shop"), any())).thenReturn(true);
+
+        assertThatThrownBy(() -> generationJobService.submitMonolith(spec("shop"), options(), GenerationDelivery.GITHUB, user))
+                .isInstanceOf(GenerationConflictException.class)
+                .hasMessageContaining("shop");
+        InOrder order = inOrder(generationJobRepository);
+        order.verify(generationJobRepository).lockQueue(anyLong());
+        order.verify(generationJobRepository).existsByNameAndStatusIn(eq("shop"), any());
+        verify(generationJobRepository, never()).save(any());
+    }
+
+    @Test
+    void rejectsAPortUsedByAnotherMonolith() {
+        JdlRequest request = request("blog");
+        request.setServerPort("8081");
+        when(generationJobRepository.existsActiveMonolithOnPort(8081)).thenReturn(true);
+
+        assertThatThrownBy(() -> generationJobService.submitMonolith(GenerationSpec.compile(request), options(), GenerationDelivery.GITHUB, user))
+                .isInstanceOf(GenerationConflictException.class)
+                .hasMessageContaining("8081");
+        verify(generationJobRepository, never()).save(any());
+    }
+
+    private static GenerationSpec spec(String baseName) {
+        return GenerationSpec.compile(request(baseName));
+    }
+
+    private static JdlRequest request(String baseName) {
+        JdlRequest request = new JdlRequest();
+        request.setBaseName(baseName);
+        request.setApplicationType("monolith");
+        request.setBuildTool("maven");
+        return request;
+    }
+
+    private static GenerationOptions options() {
+        return new GenerationOptions("/tmp/projects", "octocat", "ghp_secret", null, "AWS", "EC2", null, "eu-west-1");
+    }
+}
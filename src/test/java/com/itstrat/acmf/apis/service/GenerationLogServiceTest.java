@@ -0,0 +1,154 @@
+package com.itstrat.acmf.apis.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Follows logs of an 8 line buffer, spilling 2 lines at a time on a writer run by hand.
+ */
+class GenerationLogServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Runnable> spills = new ArrayList<>();
+
+    private GenerationLogService generationLogService;
+
+    @BeforeEach
+    void setUp() {
+        generationLogService = new GenerationLogService();
+        ReflectionTestUtils.setField(generationLogService, "logSpillExecutor", new ThreadPoolTaskExecutor() {
+            @Override
+            public void execute(Runnable task) {
+                spills.add(task);
+            }
+        });
+        ReflectionTestUtils.setField(generationLogService, "bufferLines", 8);
+        ReflectionTestUtils.setField(generationLogService, "logsDir", tempDir.toString());
+        ReflectionTestUtils.setField(generationLogService, "streamTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(generationLogService, "heartbeatMs", 10L);
+    }
+
+    @Test
+    void keepsTheOrderOfLinesAcrossTheRing() throws Exception {
+        generationLogService.start("shop");
+        append("shop", 0, 7);
+        generationLogService.finish("shop");
+
+        assertThat(follow("shop", 0)).containsExactlyElementsOf(lines(0, 7));
+        assertThat(spills).isEmpty();
+    }
+
+    @Test
+    void spillsOffTheProducerThread() throws Exception {
+        generationLogService.start("shop");
+        append("shop", 0, 14);
+        generationLogService.finish("shop");
+
+        // Nothing is written until the writer runs, lines are read from memory meanwhile
+        assertThat(tempDir.resolve("shop.log.gz")).doesNotExist();
+        assertThat(follow("shop", 0)).containsExactlyElementsOf(lines(0, 14));
+
+        runSpills();
+
+        assertThat(tempDir.resolve("shop.log.gz")).exists();
+        assertThat(follow("shop", 0)).containsExactlyElementsOf(lines(0, 14));
+    }
+
+    @Test
+    void resumesFromAnOffset() throws Exception {
+        generationLogService.start("shop");
+        append("shop", 0, 10);
+        runSpills();
+        append("shop", 10, 16);
+        generationLogService.finish("shop");
+
+        // From a member of the spill file, a segment still in memory, and the ring
+        assertThat(follow("shop", 1)).containsExactlyElementsOf(lines(1, 16));
+        assertThat(follow("shop", 5)).containsExactlyElementsOf(lines(5, 16));
+        assertThat(follow("shop", 11)).containsExactlyElementsOf(lines(11, 16));
+        assertThat(follow("shop", 16)).containsExactly("end 16");
+    }
+
+    @Test
+    void dropsTheOldestSegmentsOnceTheWriterFallsBehind() throws Exception {
+        generationLogService.start("shop");
+        append("shop", 0, 30);
+        generationLogService.finish("shop");
+        runSpills();
+
+        // 22 lines left the ring, the writer only got the last four segments of 2 lines
+        assertThat(follow("shop", 0)).containsExactlyElementsOf(lines(14, 30));
+        assertThat(Files.size(tempDir.resolve("shop.log.gz"))).isPositive();
+    }
+
+    @Test
+    void deletesTheSpillFileOfPurgedLogs() throws Exception {
+        ReflectionTestUtils.setField(generationLogService, "retentionMinutes", -1L);
+        generationLogService.start("shop");
+        append("shop", 0, 12);
+        runSpills();
+        generationLogService.finish("shop");
+
+        generationLogService.purgeFinishedLogs();
+
+        assertThat(tempDir.resolve("shop.log.gz")).doesNotExist();
+        assertThat(generationLogService.follow("shop", 0, listener(new ArrayList<>()))).isFalse();
+    }
+
+    private void append(String jobId, int from, int to) {
+        Consumer<String> output = generationLogService.output(jobId);
+        for (int i = from; i < to; i++) {
+            output.accept("line " + i);
+        }
+    }
+
+    private void runSpills() {
+        while (!spills.isEmpty()) {
+            spills.remove(0).run();
+        }
+    }
+
+    private List<String> follow(String jobId, long offset) throws Exception {
+        List<String> events = new ArrayList<>();
+        assertThat(generationLogService.follow(jobId, offset, listener(events))).isTrue();
+        return events;
+    }
+
+    private static GenerationLogService.LogListener listener(List<String> events) {
+        return new GenerationLogService.LogListener() {
+            @Override
+            public void line(long number, String line) {
+                events.add(number + " " + line);
+            }
+
+            @Override
+            public void end(long number) {
+                events.add("end " + number);
+            }
+
+            @Override
+            public void keepAlive() {
+            }
+        };
+    }
+
+    private static List<String> lines(int from, int to) {
+        List<String> lines = new ArrayList<>(IntStream.range(from, to).mapToObj(i -> i + " line " + i).toList());
+        lines.add("end " + to);
+        return lines;
+    }
+}
@@ -0,0 +1,165 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobType;
+import com.itstrat.acmf.apis.entity.GenerationStage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GenerationPipelineExecutorTest {
+
+    private final ThreadPoolTaskExecutor stageExecutor = new ThreadPoolTaskExecutor();
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    private GenerationPipelineExecutor generationPipelineExecutor;
+
+    private GenerationJob job;
+
+    @BeforeEach
+    void setUp() {
+        stageExecutor.setCorePoolSize(4);
+        stageExecutor.initialize();
+
+        GenerationLogService generationLogService = mock(GenerationLogService.class);
+        when(generationLogService.output(anyString())).thenReturn(line -> { });
+
+        generationPipelineExecutor = new GenerationPipelineExecutor();
+        ReflectionTestUtils.setField(generationPipelineExecutor, "stageExecutor", stageExecutor);
+        ReflectionTestUtils.setField(generationPipelineExecutor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(generationPipelineExecutor, "generationLogService", generationLogService);
+
+        job = new GenerationJob(GenerationJobType.MONOLITH, "shop", 1L, GenerationDelivery.GITHUB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stageExecutor.shutdown();
+    }
+
+    @Test
+    void runsIndependentStagesConcurrentlyAndDependentsAfterThem() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        GenerationPipelineExecutor.Action independent = () -> {
+            bothRunning.countDown();
+            // Only returns if the other stage runs at the same time
+            assertThat(bothRunning.await(5, TimeUnit.SECONDS)).isTrue();
+        };
+
+        generationPipelineExecutor.pipeline(job)
+                .stage(GenerationStage.GENERATE, () -> {
+                    independent.run();
+                    events.add("generate");
+                })
+                .stage(GenerationStage.REPOSITORY, () -> {
+                    independent.run();
+                    events.add("repository");
+                })
+                .stage(GenerationStage.PUSH, () -> events.add("push"), GenerationStage.GENERATE, GenerationStage.REPOSITORY)
+                .run();
+
+        assertThat(events).hasSize(3).endsWith("push");
+        assertThat(job.hasCompleted(GenerationStage.PUSH)).isTrue();
+    }
+
+    @Test
+    void skipsStagesCompletedByAnEarlierRun() throws Exception {
+        job.checkpoint(GenerationStage.GENERATE);
+
+        generationPipelineExecutor.pipeline(job)
+                .stage(GenerationStage.GENERATE, () -> events.add("generate"))
+                .stage(GenerationStage.DOCKERFILE, () -> events.add("dockerfile"), GenerationStage.GENERATE)
+                .run();
+
+        assertThat(events).containsExactly("dockerfile");
+    }
+
+    @Test
+    void failedStageSkipsItsDependentsButNotIndependentStages() {
+        assertThatThrownBy(() -> generationPipelineExecutor.pipeline(job)
+                .stage(GenerationStage.GENERATE, () -> {
+                    throw new IOException("generator failed");
+                })
+                .stage(GenerationStage.REPOSITORY, () -> events.add("repository"))
+                .stage(GenerationStage.DOCKERFILE, () -> events.add("dockerfile"), GenerationStage.GENERATE)
+                .stage(GenerationStage.PUSH, () -> events.add("push"), GenerationStage.DOCKERFILE, GenerationStage.REPOSITORY)
+                .run())
+                .isInstanceOf(IOException.class)
+                .hasMessage("generator failed");
+
+        assertThat(events).containsExactly("repository");
+        assertThat(job.hasCompleted(GenerationStage.REPOSITORY)).isTrue();
+        assertThat(job.hasCompleted(GenerationStage.GENERATE)).isFalse();
+    }
+
+    @Test
+    void interruptStopsRunningStagesBeforeReturning() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        GenerationPipelineExecutor.Pipeline pipeline = generationPipelineExecutor.pipeline(job)
+                .stage(GenerationStage.GENERATE, () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException e) {
+                        // Cleaning up takes a while, the caller must wait for it
+                        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                        while (System.nanoTime() < until) {
+                            Thread.onSpinWait();
+                        }
+                        events.add("generate stopped");
+                        throw e;
+                    }
+                })
+                .stage(GenerationStage.DOCKERFILE, () -> events.add("dockerfile"), GenerationStage.GENERATE);
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> run = caller.submit(() -> {
+                try {
+                    pipeline.run();
+                    events.add("returned");
+                } catch (InterruptedException e) {
+                    events.add("interrupted");
+                }
+                return null;
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            run.cancel(true);
+
+            caller.shutdown();
+            assertThat(caller.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(events).containsExactly("generate stopped", "interrupted");
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsStagesDependingOnUndeclaredOnes() {
+        assertThatThrownBy(() -> generationPipelineExecutor.pipeline(job)
+                .stage(GenerationStage.PUSH, () -> { }, GenerationStage.REPOSITORY))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("REPOSITORY");
+    }
+}
@@ -0,0 +1,124 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobType;
+import com.itstrat.acmf.apis.entity.GenerationOptions;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.entity.JdlRequest;
+import com.itstrat.acmf.apis.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GenerationWorkerTest {
+
+    private final GenerationJobService generationJobService = mock(GenerationJobService.class);
+
+    private final ProjectGenerationService projectGenerationService = mock(ProjectGenerationService.class);
+
+    private final WorkspaceReaper workspaceReaper = mock(WorkspaceReaper.class);
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private GenerationWorker worker;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor.setCorePoolSize(1);
+        executor.initialize();
+
+        UserService userService = mock(UserService.class);
+        when(userService.findUserById(anyLong())).thenReturn(new User());
+        GenerationLogService generationLogService = mock(GenerationLogService.class);
+        when(generationLogService.output(anyString())).thenReturn(line -> { });
+        when(workspaceReaper.hasCapacity()).thenReturn(true);
+
+        worker = new GenerationWorker();
+        worker.setConcurrency(1);
+        ReflectionTestUtils.setField(worker, "generationExecutor", executor);
+        ReflectionTestUtils.setField(worker, "generationJobService", generationJobService);
+        ReflectionTestUtils.setField(worker, "projectGenerationService", projectGenerationService);
+        ReflectionTestUtils.setField(worker, "userService", userService);
+        ReflectionTestUtils.setField(worker, "generationLogService", generationLogService);
+        ReflectionTestUtils.setField(worker, "workspaceReaper", workspaceReaper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void lostLeaseInterruptsTheRunAndStopsRenewingIt() throws Exception {
+        GenerationJob job = new GenerationJob(GenerationJobType.MONOLITH, "shop", 1L, GenerationDelivery.GITHUB);
+        job.claim("this-worker", LocalDateTime.now().plusMinutes(1));
+        when(generationJobService.claimNext(anyString())).thenReturn(Optional.of(job), Optional.empty());
+        when(generationJobService.readMonolithSpec(job)).thenReturn(spec());
+        when(generationJobService.readOptions(job)).thenReturn(new GenerationOptions());
+        when(generationJobService.renewLease(eq(job), anyString())).thenReturn(false);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(projectGenerationService.generateMonolith(eq(job), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "https://github.com/org/shop.git";
+        });
+
+        worker.poll();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        worker.heartbeat();
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(job.isLeaseLost()).isTrue();
+        verify(generationJobService, timeout(5000)).complete(eq(job), anyString());
+        assertThat(job.getError()).isNotNull();
+
+        // The job is no longer renewed by this worker
+        worker.heartbeat();
+        verify(generationJobService, times(1)).renewLease(eq(job), anyString());
+    }
+
+    @Test
+    void claimsNoJobWhileTheWorkspaceRootIsOverQuota() {
+        when(workspaceReaper.hasCapacity()).thenReturn(false);
+
+        worker.poll();
+
+        verify(generationJobService, never()).claimNext(anyString());
+    }
+
+    private static GenerationSpec spec() {
+        JdlRequest request = new JdlRequest();
+        request.setBaseName("shop");
+        request.setApplicationType("monolith");
+        request.setBuildTool("maven");
+        return GenerationSpec.compile(request);
+    }
+}
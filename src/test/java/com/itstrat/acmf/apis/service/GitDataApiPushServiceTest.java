@@ -0,0 +1,270 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pushes workspaces to a stub of the GitHub Git Data API that keeps its objects in memory.
+ */
+class GitDataApiPushServiceTest {
+
+    private static final String REPO_URL = "https://github.com/acme/shop.git";
+
+    @TempDir
+    Path workspace;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private StubGitHub gitHub;
+
+    private GitDataApiPushService gitDataApiPushService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        gitHub = new StubGitHub(objectMapper);
+
+        GitHubRateLimiter gitHubRateLimiter = new GitHubRateLimiter();
+        ReflectionTestUtils.setField(gitHubRateLimiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(gitHubRateLimiter, "maxConcurrentPerToken", 4);
+        ReflectionTestUtils.setField(gitHubRateLimiter, "maxWaitMs", 10_000L);
+        gitHubRateLimiter.init();
+
+        GitHubClient gitHubClient = new GitHubClient();
+        ReflectionTestUtils.setField(gitHubClient, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(gitHubClient, "gitHubRateLimiter", gitHubRateLimiter);
+        ReflectionTestUtils.setField(gitHubClient, "apiUrl", gitHub.url());
+        ReflectionTestUtils.setField(gitHubClient, "connectTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(gitHubClient, "readTimeoutMs", 5_000L);
+        gitHubClient.init();
+
+        executor.setCorePoolSize(4);
+        executor.initialize();
+
+        gitDataApiPushService = new GitDataApiPushService();
+        ReflectionTestUtils.setField(gitDataApiPushService, "gitHubClient", gitHubClient);
+        ReflectionTestUtils.setField(gitDataApiPushService, "githubUploadExecutor", executor);
+
+        Files.writeString(workspace.resolve("pom.xml"), "<project/>");
+        Files.createDirectories(workspace.resolve("gateway"));
+        Files.createDirectories(workspace.resolve("store"));
+        Files.writeString(workspace.resolve("gateway/.editorconfig"), "root = true\n");
+        Files.writeString(workspace.resolve("store/.editorconfig"), "root = true\n");
+        Files.writeString(workspace.resolve(".gitignore"), "target/\n");
+        Files.createDirectories(workspace.resolve("target"));
+        Files.writeString(workspace.resolve("target/app.jar"), "binary");
+    }
+
+    @AfterEach
+    void tearDown() {
+        gitHub.close();
+        executor.shutdown();
+    }
+
+    @Test
+    void initializesAnEmptyRepositoryAndUploadsSharedContentOnce() throws Exception {
+        gitDataApiPushService.push(workspace.toString(), REPO_URL, "user", "token");
+
+        assertThat(gitHub.requests).contains("PUT /repos/acme/shop/contents/.acmf");
+        // pom.xml, .gitignore and one .editorconfig shared by both services
+        assertThat(gitHub.blobUploads).hasValue(3);
+        assertThat(gitHub.forcedUpdates).containsExactly(true);
+        assertThat(gitHub.files()).containsOnlyKeys(".gitignore", "pom.xml", "gateway/.editorconfig", "store/.editorconfig");
+        assertThat(gitHub.files().get("store/.editorconfig")).isEqualTo(gitHub.files().get("gateway/.editorconfig"));
+    }
+
+    @Test
+    void retryUploadsOnlyTheChangedBlobs() throws Exception {
+        gitDataApiPushService.push(workspace.toString(), REPO_URL, "user", "token");
+        gitHub.blobUploads.set(0);
+        gitHub.requests.clear();
+        Files.writeString(workspace.resolve("pom.xml"), "<project><version>2</version></project>");
+
+        gitDataApiPushService.push(workspace.toString(), REPO_URL, "user", "token");
+
+        assertThat(gitHub.requests).doesNotContain("PUT /repos/acme/shop/contents/.acmf");
+        assertThat(gitHub.blobUploads).hasValue(1);
+        assertThat(gitHub.forcedUpdates).containsExactly(true, true);
+        assertThat(gitHub.content(gitHub.files().get("pom.xml"))).isEqualTo("<project><version>2</version></project>");
+        assertThat(gitHub.files()).containsOnlyKeys(".gitignore", "pom.xml", "gateway/.editorconfig", "store/.editorconfig");
+    }
+
+    /**
+     * The endpoints of the Git Data and contents APIs the push uses, for a single repository.
+     */
+    private static final class StubGitHub implements AutoCloseable {
+
+        private static final String PREFIX = "/repos/acme/shop/";
+
+        private final ObjectMapper objectMapper;
+
+        private final HttpServer server;
+
+        private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+
+        private final Map<String, Map<String, String>> trees = new ConcurrentHashMap<>();
+
+        private final Map<String, String> commits = new ConcurrentHashMap<>();
+
+        private final AtomicInteger blobUploads = new AtomicInteger();
+
+        private final AtomicInteger ids = new AtomicInteger();
+
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+
+        private final List<Boolean> forcedUpdates = new CopyOnWriteArrayList<>();
+
+        private volatile String main;
+
+        private StubGitHub(ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String url() {
+            return "http://localhost:" + server.getAddress().getPort();
+        }
+
+        /**
+         * Blob ids by path of the tree {@code main} points at.
+         */
+        Map<String, String> files() {
+            return trees.get(commits.get(main));
+        }
+
+        String content(String blobSha) {
+            return new String(blobs.get(blobSha), StandardCharsets.UTF_8);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            requests.add(method + " " + path);
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody().readAllBytes());
+            String resource = path.substring(PREFIX.length());
+
+            if (method.equals("GET") && resource.equals("git/ref/heads/main")) {
+                if (main == null) {
+                    respond(exchange, 404, objectMapper.createObjectNode().put("message", "Git Repository is empty."));
+                } else {
+                    ObjectNode reference = objectMapper.createObjectNode().put("ref", "refs/heads/main");
+                    reference.putObject("object").put("sha", main).put("type", "commit");
+                    respond(exchange, 200, reference);
+                }
+            } else if (method.equals("PUT") && resource.startsWith("contents/")) {
+                String blob = store(Base64.getDecoder().decode(body.get("content").asText()));
+                String tree = nextId();
+                trees.put(tree, Map.of(resource.substring("contents/".length()), blob));
+                main = commit(tree);
+                respond(exchange, 201, objectMapper.createObjectNode());
+            } else if (method.equals("POST") && resource.equals("git/blobs")) {
+                blobUploads.incrementAndGet();
+                respond(exchange, 201, objectMapper.createObjectNode()
+                        .put("sha", store(Base64.getDecoder().decode(body.get("content").asText()))));
+            } else if (method.equals("POST") && resource.equals("git/trees")) {
+                Map<String, String> files = new ConcurrentHashMap<>();
+                for (JsonNode entry : body.get("tree")) {
+                    if (!blobs.containsKey(entry.get("sha").asText())) {
+                        respond(exchange, 422, objectMapper.createObjectNode().put("message", "tree.sha is not a valid blob"));
+                        return;
+                    }
+                    files.put(entry.get("path").asText(), entry.get("sha").asText());
+                }
+                String tree = nextId();
+                trees.put(tree, files);
+                respond(exchange, 201, objectMapper.createObjectNode().put("sha", tree));
+            } else if (method.equals("POST") && resource.equals("git/commits")) {
+                respond(exchange, 201, objectMapper.createObjectNode().put("sha", commit(body.get("tree").asText())));
+            } else if (method.equals("PATCH") && resource.equals("git/refs/heads/main")) {
+                forcedUpdates.add(body.get("force").asBoolean());
+                main = body.get("sha").asText();
+                respond(exchange, 200, objectMapper.createObjectNode().put("ref", "refs/heads/main"));
+            } else if (method.equals("GET") && resource.startsWith("git/commits/")) {
+                String commit = resource.substring("git/commits/".length());
+                ObjectNode response = objectMapper.createObjectNode().put("sha", commit);
+                response.putObject("tree").put("sha", commits.get(commit)).put("type", "tree");
+                respond(exchange, 200, response);
+            } else if (method.equals("GET") && resource.startsWith("git/trees/")) {
+                String tree = resource.substring("git/trees/".length());
+                ObjectNode response = objectMapper.createObjectNode().put("sha", tree).put("truncated", false);
+                ArrayNode entries = response.putArray("tree");
+                trees.get(tree).forEach((file, blob) -> entries.addObject().put("path", file).put("type", "blob").put("sha", blob));
+                respond(exchange, 200, response);
+            } else {
+                respond(exchange, 404, objectMapper.createObjectNode().put("message", "Not Found"));
+            }
+        }
+
+        private String store(byte[] content) {
+            String sha = blobId(content);
+            blobs.put(sha, content);
+            return sha;
+        }
+
+        private String commit(String tree) {
+            String commit = nextId();
+            commits.put(commit, tree);
+            return commit;
+        }
+
+        private String nextId() {
+            return String.format("%040x", ids.incrementAndGet());
+        }
+
+        private void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+
+        private static String blobId(byte[] content) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+                return HexFormat.of().formatHex(digest.digest(content));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+}
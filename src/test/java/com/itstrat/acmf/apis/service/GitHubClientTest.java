@@ -0,0 +1,141 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itstrat.acmf.apis.exception.GitHubApiException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitHubClientTest {
+
+    private static final GitHubClient.Credentials CREDENTIALS = new GitHubClient.Credentials("octocat", "ghp_secret");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+
+    private final Map<String, String> requests = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    private GitHubClient gitHubClient;
+
+    private record Response(int status, String body) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String key = exchange.getRequestMethod() + " " + exchange.getRequestURI();
+            requests.put(key, new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            requests.put(key + " authorization", exchange.getRequestHeaders().getFirst("Authorization"));
+            Response response = responses.getOrDefault(key, new Response(404, "{\"message\":\"Not Found\"}"));
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        GitHubRateLimiter gitHubRateLimiter = new GitHubRateLimiter();
+        ReflectionTestUtils.setField(gitHubRateLimiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(gitHubRateLimiter, "maxConcurrentPerToken", 4);
+        ReflectionTestUtils.setField(gitHubRateLimiter, "maxWaitMs", 5_000L);
+        gitHubRateLimiter.init();
+
+        gitHubClient = new GitHubClient();
+        ReflectionTestUtils.setField(gitHubClient, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(gitHubClient, "gitHubRateLimiter", gitHubRateLimiter);
+        ReflectionTestUtils.setField(gitHubClient, "apiUrl", "http://localhost:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(gitHubClient, "connectTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(gitHubClient, "readTimeoutMs", 5_000L);
+        gitHubClient.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void parsesTheCreatedRepository() throws Exception {
+        responses.put("POST /orgs/acme/repos", new Response(201, """
+                {"name":"shop","full_name":"acme/shop","clone_url":"https://github.com/acme/shop.git",
+                 "html_url":"https://github.com/acme/shop","default_branch":"main","private":false}
+                """));
+
+        GitHubClient.Repository repository = gitHubClient.createRepository(CREDENTIALS, "shop", "acme");
+
+        assertThat(repository.fullName()).isEqualTo("acme/shop");
+        assertThat(repository.cloneUrl()).isEqualTo("https://github.com/acme/shop.git");
+        JsonNode body = objectMapper.readTree(requests.get("POST /orgs/acme/repos"));
+        assertThat(body.path("name").asText()).isEqualTo("shop");
+        assertThat(requests.get("POST /orgs/acme/repos authorization"))
+                .isEqualTo("Basic " + Base64.getEncoder().encodeToString("octocat:ghp_secret".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void mapsErrorsToTheirStatusAndGitHubsMessage() {
+        responses.put("POST /user/repos", new Response(422, """
+                {"message":"Repository creation failed.",
+                 "errors":[{"resource":"Repository","code":"custom","field":"name","message":"name already exists on this account"},
+                           {"resource":"Repository","code":"invalid","field":"visibility"}]}
+                """));
+
+        assertThatThrownBy(() -> gitHubClient.createRepository(CREDENTIALS, "shop", null))
+                .isInstanceOfSatisfying(GitHubApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(422))
+                .hasMessage("POST /user/repos: Repository creation failed.; name already exists on this account; visibility invalid");
+    }
+
+    @Test
+    void mapsErrorsWithoutADetailedBody() {
+        responses.put("POST /repos/acme/shop/git/blobs", new Response(403, "{\"message\":\"Resource not accessible by integration\"}"));
+        responses.put("POST /repos/acme/shop/git/trees", new Response(502, "<html>Bad gateway</html>"));
+        responses.put("POST /repos/acme/shop/git/commits", new Response(500, ""));
+
+        assertThatThrownBy(() -> gitHubClient.createBlob(CREDENTIALS, "acme/shop", new byte[]{1}))
+                .isInstanceOfSatisfying(GitHubApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(403))
+                .hasMessageEndingWith("Resource not accessible by integration");
+        assertThatThrownBy(() -> gitHubClient.createTree(CREDENTIALS, "acme/shop", List.of()))
+                .isInstanceOfSatisfying(GitHubApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(502))
+                .hasMessageEndingWith("unreadable error response");
+        assertThatThrownBy(() -> gitHubClient.createCommit(CREDENTIALS, "acme/shop", "Initial commit", "tree",
+                List.of(), "octocat", "octocat@github.com"))
+                .isInstanceOfSatisfying(GitHubApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(500))
+                .hasMessageEndingWith("no details");
+    }
+
+    @Test
+    void missingBranchIsEmpty() throws Exception {
+        responses.put("GET /repos/acme/empty/git/ref/heads/main", new Response(409, "{\"message\":\"Git Repository is empty.\"}"));
+        responses.put("GET /repos/acme/broken/git/ref/heads/main", new Response(500, "{\"message\":\"Server Error\"}"));
+        responses.put("GET /repos/acme/shop/git/ref/heads/main", new Response(200, """
+                {"ref":"refs/heads/main","object":{"sha":"abc123","type":"commit"}}
+                """));
+
+        assertThat(gitHubClient.findBranch(CREDENTIALS, "acme/missing", "main")).isEmpty();
+        assertThat(gitHubClient.findBranch(CREDENTIALS, "acme/empty", "main")).isEmpty();
+        assertThat(gitHubClient.findBranch(CREDENTIALS, "acme/shop", "main"))
+                .hasValueSatisfying(branch -> assertThat(branch.object().sha()).isEqualTo("abc123"));
+        assertThatThrownBy(() -> gitHubClient.findBranch(CREDENTIALS, "acme/broken", "main"))
+                .isInstanceOfSatisfying(GitHubApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(500));
+    }
+}
@@ -0,0 +1,141 @@
+package com.itstrat.acmf.apis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GitHubRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private GitHubRateLimiter gitHubRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        gitHubRateLimiter = new GitHubRateLimiter();
+        ReflectionTestUtils.setField(gitHubRateLimiter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(gitHubRateLimiter, "maxConcurrentPerToken", 1);
+        ReflectionTestUtils.setField(gitHubRateLimiter, "maxWaitMs", 10_000L);
+        ReflectionTestUtils.setField(gitHubRateLimiter, "idleEvictionMs", 0L);
+        ReflectionTestUtils.setField(gitHubRateLimiter, "secondaryWaitMs", 50L);
+        gitHubRateLimiter.init();
+    }
+
+    @Test
+    void callInterruptedWhileQueuedLeavesTheQueue() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try {
+                gitHubRateLimiter.execute("token", () -> {
+                    sending.countDown();
+                    release.await();
+                    return ok();
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        holder.start();
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread queued = new Thread(() -> {
+            try {
+                gitHubRateLimiter.execute("token", GitHubRateLimiterTest::ok);
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        queued.start();
+        while (queue() < 1) {
+            Thread.sleep(10);
+        }
+        queued.interrupt();
+        queued.join(5000);
+
+        assertThat(failure.get()).isInstanceOf(InterruptedException.class);
+        assertThat(queue()).isZero();
+
+        release.countDown();
+        holder.join(5000);
+        // The permit of the interrupted call was never taken, so the token is not starved
+        assertThat(gitHubRateLimiter.execute("token", GitHubRateLimiterTest::ok).statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void evictsIdleBucketsButNotThoseInUse() throws Exception {
+        gitHubRateLimiter.execute("idle", GitHubRateLimiterTest::ok);
+        gitHubRateLimiter.execute("busy", () -> {
+            Thread.sleep(5);
+            gitHubRateLimiter.evictIdleBuckets();
+            return ok();
+        });
+
+        assertThat(buckets()).hasSize(1);
+
+        Thread.sleep(5);
+        gitHubRateLimiter.evictIdleBuckets();
+        assertThat(buckets()).isEmpty();
+    }
+
+    @Test
+    void forbiddenWithASecondaryRateLimitMessageIsRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        long start = System.currentTimeMillis();
+
+        HttpResponse<InputStream> response = gitHubRateLimiter.execute("token", () -> calls.incrementAndGet() == 1
+                ? forbidden("{\"message\":\"You have exceeded a secondary rate limit. Please wait a few minutes before you try again.\"}")
+                : forbidden("{\"message\":\"Resource not accessible by integration\"}"));
+
+        assertThat(calls).hasValue(2);
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(50);
+        assertThat(meterRegistry.get("acmf.github.rate-limited").counter().count()).isEqualTo(1);
+        // A plain permission error is returned with its whole body
+        try (InputStream body = response.body()) {
+            assertThat(response.statusCode()).isEqualTo(403);
+            assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"message\":\"Resource not accessible by integration\"}");
+        }
+    }
+
+    private double queue() {
+        return meterRegistry.get("acmf.github.queue").gauge().value();
+    }
+
+    private Map<?, ?> buckets() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(gitHubRateLimiter, "buckets");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<InputStream> forbidden(String body) {
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(403);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        when(response.body()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<Void> ok() {
+        HttpResponse<Void> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        return response;
+    }
+}
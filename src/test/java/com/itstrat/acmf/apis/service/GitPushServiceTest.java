@@ -0,0 +1,109 @@
+package com.itstrat.acmf.apis.service;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GitPushServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private GitPushService gitPushService;
+
+    private Path workspace;
+
+    private Path remote;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CommandRunner commandRunner = mock(CommandRunner.class);
+        when(commandRunner.timeoutSeconds(CommandRunner.Type.GIT)).thenReturn(60L);
+        when(commandRunner.limited(any(), any())).thenAnswer(invocation ->
+                invocation.<CommandRunner.Call<?>>getArgument(1).call());
+        gitPushService = new GitPushService();
+        ReflectionTestUtils.setField(gitPushService, "commandRunner", commandRunner);
+        ReflectionTestUtils.setField(gitPushService, "pushMode", "git");
+
+        workspace = Files.createDirectories(tempDir.resolve("shop"));
+        Files.writeString(workspace.resolve("pom.xml"), "<project/>");
+        Files.createDirectories(workspace.resolve("src/main/java"));
+        Files.writeString(workspace.resolve("src/main/java/App.java"), "class App {}");
+        Files.writeString(workspace.resolve(".gitignore"), "target/\n");
+        Files.createDirectories(workspace.resolve("target"));
+        Files.writeString(workspace.resolve("target/app.jar"), "binary");
+
+        remote = tempDir.resolve("shop.git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).call().close();
+    }
+
+    @Test
+    void commitsTheWorkspaceAndPushesItToMain() throws Exception {
+        gitPushService.initAndPush(workspace.toString(), remote.toUri().toString(), "user", "token");
+
+        try (Git git = Git.open(remote.toFile())) {
+            Repository repository = git.getRepository();
+            ObjectId main = repository.resolve("refs/heads/main");
+            assertThat(main).isNotNull();
+            try (RevWalk walk = new RevWalk(repository)) {
+                RevCommit commit = walk.parseCommit(main);
+                assertThat(commit.getFullMessage()).isEqualTo("Initial commit by ACMF");
+                assertThat(commit.getAuthorIdent().getName()).isEqualTo("ACMF Bot");
+                assertThat(commit.getParentCount()).isZero();
+                assertThat(paths(repository, commit)).containsExactlyInAnyOrder(".gitignore", "pom.xml", "src/main/java/App.java");
+            }
+        }
+    }
+
+    @Test
+    void retryReplacesTheEarlierPushWithOneCommit() throws Exception {
+        gitPushService.initAndPush(workspace.toString(), remote.toUri().toString(), "user", "token");
+        Files.writeString(workspace.resolve("pom.xml"), "<project><version>2</version></project>");
+        Files.writeString(workspace.resolve("README.md"), "# shop");
+
+        gitPushService.initAndPush(workspace.toString(), remote.toUri().toString(), "user", "token");
+
+        try (Git git = Git.open(remote.toFile())) {
+            Repository repository = git.getRepository();
+            try (RevWalk walk = new RevWalk(repository)) {
+                RevCommit commit = walk.parseCommit(repository.resolve("refs/heads/main"));
+                assertThat(commit.getParentCount()).isZero();
+                assertThat(paths(repository, commit)).contains("README.md");
+                try (TreeWalk tree = TreeWalk.forPath(repository, "pom.xml", commit.getTree())) {
+                    String pom = new String(repository.open(tree.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+                    assertThat(pom).contains("<version>2</version>");
+                }
+            }
+        }
+    }
+
+    private static List<String> paths(Repository repository, RevCommit commit) throws Exception {
+        List<String> paths = new ArrayList<>();
+        try (TreeWalk tree = new TreeWalk(repository)) {
+            tree.addTree(commit.getTree());
+            tree.setRecursive(true);
+            while (tree.next()) {
+                paths.add(tree.getPathString());
+            }
+        }
+        return paths;
+    }
+}
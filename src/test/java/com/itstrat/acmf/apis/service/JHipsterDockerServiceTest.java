@@ -0,0 +1,122 @@
+package com.itstrat.acmf.apis.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.itstrat.acmf.apis.entity.GenerationSpec;
+import com.itstrat.acmf.apis.entity.JdlRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Generates through the cache, with a remote generator writing the JWT secret of the
+ * first run into the configuration and into application.yml.
+ */
+class JHipsterDockerServiceTest {
+
+    private static final String GENERATED_SECRET = "Z2VuZXJhdGVkLXNlY3JldA==";
+
+    @TempDir
+    Path tempDir;
+
+    private final RemoteGeneratorClient remoteGeneratorClient = mock(RemoteGeneratorClient.class);
+
+    private JHipsterDockerService jHipsterDockerService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        GeneratedProjectCache generatedProjectCache = new GeneratedProjectCache();
+        ReflectionTestUtils.setField(generatedProjectCache, "enabled", true);
+        ReflectionTestUtils.setField(generatedProjectCache, "cacheDir", tempDir.resolve("cache").toString());
+        ReflectionTestUtils.setField(generatedProjectCache, "maxSizeMb", 16L);
+        ReflectionTestUtils.setField(generatedProjectCache, "generatorImage", "jhipster/jhipster:v8.11.0");
+        generatedProjectCache.init();
+
+        CommandRunner commandRunner = mock(CommandRunner.class);
+        when(commandRunner.limited(eq(CommandRunner.Type.GENERATOR), any()))
+                .thenAnswer(invocation -> invocation.<CommandRunner.Call<?>>getArgument(1).call());
+        when(remoteGeneratorClient.isEnabled()).thenReturn(true);
+        when(remoteGeneratorClient.getUrl()).thenReturn("http://generator/api/download-application");
+        doAnswer(invocation -> {
+            Path appDir = invocation.getArgument(0);
+            ObjectMapper mapper = new ObjectMapper();
+            ObjectNode config = (ObjectNode) mapper.readTree(appDir.resolve(".yo-rc.json").toFile());
+            ObjectNode generator = (ObjectNode) config.get("generator-jhipster");
+            if (!generator.has("jwtSecretKey")) {
+                generator.put("jwtSecretKey", GENERATED_SECRET);
+            }
+            mapper.writeValue(appDir.resolve(".yo-rc.json").toFile(), config);
+            Files.createDirectories(appDir.resolve("src/main/resources/config"));
+            Files.writeString(appDir.resolve("src/main/resources/config/application.yml"),
+                    "jwt:\n  base64-secret: " + generator.get("jwtSecretKey").asText() + "\n");
+            return null;
+        }).when(remoteGeneratorClient).generate(any(), any());
+
+        jHipsterDockerService = new JHipsterDockerService();
+        ReflectionTestUtils.setField(jHipsterDockerService, "generatedProjectCache", generatedProjectCache);
+        ReflectionTestUtils.setField(jHipsterDockerService, "commandRunner", commandRunner);
+        ReflectionTestUtils.setField(jHipsterDockerService, "remoteGeneratorClient", remoteGeneratorClient);
+    }
+
+    @Test
+    void restoredProjectsGetTheirOwnJwtSecret() throws Exception {
+        List<String> output = new ArrayList<>();
+        Path first = Files.createDirectories(tempDir.resolve("first/shop"));
+        Path second = Files.createDirectories(tempDir.resolve("second/shop"));
+        Path third = Files.createDirectories(tempDir.resolve("third/shop"));
+
+        jHipsterDockerService.generateMonolithProjectViaDocker(spec(null), first.toString(), output::add);
+        jHipsterDockerService.generateMonolithProjectViaDocker(spec(null), second.toString(), output::add);
+        jHipsterDockerService.generateMonolithProjectViaDocker(spec(null), third.toString(), output::add);
+
+        verify(remoteGeneratorClient, times(1)).generate(any(), any());
+        assertThat(output).containsExactly("Restored previously generated project from cache.",
+                "Restored previously generated project from cache.");
+        assertThat(secret(first)).isEqualTo(GENERATED_SECRET);
+        assertThat(secret(second)).isNotEqualTo(GENERATED_SECRET).isNotEqualTo(secret(third));
+        assertThat(second.resolve("src/main/resources/config/application.yml")).content()
+                .contains(secret(second)).doesNotContain(GENERATED_SECRET);
+    }
+
+    @Test
+    void keepsAJwtSecretGivenInTheRequest() throws Exception {
+        Path first = Files.createDirectories(tempDir.resolve("first/shop"));
+        Path second = Files.createDirectories(tempDir.resolve("second/shop"));
+
+        jHipsterDockerService.generateMonolithProjectViaDocker(spec("Y2hvc2VuLXNlY3JldA=="), first.toString(), line -> { });
+        jHipsterDockerService.generateMonolithProjectViaDocker(spec("Y2hvc2VuLXNlY3JldA=="), second.toString(), line -> { });
+
+        verify(remoteGeneratorClient, times(1)).generate(any(), any());
+        assertThat(secret(second)).isEqualTo("Y2hvc2VuLXNlY3JldA==");
+        assertThat(second.resolve("src/main/resources/config/application.yml")).content().contains("Y2hvc2VuLXNlY3JldA==");
+    }
+
+    private static GenerationSpec spec(String jwtSecretKey) {
+        JdlRequest request = new JdlRequest();
+        request.setBaseName("shop");
+        request.setApplicationType("monolith");
+        request.setBuildTool("maven");
+        request.setJwtSecretKey(jwtSecretKey);
+        return GenerationSpec.compile(request);
+    }
+
+    private static String secret(Path appDir) throws Exception {
+        return new ObjectMapper().readTree(appDir.resolve(".yo-rc.json").toFile())
+                .path("generator-jhipster").path("jwtSecretKey").asText();
+    }
+}
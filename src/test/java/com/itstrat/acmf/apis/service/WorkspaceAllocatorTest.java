@@ -0,0 +1,92 @@
+package com.itstrat.acmf.apis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkspaceAllocatorTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private WorkspaceAllocator workspaceAllocator;
+
+    private Path memoryRoot;
+
+    @BeforeEach
+    void setUp() {
+        HostPathResolver hostPathResolver = mock(HostPathResolver.class);
+        when(hostPathResolver.canMountMemoryRoot()).thenReturn(true);
+        memoryRoot = tempDir.resolve("memory");
+        workspaceAllocator = new WorkspaceAllocator();
+        ReflectionTestUtils.setField(workspaceAllocator, "hostPathResolver", hostPathResolver);
+        ReflectionTestUtils.setField(workspaceAllocator, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(workspaceAllocator, "memoryRoot", memoryRoot.toString());
+        ReflectionTestUtils.setField(workspaceAllocator, "budgetMb", 4L);
+        ReflectionTestUtils.setField(workspaceAllocator, "estimateMb", 1L);
+        workspaceAllocator.init();
+    }
+
+    @Test
+    void concurrentAllocationsStayWithinTheBudget() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> jobs = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String jobId = "job-" + i;
+                jobs.add(() -> workspaceAllocator.allocate(jobId, tempDir.resolve("disk").resolve(jobId).toString(), 1));
+            }
+            long inMemory = 0;
+            for (Future<String> path : executor.invokeAll(jobs)) {
+                if (workspaceAllocator.isInMemory(Path.of(path.get()))) {
+                    inMemory++;
+                }
+            }
+            assertThat(inMemory).isEqualTo(4);
+            assertThat(gauge()).isEqualTo(4.0 * MB);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void workspaceOverItsEstimateSendsNewJobsToDisk() throws Exception {
+        String shop = workspaceAllocator.allocate("shop", tempDir.resolve("disk/shop").toString(), 1);
+        assertThat(workspaceAllocator.isInMemory(Path.of(shop))).isTrue();
+        Files.createDirectories(Path.of(shop));
+        Files.write(Path.of(shop).resolve("node_modules.tar"), new byte[5 * MB]);
+
+        workspaceAllocator.account("shop", shop);
+
+        assertThat(gauge()).isGreaterThanOrEqualTo(5.0 * MB);
+        String blog = workspaceAllocator.allocate("blog", tempDir.resolve("disk/blog").toString(), 1);
+        assertThat(blog).isEqualTo(tempDir.resolve("disk/blog").toString());
+
+        workspaceAllocator.release("shop");
+        blog = workspaceAllocator.allocate("blog", tempDir.resolve("disk/blog").toString(), 1);
+        assertThat(workspaceAllocator.isInMemory(Path.of(blog))).isTrue();
+    }
+
+    private double gauge() {
+        return meterRegistry.get("acmf.workspace.memory.bytes").gauge().value();
+    }
+}
@@ -0,0 +1,138 @@
+package com.itstrat.acmf.apis.service;
+
+import com.itstrat.acmf.apis.entity.GenerationDelivery;
+import com.itstrat.acmf.apis.entity.GenerationJob;
+import com.itstrat.acmf.apis.entity.GenerationJobType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkspaceReaperTest {
+
+    private static final int KB = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private final GenerationJobService generationJobService = mock(GenerationJobService.class);
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private WorkspaceReaper workspaceReaper;
+
+    private Path root;
+
+    @BeforeEach
+    void setUp() {
+        executor.setCorePoolSize(2);
+        executor.initialize();
+        root = tempDir.resolve("workspaces");
+
+        workspaceReaper = new WorkspaceReaper();
+        ReflectionTestUtils.setField(workspaceReaper, "workspaceReaperExecutor", executor);
+        ReflectionTestUtils.setField(workspaceReaper, "generationJobService", generationJobService);
+        ReflectionTestUtils.setField(workspaceReaper, "workspaceAllocator", mock(WorkspaceAllocator.class));
+        ReflectionTestUtils.setField(workspaceReaper, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(workspaceReaper, "workspaceRoot", root.toString());
+        ReflectionTestUtils.setField(workspaceReaper, "minAgeMinutes", 60L);
+        ReflectionTestUtils.setField(workspaceReaper, "quotaMb", 1L);
+        workspaceReaper.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void evictsTheOldestKeptWorkspacesUntilWithinQuota() throws Exception {
+        GenerationJob shop = job("shop", 600);
+        Files.write(root.resolve("shop.overlay"), new byte[100 * KB]);
+        GenerationJob blog = job("blog", 600);
+        GenerationJob cart = job("cart", 200);
+        when(generationJobService.findWorkspacePaths()).thenReturn(Set.of(workspace(shop), workspace(blog), workspace(cart)));
+        when(generationJobService.findEvictableWorkspaces()).thenReturn(List.of(shop, blog));
+        when(generationJobService.forgetWorkspace(anyString())).thenReturn(true);
+
+        sweep();
+
+        awaitDeleted(workspace(shop));
+        awaitDeleted(root.resolve("shop.overlay"));
+        assertThat(workspace(blog)).exists();
+        assertThat(workspace(cart)).exists();
+        verify(generationJobService, never()).forgetWorkspace(blog.getId());
+        assertThat(workspaceReaper.hasCapacity()).isTrue();
+        assertThat(meterRegistry.get("acmf.workspace.bytes").gauge().value()).isEqualTo(800.0 * KB);
+    }
+
+    @Test
+    void hasNoCapacityUntilAWorkspaceCanBeEvicted() throws Exception {
+        GenerationJob shop = job("shop", 1200);
+        when(generationJobService.findWorkspacePaths()).thenReturn(Set.of(workspace(shop)));
+        when(generationJobService.findEvictableWorkspaces()).thenReturn(List.of(shop));
+        // Retried meanwhile, so its workspace is in use again
+        when(generationJobService.forgetWorkspace(shop.getId())).thenReturn(false);
+
+        sweep();
+
+        assertThat(workspace(shop)).exists();
+        assertThat(workspaceReaper.hasCapacity()).isFalse();
+
+        when(generationJobService.forgetWorkspace(shop.getId())).thenReturn(true);
+
+        sweep();
+
+        awaitDeleted(workspace(shop));
+        assertThat(workspaceReaper.hasCapacity()).isTrue();
+    }
+
+    private GenerationJob job(String name, int sizeKb) throws IOException {
+        Path workspace = Files.createDirectories(root.resolve(name));
+        Files.write(Files.createDirectories(workspace.resolve("src")).resolve("App.java"), new byte[sizeKb * KB]);
+        GenerationJob job = new GenerationJob(GenerationJobType.MONOLITH, name, 1L, GenerationDelivery.ARCHIVE);
+        job.setWorkspacePath(workspace.toString());
+        return job;
+    }
+
+    private static Path workspace(GenerationJob job) {
+        return Path.of(job.getWorkspacePath()).toAbsolutePath().normalize();
+    }
+
+    private void sweep() throws InterruptedException {
+        workspaceReaper.scheduleSweep();
+        AtomicBoolean sweeping = (AtomicBoolean) ReflectionTestUtils.getField(workspaceReaper, "sweeping");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sweeping.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(sweeping).isFalse();
+    }
+
+    private static void awaitDeleted(Path path) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(path) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(path).doesNotExist();
+    }
+}